@@ -0,0 +1,311 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+
+import org.apache.http.HttpStatus;
+import org.apache.log4j.Logger;
+
+/**
+ * The API keys a translator spreads its requests over, given to {@link Translator#translator(ApiKeys, Configuration)}.
+ * Every request goes out with the key in rotation that has sent the fewest characters since the service's quota day
+ * began. A key the service reports as over its quota is taken out of rotation until the quota day is over, and one it
+ * reports as invalid or not allowed, which can be put right in the console, is left out for a while; either way the
+ * request is sent again with another key. A key whose requests the service keeps refusing as unauthorized is also left
+ * out for a while. When no key is in rotation, requests go out with the one due back first, so that the service's
+ * answer reaches the caller. Instances are thread-safe and count the requests, characters and errors of each key.
+ */
+public class ApiKeys
+{
+	private static final List<String> QUOTA_REASONS = Arrays.asList("dailyLimitExceeded", "dailyLimitExceededUnreg",
+			"quotaExceeded");
+	private static final List<String> KEY_REASONS = Arrays.asList("keyInvalid", "keyExpired", "accessNotConfigured",
+			"ipRefererBlocked");
+
+	private static final Logger log = Logger.getLogger(ApiKeys.class);
+
+	private final Map<String, Key> keys = new LinkedHashMap<String, Key>();
+
+	private int errorsToBench = 3;
+	private long benchMillis = TimeUnit.SECONDS.toMillis(30);
+	private long quotaDayEndsAtMillis;
+
+	/**
+	 * Instantiates the keys.
+	 * 
+	 * @param keys
+	 *            the API keys
+	 * 
+	 * @throws NullPointerException
+	 *             if any key is null
+	 * @throws IllegalArgumentException
+	 *             if there are no keys
+	 */
+	public ApiKeys(final String... keys)
+	{
+		ensureNotNull(keys, "API keys");
+		ensure(keys.length > 0, "there must be at least one API key");
+
+		for (final String key : keys)
+		{
+			ensureNotNull(key, "API key");
+
+			this.keys.put(key, new Key(key));
+		}
+	}
+
+	/**
+	 * Sets how many errors in a row, refusing requests made with a key as unauthorized or forbidden, leave it out of
+	 * rotation and for how long; a key reported as invalid or not allowed is left out as long at once. 3 errors and 30
+	 * seconds by default. Other errors, such as bad requests, failures to connect and server errors, are not the key's
+	 * fault and do not count.
+	 * 
+	 * @param errors
+	 *            the number of errors in a row
+	 * @param duration
+	 *            how long the key is left out
+	 * @param unit
+	 *            the unit of the duration
+	 * @return these keys
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the number of errors or the duration are not positive
+	 */
+	public synchronized ApiKeys benchAfter(final int errors, final long duration, final TimeUnit unit)
+	{
+		ensure(errors > 0, "errors [%s] must be positive", errors);
+
+		errorsToBench = errors;
+		benchMillis = Configuration.toPositiveMillis(duration, unit, "bench duration");
+
+		return this;
+	}
+
+	/**
+	 * Gets the keys, in the order they were given.
+	 * 
+	 * @return the keys
+	 */
+	public List<String> getKeys()
+	{
+		return Collections.unmodifiableList(new ArrayList<String>(keys.keySet()));
+	}
+
+	/**
+	 * Gets the number of requests sent with the given key that succeeded.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the number of requests
+	 */
+	public synchronized long getRequests(final String key)
+	{
+		return keyOf(key).requests;
+	}
+
+	/**
+	 * Gets the number of characters of text sent with the given key in requests that succeeded.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the number of characters
+	 */
+	public synchronized long getCharacters(final String key)
+	{
+		return keyOf(key).characters;
+	}
+
+	/**
+	 * Gets the number of requests sent with the given key that failed.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the number of errors
+	 */
+	public synchronized long getErrors(final String key)
+	{
+		return keyOf(key).errors;
+	}
+
+	/**
+	 * Tells whether requests may be sent with the given key now.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return true if the key is in rotation
+	 */
+	public synchronized boolean isInRotation(final String key)
+	{
+		return keyOf(key).outUntilMillis <= System.currentTimeMillis();
+	}
+
+	/**
+	 * Picks the key for the next request, and counts its characters against the key's quota. When every key is out of
+	 * rotation, it picks the one due back first rather than refusing the request.
+	 */
+	synchronized String acquire(final int characters)
+	{
+		final long now = System.currentTimeMillis();
+
+		startNewQuotaDayIfOver(now);
+
+		Key best = null;
+		Key benched = null;
+
+		for (final Key key : keys.values())
+		{
+			if (key.outUntilMillis <= now)
+			{
+				best = best == null || key.charactersToday < best.charactersToday ? key : best;
+			}
+			else
+			{
+				benched = benched == null || key.outUntilMillis < benched.outUntilMillis ? key : benched;
+			}
+		}
+
+		final Key picked = best != null ? best : benched;
+
+		picked.charactersToday += characters;
+
+		return picked.value;
+	}
+
+	synchronized void succeeded(final String key, final int characters)
+	{
+		final Key state = keys.get(key);
+
+		state.requests++;
+		state.characters += characters;
+		state.errorsInARow = 0;
+	}
+
+	/**
+	 * Records a failed request and tells whether it failed because of its key, in which case it may be sent again with
+	 * another one.
+	 */
+	synchronized boolean failed(final String key, final RuntimeException failure)
+	{
+		final Key state = keys.get(key);
+
+		state.errors++;
+
+		if (!(failure instanceof ResponseException))
+		{
+			return false;
+		}
+
+		final ResponseException exception = (ResponseException) failure;
+
+		if (QUOTA_REASONS.contains(exception.getErrorReason()))
+		{
+			log.warn(format("API key ending in %s out of rotation until the quota day ends: %s", state.suffix(),
+					exception.getErrorReason()));
+
+			state.outUntilMillis = quotaDayEndsAtMillis;
+
+			return true;
+		}
+
+		if (KEY_REASONS.contains(exception.getErrorReason()))
+		{
+			log.warn(format("API key ending in %s out of rotation for %s ms: %s", state.suffix(), benchMillis,
+					exception.getErrorReason()));
+
+			state.outUntilMillis = System.currentTimeMillis() + benchMillis;
+			state.errorsInARow = 0;
+
+			return true;
+		}
+
+		final boolean refused = exception.getStatusCode() == HttpStatus.SC_UNAUTHORIZED
+				|| exception.getStatusCode() == HttpStatus.SC_FORBIDDEN;
+
+		if (refused && ++state.errorsInARow >= errorsToBench)
+		{
+			log.warn(format("API key ending in %s out of rotation for %s ms after %s errors in a row", state.suffix(),
+					benchMillis, state.errorsInARow));
+
+			state.outUntilMillis = System.currentTimeMillis() + benchMillis;
+			state.errorsInARow = 0;
+		}
+
+		return false;
+	}
+
+	int size()
+	{
+		return keys.size();
+	}
+
+	private void startNewQuotaDayIfOver(final long now)
+	{
+		if (now < quotaDayEndsAtMillis)
+		{
+			return;
+		}
+
+		quotaDayEndsAtMillis = RateLimit.nextMidnightMillis(RateLimit.QUOTA_TIME_ZONE, now);
+
+		for (final Key key : keys.values())
+		{
+			key.charactersToday = 0;
+		}
+	}
+
+	private Key keyOf(final String key)
+	{
+		final Key state = keys.get(key);
+
+		ensure(state != null, "unknown API key");
+
+		return state;
+	}
+
+	private static class Key
+	{
+		private final String value;
+
+		private long requests;
+		private long characters;
+		private long errors;
+		private long charactersToday;
+		private int errorsInARow;
+		private long outUntilMillis;
+
+		private Key(final String value)
+		{
+			this.value = value;
+		}
+
+		private String suffix()
+		{
+			return value.substring(Math.max(0, value.length() - 4));
+		}
+	}
+}
@@ -1,63 +1,63 @@
-/**
- * Copyright (C) 2010 the author
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package com.linguamathematica.translate4j;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import static java.lang.String.format;
-
-import static java.util.Arrays.asList;
-
-class Base
-{
-	static void ensure(final boolean condition, final String format, final Object... arguments)
-	{
-		if (!condition)
-		{
-			throw new IllegalArgumentException(format(format, arguments));
-		}
-	}
-
-	static void ensureNotNull(final Object object, final String argumentName)
-	{
-		if (object == null)
-		{
-			throw new NullPointerException(format("%s cannot be null", argumentName));
-		}
-	}
-
-	static void ensureResponse(final boolean condition, final String message, final int httpStatus, final String reason)
-	{
-		if (!condition)
-		{
-			throw new ResponseException(message, httpStatus, reason);
-		}
-	}
-
-	static <T> List<T> newList(final T[] items)
-	{
-		return new ArrayList<T>(asList(items));
-	}
-
-	static <K, V> Map<K, V> newMap()
-	{
-		return new HashMap<K, V>();
-	}
-
-}
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+import static java.util.Arrays.asList;
+
+class Base
+{
+	static void ensure(final boolean condition, final String format, final Object... arguments)
+	{
+		if (!condition)
+		{
+			throw new IllegalArgumentException(format(format, arguments));
+		}
+	}
+
+	static void ensureNotNull(final Object object, final String argumentName)
+	{
+		if (object == null)
+		{
+			throw new NullPointerException(format("%s cannot be null", argumentName));
+		}
+	}
+
+	static void ensureResponse(final boolean condition, final String message, final int httpStatus, final String reason)
+	{
+		if (!condition)
+		{
+			throw new ResponseException(message, httpStatus, reason);
+		}
+	}
+
+	static <T> List<T> newList(final T[] items)
+	{
+		return new ArrayList<T>(asList(items));
+	}
+
+	static <K, V> Map<K, V> newMap()
+	{
+		return new HashMap<K, V>();
+	}
+
+}
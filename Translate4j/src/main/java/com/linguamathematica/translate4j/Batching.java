@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+
+/**
+ * Settings and statistics of the coalescing of concurrent single-text calls, enabled through
+ * {@link Configuration#batching(Batching)}. Calls to translate a single text between the same pair of languages, or to
+ * detect the language of a single text, that arrive within a short window of each other are sent to the service as
+ * one request, and each caller gets back its own result. The first call of a batch waits for the window to pass with
+ * no further call, for the batch to fill up or for the maximum delay, whichever comes first.
+ */
+public class Batching
+{
+	long windowNanos = TimeUnit.MILLISECONDS.toNanos(2);
+	long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+	int maxBatchSize = 100;
+
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicInteger largestBatch = new AtomicInteger();
+
+	/**
+	 * Sets how long a batch waits for another call after the last one joined it. 2 milliseconds by default.
+	 *
+	 * @param window
+	 *            the window
+	 * @param unit
+	 *            the unit of the window
+	 * @return these settings
+	 */
+	public Batching window(final long window, final TimeUnit unit)
+	{
+		windowNanos = toPositiveNanos(window, unit, "window");
+
+		return this;
+	}
+
+	/**
+	 * Sets the longest a call waits for others to join its batch. 10 milliseconds by default.
+	 *
+	 * @param maxDelay
+	 *            the maximum delay
+	 * @param unit
+	 *            the unit of the delay
+	 * @return these settings
+	 */
+	public Batching maxDelay(final long maxDelay, final TimeUnit unit)
+	{
+		maxDelayNanos = toPositiveNanos(maxDelay, unit, "max delay");
+
+		return this;
+	}
+
+	/**
+	 * Sets the number of calls at which a batch is sent without waiting any longer. 100 by default.
+	 *
+	 * @param maxBatchSize
+	 *            the maximum number of calls in a batch
+	 * @return these settings
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number is not positive
+	 */
+	public Batching maxBatchSize(final int maxBatchSize)
+	{
+		ensure(maxBatchSize > 0, "max batch size [%s] must be positive", maxBatchSize);
+
+		this.maxBatchSize = maxBatchSize;
+
+		return this;
+	}
+
+	/**
+	 * Gets the number of batches sent.
+	 *
+	 * @return the number of batches
+	 */
+	public long getBatches()
+	{
+		return batches.get();
+	}
+
+	/**
+	 * Gets the number of calls answered by the batches sent.
+	 *
+	 * @return the number of calls
+	 */
+	public long getBatchedCalls()
+	{
+		return calls.get();
+	}
+
+	/**
+	 * Gets the average number of calls per batch sent.
+	 *
+	 * @return the average batch size, or 0 if no batch has been sent
+	 */
+	public double getAverageBatchSize()
+	{
+		final long sent = batches.get();
+
+		return sent == 0 ? 0 : (double) calls.get() / sent;
+	}
+
+	/**
+	 * Gets the number of calls in the largest batch sent.
+	 *
+	 * @return the largest batch size
+	 */
+	public int getLargestBatchSize()
+	{
+		return largestBatch.get();
+	}
+
+	void sent(final int batchSize)
+	{
+		batches.incrementAndGet();
+		calls.addAndGet(batchSize);
+
+		for (int largest = largestBatch.get(); batchSize > largest; largest = largestBatch.get())
+		{
+			if (largestBatch.compareAndSet(largest, batchSize))
+			{
+				break;
+			}
+		}
+	}
+
+	private static long toPositiveNanos(final long duration, final TimeUnit unit, final String name)
+	{
+		ensureNotNull(unit, "time unit");
+		ensure(duration > 0, "%s [%s] must be positive", name, duration);
+
+		return unit.toNanos(duration);
+	}
+}
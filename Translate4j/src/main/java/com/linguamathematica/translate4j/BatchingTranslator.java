@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+/**
+ * Coalesces concurrent single-text calls into batch calls to the translator behind it, as set out by a
+ * {@link Batching}. There is no background thread: the first call of a batch waits for the others and then makes the
+ * batch call on behalf of all of them, with the highest {@link Priority} among them, so that an interactive call does
+ * not wait in the bulk lane for joining a batch started by bulk work. Calls with lists of texts are forwarded as they
+ * are.
+ */
+class BatchingTranslator extends ForwardingTranslator
+{
+	private static final List<Language> DETECTION = singletonList(Language.UNKNOWN);
+
+	private final Batching batching;
+	private final Map<List<Language>, Batch<String>> translations = new HashMap<List<Language>, Batch<String>>();
+	private final Map<List<Language>, Batch<Language>> detections = new HashMap<List<Language>, Batch<Language>>();
+
+	BatchingTranslator(final Translator delegate, final Batching batching)
+	{
+		super(delegate);
+
+		this.batching = batching;
+	}
+
+	@Override
+	public Language detect(final String text)
+	{
+		if (!isValid(text))
+		{
+			return delegate.detect(text);
+		}
+
+		return coalesced(detections, DETECTION, text, new Call<Language>()
+		{
+			public List<Language> make(final List<String> texts)
+			{
+				return delegate.detect(texts);
+			}
+		});
+	}
+
+	@Override
+	public String translate(final String text, final Language source, final Language target)
+	{
+		if (!isValid(text) || source == null || target == null || target == Language.UNKNOWN)
+		{
+			return delegate.translate(text, source, target);
+		}
+
+		return coalesced(translations, asList(source, target), text, new Call<String>()
+		{
+			public List<String> make(final List<String> texts)
+			{
+				return delegate.translate(texts, source, target);
+			}
+		});
+	}
+
+	private <T> T coalesced(final Map<List<Language>, Batch<T>> open, final List<Language> key, final String text,
+			final Call<T> call)
+	{
+		final Batch<T> batch;
+		final int position;
+
+		synchronized (this)
+		{
+			final Batch<T> joined = open.get(key);
+
+			batch = joined != null ? joined : new Batch<T>();
+			position = batch.add(text);
+
+			if (joined == null)
+			{
+				open.put(key, batch);
+			}
+
+			if (position + 1 == batching.maxBatchSize)
+			{
+				open.remove(key);
+				batch.close();
+			}
+		}
+
+		if (position == 0)
+		{
+			batch.awaitOthers(batching);
+
+			synchronized (this)
+			{
+				if (open.get(key) == batch)
+				{
+					open.remove(key);
+				}
+			}
+
+			batch.send(call, batching);
+		}
+
+		return batch.resultAt(position);
+	}
+
+	private interface Call<T>
+	{
+		List<T> make(List<String> texts);
+	}
+
+	private static class Batch<T>
+	{
+		private final List<String> texts = new ArrayList<String>();
+		private final long opened = System.nanoTime();
+
+		private long lastJoined = opened;
+		private Priority priority = Priority.BULK;
+		private boolean closed;
+		private boolean done;
+		private List<T> results;
+		private RuntimeException failure;
+
+		synchronized int add(final String text)
+		{
+			texts.add(text);
+			lastJoined = System.nanoTime();
+
+			if (Priority.current().compareTo(priority) < 0)
+			{
+				priority = Priority.current();
+			}
+
+			return texts.size() - 1;
+		}
+
+		synchronized void close()
+		{
+			closed = true;
+			notifyAll();
+		}
+
+		synchronized void awaitOthers(final Batching batching)
+		{
+			try
+			{
+				for (long wait = remaining(batching); !closed && wait > 0; wait = remaining(batching))
+				{
+					TimeUnit.NANOSECONDS.timedWait(this, wait);
+				}
+			}
+			catch (final InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		void send(final Call<T> call, final Batching batching)
+		{
+			final List<String> sent;
+			final Priority previous;
+
+			synchronized (this)
+			{
+				closed = true;
+				sent = new ArrayList<String>(texts);
+				previous = Priority.use(priority);
+			}
+
+			try
+			{
+				final List<T> found = call.make(sent);
+
+				batching.sent(sent.size());
+				done(found, null);
+			}
+			catch (final RuntimeException exception)
+			{
+				done(null, exception);
+			}
+			catch (final Error error)
+			{
+				done(null, new IllegalStateException("Batch call failed", error));
+
+				throw error;
+			}
+			finally
+			{
+				Priority.use(previous);
+			}
+		}
+
+		synchronized T resultAt(final int position)
+		{
+			boolean interrupted = false;
+
+			while (!done)
+			{
+				try
+				{
+					wait();
+				}
+				catch (final InterruptedException exception)
+				{
+					interrupted = true;
+				}
+			}
+
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+			if (failure != null)
+			{
+				throw failure;
+			}
+
+			return results.get(position);
+		}
+
+		private synchronized void done(final List<T> results, final RuntimeException failure)
+		{
+			this.results = results;
+			this.failure = failure;
+			done = true;
+			notifyAll();
+		}
+
+		private long remaining(final Batching batching)
+		{
+			final long now = System.nanoTime();
+
+			return Math.min(lastJoined + batching.windowNanos, opened + batching.maxDelayNanos) - now;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.Arrays;
+
+/**
+ * Tells that a cache key was never added, for sure, or that it probably was. Sized for an expected number of keys and
+ * a rate of false positives, which grows once more keys than expected have been added. The bits a key sets are picked
+ * by double hashing of a 64-bit hash of the key. Not thread-safe.
+ */
+class BloomFilter
+{
+	private static final double LN_2 = Math.log(2);
+
+	private final long[] bits;
+	private final long size;
+	private final int hashes;
+	private final int expectedKeys;
+
+	private int keys;
+
+	BloomFilter(final int expectedKeys, final double falsePositiveRate)
+	{
+		this.expectedKeys = expectedKeys;
+
+		final double optimalSize = -expectedKeys * Math.log(falsePositiveRate) / (LN_2 * LN_2);
+
+		bits = new long[(int) Math.max(1, Math.ceil(optimalSize / Long.SIZE))];
+		size = (long) bits.length * Long.SIZE;
+		hashes = Math.max(1, (int) Math.round(size / (double) expectedKeys * LN_2));
+	}
+
+	void add(final CacheKey key)
+	{
+		final long hash = hashOf(key);
+
+		for (int i = 0; i < hashes; i++)
+		{
+			final long bit = indexOf(hash, i);
+
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+
+		keys++;
+	}
+
+	boolean mightContain(final CacheKey key)
+	{
+		final long hash = hashOf(key);
+
+		for (int i = 0; i < hashes; i++)
+		{
+			final long bit = indexOf(hash, i);
+
+			if ((bits[(int) (bit >>> 6)] & 1L << bit) == 0)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Tells whether more keys have been added than the filter was sized for.
+	 */
+	boolean isFull()
+	{
+		return keys > expectedKeys;
+	}
+
+	void clear()
+	{
+		Arrays.fill(bits, 0);
+		keys = 0;
+	}
+
+	private long indexOf(final long hash, final int i)
+	{
+		final long combined = (int) hash + (long) i * (int) (hash >>> 32);
+
+		return (combined < 0 ? ~combined : combined) % size;
+	}
+
+	private static long hashOf(final CacheKey key)
+	{
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < key.text.length(); i++)
+		{
+			hash = (hash ^ key.text.charAt(i)) * 0x100000001b3L;
+		}
+
+		hash = (hash ^ key.source.ordinal()) * 0x100000001b3L;
+		hash = (hash ^ key.target.ordinal()) * 0x100000001b3L;
+
+		hash = (hash ^ hash >>> 33) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ hash >>> 33) * 0xc4ceb9fe1a85ec53L;
+
+		return hash ^ hash >>> 33;
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Identifies a cached or in-flight result: the text and the pair of languages it was translated between. Detections
+ * are keyed with both languages {@link Language#UNKNOWN}, which no translation can have as its target.
+ */
+class CacheKey
+{
+	private static final String ENCODING = "UTF-8";
+	private static final char SEPARATOR = '\t';
+
+	final String text;
+	final Language source;
+	final Language target;
+
+	private final int hash;
+
+	CacheKey(final String text, final Language source, final Language target)
+	{
+		this.text = text;
+		this.source = source;
+		this.target = target;
+
+		hash = 31 * (31 * text.hashCode() + source.ordinal()) + target.ordinal();
+	}
+
+	/**
+	 * Gets the key as persistent caches store it: the codes of its languages and its text, separated by tabs, in UTF-8.
+	 */
+	byte[] toBytes()
+	{
+		return encoded(source.getCode() + SEPARATOR + target.getCode() + SEPARATOR + text);
+	}
+
+	/**
+	 * Makes a key back from what {@link #toBytes()} gave.
+	 */
+	static CacheKey fromBytes(final byte[] bytes)
+	{
+		final String key = decoded(bytes);
+		final int sourceEnd = key.indexOf(SEPARATOR);
+		final int targetEnd = key.indexOf(SEPARATOR, sourceEnd + 1);
+
+		return new CacheKey(key.substring(targetEnd + 1), Language.from(key.substring(0, sourceEnd)), Language
+				.from(key.substring(sourceEnd + 1, targetEnd)));
+	}
+
+	/**
+	 * Encodes a key or a value in UTF-8, as persistent caches store them.
+	 */
+	static byte[] encoded(final String text)
+	{
+		try
+		{
+			return text.getBytes(ENCODING);
+		}
+		catch (final UnsupportedEncodingException exception)
+		{
+			throw new IllegalStateException("UTF-8 is not supported. Report as bug", exception);
+		}
+	}
+
+	/**
+	 * Decodes a key or a value that {@link #encoded(String)} gave.
+	 */
+	static String decoded(final byte[] bytes)
+	{
+		try
+		{
+			return new String(bytes, ENCODING);
+		}
+		catch (final UnsupportedEncodingException exception)
+		{
+			throw new IllegalStateException("UTF-8 is not supported. Report as bug", exception);
+		}
+	}
+
+	@Override
+	public boolean equals(final Object object)
+	{
+		if (this == object)
+		{
+			return true;
+		}
+
+		if (!(object instanceof CacheKey))
+		{
+			return false;
+		}
+
+		final CacheKey other = (CacheKey) object;
+
+		return hash == other.hash && source == other.source && target == other.target && text.equals(other.text);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+}
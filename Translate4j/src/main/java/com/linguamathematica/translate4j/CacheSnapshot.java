@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.lang.String.format;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A snapshot of the results of a {@link TranslationCache} in a file, saved from one cache and loaded into another, so
+ * that a translator restarted, or started on another machine, begins with a warm cache instead of asking the service
+ * for everything again. The file starts with a magic number and a format version, and the results follow compressed,
+ * one record after another of the key and value in UTF-8, with their count at the end. Results over a megabyte are
+ * left out.
+ * <p>
+ * Saving writes a new file, forces it to the disk and then puts it in place of the old one, so that a snapshot is
+ * never seen half written, even after a crash. The results are copied out of the cache a part at a time, so that
+ * lookups go on while it is saved. Loading streams the file and puts the results into the cache one at a time, so that
+ * the memory it takes is that of its buffers and the largest record, whatever the size of the file; it can also be
+ * given a maximum time, after which it stops. The time, the memory and the results of the latest load are
+ * reported. Results loaded start their time to live again.
+ */
+public class CacheSnapshot
+{
+	private static final Logger log = Logger.getLogger(CacheSnapshot.class);
+
+	private static final int MAGIC = 0x74346373;
+	private static final int VERSION = 1;
+	private static final int END = -1;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_RECORD_SIZE = 1024 * 1024;
+	private static final long FOREVER = Long.MAX_VALUE;
+
+	private final File file;
+
+	private long maxLoadNanos = FOREVER;
+	private int savedResults;
+	private int loadedResults;
+	private long loadMillis;
+	private long peakLoadBytes;
+	private boolean loadComplete;
+
+	/**
+	 * Creates a snapshot kept in the given file.
+	 *
+	 * @param file
+	 *            the file of the snapshot
+	 *
+	 * @throws NullPointerException
+	 *             if the file is null
+	 */
+	public CacheSnapshot(final File file)
+	{
+		ensureNotNull(file, "file");
+
+		this.file = file;
+	}
+
+	/**
+	 * Sets the longest a load may take. Whatever is left of the snapshot after that is not loaded. Loads take as long
+	 * as they need by default.
+	 *
+	 * @param maxLoadTime
+	 *            the maximum time
+	 * @param unit
+	 *            the unit of the time
+	 * @return this snapshot
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the time is negative
+	 */
+	public synchronized CacheSnapshot maxLoadTime(final long maxLoadTime, final TimeUnit unit)
+	{
+		ensureNotNull(unit, "time unit");
+		ensure(maxLoadTime >= 0, "max load time [%s] cannot be negative", maxLoadTime);
+
+		maxLoadNanos = unit.toNanos(maxLoadTime);
+
+		return this;
+	}
+
+	/**
+	 * Saves the results of the given cache that have not expired, replacing what the snapshot held before.
+	 *
+	 * @param cache
+	 *            the cache to save
+	 * @return the number of results saved
+	 *
+	 * @throws IOException
+	 *             if the snapshot cannot be written, in which case the one there before is left as it was
+	 * @throws NullPointerException
+	 *             if the cache is null
+	 */
+	public synchronized int save(final TranslationCache cache) throws IOException
+	{
+		ensureNotNull(cache, "cache");
+
+		final File written = new File(file.getPath() + ".tmp");
+		final FileOutputStream out = new FileOutputStream(written);
+		final DataOutputStream header = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+		final RecordWriter records = new RecordWriter(header);
+
+		try
+		{
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			records.open();
+			cache.forEachResult(records);
+			records.finish();
+			out.getFD().sync();
+			records.close();
+		}
+		catch (final IOException exception)
+		{
+			header.close();
+			written.delete();
+
+			throw exception;
+		}
+
+		if (!written.renameTo(file) && !(file.delete() && written.renameTo(file)))
+		{
+			written.delete();
+
+			throw new IOException(format("Cannot replace cache snapshot [%s]", file));
+		}
+
+		savedResults = records.count;
+
+		log.info(format("Saved [%s] results to cache snapshot [%s] of [%s] bytes", savedResults, file, file.length()));
+
+		return savedResults;
+	}
+
+	/**
+	 * Loads the results in the snapshot into the given cache, in the order they were saved, until they are all loaded
+	 * or the maximum load time is up. Results loaded before a failure stay in the cache.
+	 *
+	 * @param cache
+	 *            the cache to load into
+	 * @return the number of results loaded
+	 *
+	 * @throws IOException
+	 *             if the snapshot cannot be read, is not a snapshot, is of a version this library cannot read or is
+	 *             damaged
+	 * @throws NullPointerException
+	 *             if the cache is null
+	 */
+	public synchronized int load(final TranslationCache cache) throws IOException
+	{
+		ensureNotNull(cache, "cache");
+
+		final long start = System.nanoTime();
+		final DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+				BUFFER_SIZE));
+
+		loadedResults = 0;
+		peakLoadBytes = 2 * BUFFER_SIZE;
+		loadComplete = false;
+
+		try
+		{
+			ensureSnapshot(header.readInt() == MAGIC, "is not a cache snapshot");
+
+			final int version = header.readInt();
+
+			ensureSnapshot(version == VERSION, format("is of version [%s], this library reads version [%s]", version,
+					VERSION));
+
+			final DataInputStream records = new DataInputStream(new GZIPInputStream(header, BUFFER_SIZE));
+
+			for (int keyLength = records.readInt(); keyLength != END; keyLength = records.readInt())
+			{
+				if (System.nanoTime() - start > maxLoadNanos)
+				{
+					break;
+				}
+
+				final int valueLength = records.readInt();
+
+				ensureSnapshot(keyLength > 0 && valueLength >= 0 && (long) keyLength + valueLength <= MAX_RECORD_SIZE,
+						format("has a damaged record after [%s] results", loadedResults));
+
+				final byte[] key = new byte[keyLength];
+				final byte[] value = new byte[valueLength];
+
+				records.readFully(key);
+				records.readFully(value);
+				peakLoadBytes = Math.max(peakLoadBytes, 2 * BUFFER_SIZE + keyLength + valueLength);
+
+				cache.put(keyOf(key), CacheKey.decoded(value));
+				loadedResults++;
+			}
+
+			loadComplete = System.nanoTime() - start <= maxLoadNanos;
+
+			ensureSnapshot(!loadComplete || records.readInt() == loadedResults && records.read() == -1,
+					"does not end as it should");
+		}
+		finally
+		{
+			header.close();
+			loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		}
+
+		log.info(format("Loaded [%s] results from cache snapshot [%s] in [%s] ms%s", loadedResults, file, loadMillis,
+				loadComplete ? "" : ", stopped at the maximum load time"));
+
+		return loadedResults;
+	}
+
+	/**
+	 * Gets the number of results written by the latest save.
+	 *
+	 * @return the number of results saved
+	 */
+	public synchronized int getSavedResults()
+	{
+		return savedResults;
+	}
+
+	/**
+	 * Gets the number of results put into the cache by the latest load. The cache may not have kept all of them.
+	 *
+	 * @return the number of results loaded
+	 */
+	public synchronized int getLoadedResults()
+	{
+		return loadedResults;
+	}
+
+	/**
+	 * Gets how long the latest load took.
+	 *
+	 * @return the time in milliseconds
+	 */
+	public synchronized long getLoadMillis()
+	{
+		return loadMillis;
+	}
+
+	/**
+	 * Gets the most memory the latest load held at once to read the snapshot: its buffers and the largest record.
+	 *
+	 * @return the number of bytes
+	 */
+	public synchronized long getPeakLoadBytes()
+	{
+		return peakLoadBytes;
+	}
+
+	/**
+	 * Tells whether the latest load read the whole snapshot, rather than stopping at the maximum load time or failing.
+	 *
+	 * @return whether the load was complete
+	 */
+	public synchronized boolean isLoadComplete()
+	{
+		return loadComplete;
+	}
+
+	private void ensureSnapshot(final boolean condition, final String problem) throws IOException
+	{
+		if (!condition)
+		{
+			throw new IOException(format("File [%s] %s", file, problem));
+		}
+	}
+
+	private CacheKey keyOf(final byte[] bytes) throws IOException
+	{
+		try
+		{
+			return CacheKey.fromBytes(bytes);
+		}
+		catch (final RuntimeException exception)
+		{
+			final IOException damaged = new IOException(format("File [%s] has a damaged key after [%s] results", file,
+					loadedResults));
+
+			damaged.initCause(exception);
+
+			throw damaged;
+		}
+	}
+
+	/**
+	 * Writes the results of a cache, compressed, after the header of a snapshot, and then their count.
+	 */
+	private static class RecordWriter implements TranslationCache.ResultVisitor
+	{
+		private final DataOutputStream header;
+
+		private GZIPOutputStream compressed;
+		private DataOutputStream records;
+		private int count;
+
+		private RecordWriter(final DataOutputStream header)
+		{
+			this.header = header;
+		}
+
+		public void visit(final CacheKey key, final String value) throws IOException
+		{
+			final byte[] keyBytes = key.toBytes();
+			final byte[] valueBytes = CacheKey.encoded(value);
+
+			if (keyBytes.length + valueBytes.length > MAX_RECORD_SIZE)
+			{
+				return;
+			}
+
+			records.writeInt(keyBytes.length);
+			records.writeInt(valueBytes.length);
+			records.write(keyBytes);
+			records.write(valueBytes);
+			count++;
+		}
+
+		private void open() throws IOException
+		{
+			compressed = new GZIPOutputStream(header, BUFFER_SIZE);
+			records = new DataOutputStream(compressed);
+		}
+
+		private void finish() throws IOException
+		{
+			records.writeInt(END);
+			records.writeInt(count);
+			compressed.finish();
+			records.flush();
+		}
+
+		private void close() throws IOException
+		{
+			records.close();
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Answers translations and detections from a {@link TranslationCache} and only asks the translator behind it for the
+ * ones that are not cached. Batches are answered in part from the cache and in part with a single batch call for the
+ * misses.
+ */
+class CachingTranslator extends ForwardingTranslator
+{
+	private final TranslationCache cache;
+
+	CachingTranslator(final Translator delegate, final TranslationCache cache)
+	{
+		super(delegate);
+
+		this.cache = cache;
+	}
+
+	@Override
+	public Language detect(final String text)
+	{
+		return detect(singletonList(text)).get(0);
+	}
+
+	@Override
+	public List<Language> detect(final List<String> texts)
+	{
+		final List<String> codes = cached(texts, Language.UNKNOWN, Language.UNKNOWN, new Lookup()
+		{
+			public List<String> missing(final List<String> texts)
+			{
+				final List<String> codes = new ArrayList<String>(texts.size());
+
+				for (final Language language : delegate.detect(texts))
+				{
+					codes.add(language.getCode());
+				}
+
+				return codes;
+			}
+		});
+
+		final List<Language> languages = new ArrayList<Language>(codes.size());
+
+		for (final String code : codes)
+		{
+			languages.add(Language.from(code));
+		}
+
+		return languages;
+	}
+
+	@Override
+	public String translate(final String text, final Language source, final Language target)
+	{
+		return translate(singletonList(text), source, target).get(0);
+	}
+
+	@Override
+	public List<String> translate(final List<String> texts, final Language source, final Language target)
+	{
+		if (target == Language.UNKNOWN)
+		{
+			return delegate.translate(texts, source, target);
+		}
+
+		return cached(texts, source, target, new Lookup()
+		{
+			public List<String> missing(final List<String> texts)
+			{
+				return delegate.translate(texts, source, target);
+			}
+		});
+	}
+
+	@Override
+	public List<Translation> translateAndDetect(final List<String> texts, final Language target)
+	{
+		if (texts == null || target == null || target == Language.UNKNOWN)
+		{
+			return delegate.translateAndDetect(texts, target);
+		}
+
+		final List<Translation> results = new ArrayList<Translation>(texts.size());
+		final List<String> missingTexts = new ArrayList<String>();
+		final List<Integer> missingPositions = new ArrayList<Integer>();
+
+		for (final String text : texts)
+		{
+			final String code = text != null ? cache.get(new CacheKey(text, Language.UNKNOWN, Language.UNKNOWN)) : null;
+			final String cached = code != null ? cache.get(new CacheKey(text, Language.UNKNOWN, target)) : null;
+
+			if (cached == null)
+			{
+				missingTexts.add(text);
+				missingPositions.add(results.size());
+			}
+
+			results.add(cached != null ? new Translation(cached, Language.from(code)) : null);
+		}
+
+		if (!missingTexts.isEmpty())
+		{
+			final List<Translation> found = delegate.translateAndDetect(missingTexts, target);
+
+			for (int i = 0; i < found.size(); i++)
+			{
+				final Translation translation = found.get(i);
+
+				results.set(missingPositions.get(i), translation);
+
+				if (translation.detectedLanguage != Language.UNKNOWN)
+				{
+					cache.put(new CacheKey(missingTexts.get(i), Language.UNKNOWN, Language.UNKNOWN),
+							translation.detectedLanguage.getCode());
+				}
+
+				cache.put(new CacheKey(missingTexts.get(i), Language.UNKNOWN, target), translation.text);
+			}
+		}
+
+		return results;
+	}
+
+	private List<String> cached(final List<String> texts, final Language source, final Language target,
+			final Lookup lookup)
+	{
+		if (texts == null || source == null || target == null)
+		{
+			return lookup.missing(texts);
+		}
+
+		final List<String> results = new ArrayList<String>(texts.size());
+		final List<String> missingTexts = new ArrayList<String>();
+		final List<Integer> missingPositions = new ArrayList<Integer>();
+
+		for (final String text : texts)
+		{
+			final String cached = text != null ? cache.get(new CacheKey(text, source, target)) : null;
+
+			if (cached == null)
+			{
+				missingTexts.add(text);
+				missingPositions.add(results.size());
+			}
+
+			results.add(cached);
+		}
+
+		if (!missingTexts.isEmpty())
+		{
+			final List<String> found = lookup.missing(missingTexts);
+
+			for (int i = 0; i < found.size(); i++)
+			{
+				results.set(missingPositions.get(i), found.get(i));
+				cache.put(new CacheKey(missingTexts.get(i), source, target), found.get(i));
+			}
+		}
+
+		return results;
+	}
+
+	private interface Lookup
+	{
+		List<String> missing(List<String> texts);
+	}
+}
@@ -0,0 +1,409 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+
+import org.apache.http.HttpStatus;
+import org.apache.log4j.Logger;
+
+/**
+ * Stops calls from reaching the service while it is failing, set through
+ * {@link Configuration#circuitBreaker(CircuitBreaker)}. The breaker starts closed and records the outcome of the
+ * latest calls. When enough of them have failed to connect or got a server error, or have been too slow, it opens and
+ * every call fails at once with a {@link CircuitOpenException}. After a while it lets a few trial calls through, half
+ * open, and closes again if they all go well or opens again as soon as one does not. Instances are thread-safe and
+ * tell their listeners about every change of state.
+ */
+public class CircuitBreaker
+{
+	/**
+	 * The states of a circuit breaker.
+	 */
+	public enum State
+	{
+		/** Calls go through and their outcomes are recorded */
+		CLOSED,
+
+		/** Calls are refused */
+		OPEN,
+
+		/** A limited number of trial calls go through to find out whether the service has recovered */
+		HALF_OPEN
+	}
+
+	/**
+	 * Told about the changes of state of a circuit breaker, on the thread whose call caused them.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called when the breaker has changed state.
+		 * 
+		 * @param breaker
+		 *            the breaker
+		 * @param from
+		 *            the state it left
+		 * @param to
+		 *            the state it entered
+		 */
+		void stateChanged(CircuitBreaker breaker, State from, State to);
+	}
+
+	private static final Logger log = Logger.getLogger(CircuitBreaker.class);
+
+	private int minimumCalls = 10;
+	private int failureRateThreshold = 50;
+	private int slowCallRateThreshold = 80;
+	private long slowCallNanos = TimeUnit.SECONDS.toNanos(5);
+	private long openNanos = TimeUnit.SECONDS.toNanos(30);
+	private int trialCalls = 3;
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private final AtomicLong refusedCalls = new AtomicLong();
+
+	private State state = State.CLOSED;
+	private boolean[] failed = new boolean[20];
+	private boolean[] slow = new boolean[20];
+	private int next;
+	private int recorded;
+	private int failures;
+	private int slowCalls;
+	private long openedAt;
+	private int trialsLeft;
+	private int trialsPassed;
+
+	/**
+	 * Sets the number of latest calls whose outcomes are considered, 20 by default, and the number of them that must
+	 * have been recorded before the breaker may open, 10 by default.
+	 * 
+	 * @param size
+	 *            the number of calls considered
+	 * @param minimumCalls
+	 *            the number of calls needed to open
+	 * @return this breaker
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if either number is not positive or the minimum is greater than the size
+	 */
+	public synchronized CircuitBreaker slidingWindow(final int size, final int minimumCalls)
+	{
+		ensure(size > 0, "sliding window size [%s] must be positive", size);
+		ensure(minimumCalls > 0 && minimumCalls <= size, "minimum calls [%s] must be between 1 and [%s]",
+				minimumCalls, size);
+
+		this.minimumCalls = minimumCalls;
+		failed = new boolean[size];
+		slow = new boolean[size];
+		clearWindow();
+
+		return this;
+	}
+
+	/**
+	 * Sets the percentage of failed calls in the window at which the breaker opens. 50 by default.
+	 * 
+	 * @param percentage
+	 *            the percentage
+	 * @return this breaker
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the percentage is not between 1 and 100
+	 */
+	public synchronized CircuitBreaker failureRateThreshold(final int percentage)
+	{
+		failureRateThreshold = toPercentage(percentage, "failure rate threshold");
+
+		return this;
+	}
+
+	/**
+	 * Sets the percentage of slow calls in the window at which the breaker opens. 80 by default.
+	 * 
+	 * @param percentage
+	 *            the percentage
+	 * @return this breaker
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the percentage is not between 1 and 100
+	 */
+	public synchronized CircuitBreaker slowCallRateThreshold(final int percentage)
+	{
+		slowCallRateThreshold = toPercentage(percentage, "slow call rate threshold");
+
+		return this;
+	}
+
+	/**
+	 * Sets how long a call must take to count as slow. 5 seconds by default.
+	 * 
+	 * @param duration
+	 *            the duration
+	 * @param unit
+	 *            the unit of the duration
+	 * @return this breaker
+	 */
+	public synchronized CircuitBreaker slowCallDuration(final long duration, final TimeUnit unit)
+	{
+		slowCallNanos = TimeUnit.MILLISECONDS.toNanos(Configuration.toPositiveMillis(duration, unit,
+				"slow call duration"));
+
+		return this;
+	}
+
+	/**
+	 * Sets how long the breaker stays open before it lets trial calls through. 30 seconds by default.
+	 * 
+	 * @param duration
+	 *            the duration
+	 * @param unit
+	 *            the unit of the duration
+	 * @return this breaker
+	 */
+	public synchronized CircuitBreaker openDuration(final long duration, final TimeUnit unit)
+	{
+		openNanos = TimeUnit.MILLISECONDS.toNanos(Configuration.toPositiveMillis(duration, unit, "open duration"));
+
+		return this;
+	}
+
+	/**
+	 * Sets the number of trial calls that must go well, while half open, for the breaker to close. 3 by default.
+	 * 
+	 * @param trialCalls
+	 *            the number of trial calls
+	 * @return this breaker
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the number is not positive
+	 */
+	public synchronized CircuitBreaker trialCalls(final int trialCalls)
+	{
+		ensure(trialCalls > 0, "trial calls [%s] must be positive", trialCalls);
+
+		this.trialCalls = trialCalls;
+
+		return this;
+	}
+
+	/**
+	 * Adds a listener to be told about the changes of state of this breaker.
+	 * 
+	 * @param listener
+	 *            the listener
+	 * @return this breaker
+	 * 
+	 * @throws NullPointerException
+	 *             if the listener is null
+	 */
+	public CircuitBreaker addListener(final Listener listener)
+	{
+		ensureNotNull(listener, "listener");
+
+		listeners.add(listener);
+
+		return this;
+	}
+
+	/**
+	 * Gets the current state. An open breaker whose open duration has passed is reported as open until the next call
+	 * makes it half open.
+	 * 
+	 * @return the state
+	 */
+	public synchronized State getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Gets the number of calls refused because the breaker was open, or half open with all its trial calls under way.
+	 * 
+	 * @return the number of calls refused
+	 */
+	public long getRefusedCalls()
+	{
+		return refusedCalls.get();
+	}
+
+	/**
+	 * Lets a call through or refuses it.
+	 * 
+	 * @throws CircuitOpenException
+	 *             if the call is refused
+	 */
+	void acquire()
+	{
+		final State from;
+		final State to;
+		final boolean permitted;
+
+		synchronized (this)
+		{
+			from = state;
+
+			if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos)
+			{
+				state = State.HALF_OPEN;
+				trialsLeft = trialCalls;
+				trialsPassed = 0;
+			}
+
+			permitted = state == State.CLOSED || state == State.HALF_OPEN && trialsLeft-- > 0;
+			to = state;
+		}
+
+		tellListeners(from, to);
+
+		if (!permitted)
+		{
+			refusedCalls.incrementAndGet();
+
+			throw new CircuitOpenException(format("Circuit is %s, call to the service refused", to == State.OPEN
+					? "open" : "half open"));
+		}
+	}
+
+	void succeeded(final long durationNanos)
+	{
+		record(false, durationNanos);
+	}
+
+	/**
+	 * Records a call that failed. Only failures to connect and server errors count against the service; any other
+	 * failure shows that the service answered and is recorded as a success.
+	 */
+	void failed(final RuntimeException failure, final long durationNanos)
+	{
+		final boolean serviceFailed = failure instanceof ConnectionException || failure instanceof ResponseException
+				&& ((ResponseException) failure).getStatusCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+
+		record(serviceFailed, durationNanos);
+	}
+
+	private void record(final boolean callFailed, final long durationNanos)
+	{
+		final boolean callSlow = durationNanos >= slowCallNanos;
+		final State from;
+		final State to;
+
+		synchronized (this)
+		{
+			from = state;
+
+			if (state == State.HALF_OPEN)
+			{
+				if (callFailed || callSlow)
+				{
+					open();
+				}
+				else if (++trialsPassed == trialCalls)
+				{
+					state = State.CLOSED;
+					clearWindow();
+				}
+			}
+			else if (state == State.CLOSED)
+			{
+				recordInWindow(callFailed, callSlow);
+
+				if (recorded >= minimumCalls && (failures * 100 >= failureRateThreshold * recorded
+						|| slowCalls * 100 >= slowCallRateThreshold * recorded))
+				{
+					open();
+				}
+			}
+
+			to = state;
+		}
+
+		tellListeners(from, to);
+	}
+
+	private void recordInWindow(final boolean callFailed, final boolean callSlow)
+	{
+		if (recorded == failed.length)
+		{
+			failures -= failed[next] ? 1 : 0;
+			slowCalls -= slow[next] ? 1 : 0;
+		}
+		else
+		{
+			recorded++;
+		}
+
+		failed[next] = callFailed;
+		slow[next] = callSlow;
+		failures += callFailed ? 1 : 0;
+		slowCalls += callSlow ? 1 : 0;
+		next = (next + 1) % failed.length;
+	}
+
+	private void open()
+	{
+		state = State.OPEN;
+		openedAt = System.nanoTime();
+		clearWindow();
+	}
+
+	private void clearWindow()
+	{
+		Arrays.fill(failed, false);
+		Arrays.fill(slow, false);
+		next = 0;
+		recorded = 0;
+		failures = 0;
+		slowCalls = 0;
+	}
+
+	private void tellListeners(final State from, final State to)
+	{
+		if (from == to)
+		{
+			return;
+		}
+
+		log.info(format("circuit breaker went from %s to %s", from, to));
+
+		for (final Listener listener : listeners)
+		{
+			try
+			{
+				listener.stateChanged(this, from, to);
+			}
+			catch (final RuntimeException exception)
+			{
+				log.warn("circuit breaker listener failed", exception);
+			}
+		}
+	}
+
+	private static int toPercentage(final int percentage, final String name)
+	{
+		ensure(percentage > 0 && percentage <= 100, "%s [%s] must be between 1 and 100", name, percentage);
+
+		return percentage;
+	}
+}
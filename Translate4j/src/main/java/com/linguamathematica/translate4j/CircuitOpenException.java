@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+/**
+ * Thrown instead of calling the service while a {@link CircuitBreaker} is open, because recent calls have been failing
+ * or too slow.
+ */
+public class CircuitOpenException extends ConnectionException
+{
+	private static final long serialVersionUID = -2386107561487305528L;
+
+	/**
+	 * Instantiates a new circuit open exception.
+	 * 
+	 * @param message
+	 *            the message
+	 */
+	public CircuitOpenException(final String message)
+	{
+		super(message, null);
+	}
+}
@@ -0,0 +1,373 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+
+import org.apache.http.HttpStatus;
+import org.apache.log4j.Logger;
+
+/**
+ * Limits the number of requests in flight to the service to what it can take, set through
+ * {@link Configuration#concurrencyLimit(ConcurrencyLimit)}. The limit adapts with AIMD: it grows by one with every
+ * request that is answered in a usual time while the limit is in use, and is cut by a ratio whenever a request fails
+ * to connect, gets a server error or a 429, or takes much longer than the average of the latest requests.
+ * <p>
+ * A request over the limit is queued until another one finishes, up to a maximum wait, or is shed with a
+ * {@link RequestRejectedException} if the queue is full or the wait runs out. Interactive and bulk requests, as told
+ * by their {@link Priority}, have queues of their own. Bulk requests may only use part of the limit, and only go once
+ * no interactive request is queued, so that interactive latency holds while bulk work uses the capacity left.
+ * Instances are thread-safe and may be shared by several translators, to limit them together.
+ */
+public class ConcurrencyLimit
+{
+	private static final int TOO_MANY_REQUESTS = 429;
+	private static final double AVERAGING_WEIGHT = 0.05;
+
+	private static final Logger log = Logger.getLogger(ConcurrencyLimit.class);
+
+	private int minLimit = 1;
+	private int maxLimit = 200;
+	private double backoffRatio = 0.9;
+	private double latencyTolerance = 2;
+	private int maxQueueSize = 100;
+	private long maxQueueWaitNanos = TimeUnit.SECONDS.toNanos(5);
+	private double bulkShare = 0.8;
+
+	private int limit = 20;
+	private int inFlight;
+	private final int[] queued = new int[Priority.values().length];
+	private long shedRequests;
+	private double averageNanos;
+
+	/**
+	 * Sets the lowest and highest the limit can go, 1 and 200 by default, and the limit to start from, 20 by default.
+	 * 
+	 * @param minLimit
+	 *            the lowest limit
+	 * @param initialLimit
+	 *            the limit to start from
+	 * @param maxLimit
+	 *            the highest limit
+	 * @return this limit
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the lowest limit is not positive or the limits are not in order
+	 */
+	public synchronized ConcurrencyLimit limits(final int minLimit, final int initialLimit, final int maxLimit)
+	{
+		ensure(minLimit > 0, "min limit [%s] must be positive", minLimit);
+		ensure(minLimit <= initialLimit && initialLimit <= maxLimit,
+				"initial limit [%s] must be between [%s] and [%s]", initialLimit, minLimit, maxLimit);
+
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		limit = initialLimit;
+
+		return this;
+	}
+
+	/**
+	 * Sets the ratio the limit is multiplied by when the service shows signs of overload. 0.9 by default.
+	 * 
+	 * @param backoffRatio
+	 *            the ratio
+	 * @return this limit
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the ratio is not greater than 0 and less than 1
+	 */
+	public synchronized ConcurrencyLimit backoffRatio(final double backoffRatio)
+	{
+		ensure(backoffRatio > 0 && backoffRatio < 1, "backoff ratio [%s] must be greater than 0 and less than 1",
+				backoffRatio);
+
+		this.backoffRatio = backoffRatio;
+
+		return this;
+	}
+
+	/**
+	 * Sets how many times longer than the average of the latest requests a request may take before the limit is cut.
+	 * 2 by default.
+	 * 
+	 * @param latencyTolerance
+	 *            the number of times the average
+	 * @return this limit
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the tolerance is not greater than 1
+	 */
+	public synchronized ConcurrencyLimit latencyTolerance(final double latencyTolerance)
+	{
+		ensure(latencyTolerance > 1, "latency tolerance [%s] must be greater than 1", latencyTolerance);
+
+		this.latencyTolerance = latencyTolerance;
+
+		return this;
+	}
+
+	/**
+	 * Sets the number of requests that may queue for the limit, 100 by default, and the longest each waits before it
+	 * is shed, 5 seconds by default. A queue of zero sheds requests over the limit at once.
+	 * 
+	 * @param maxSize
+	 *            the maximum number of requests queued
+	 * @param maxWait
+	 *            the maximum wait
+	 * @param unit
+	 *            the unit of the wait
+	 * @return this limit
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the size or the wait is negative
+	 */
+	public synchronized ConcurrencyLimit queue(final int maxSize, final long maxWait, final TimeUnit unit)
+	{
+		ensureNotNull(unit, "time unit");
+		ensure(maxSize >= 0, "max queue size [%s] cannot be negative", maxSize);
+		ensure(maxWait >= 0, "max queue wait [%s] cannot be negative", maxWait);
+
+		maxQueueSize = maxSize;
+		maxQueueWaitNanos = unit.toNanos(maxWait);
+
+		return this;
+	}
+
+	/**
+	 * Sets the share of the limit bulk requests may use, leaving the rest for interactive ones. 0.8 by default; 1 lets
+	 * bulk requests use all of it while no interactive request is queued.
+	 * 
+	 * @param bulkShare
+	 *            the share of the limit, greater than 0 and up to 1
+	 * @return this limit
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the share is not greater than 0 or is greater than 1
+	 */
+	public synchronized ConcurrencyLimit bulkShare(final double bulkShare)
+	{
+		ensure(bulkShare > 0 && bulkShare <= 1, "bulk share [%s] must be greater than 0 and at most 1", bulkShare);
+
+		this.bulkShare = bulkShare;
+
+		return this;
+	}
+
+	/**
+	 * Gets the current limit on the requests in flight.
+	 * 
+	 * @return the limit
+	 */
+	public synchronized int getLimit()
+	{
+		return limit;
+	}
+
+	/**
+	 * Gets the number of requests in flight.
+	 * 
+	 * @return the number of requests
+	 */
+	public synchronized int getInFlight()
+	{
+		return inFlight;
+	}
+
+	/**
+	 * Gets the number of requests queued for the limit.
+	 * 
+	 * @return the queue depth
+	 */
+	public synchronized int getQueueDepth()
+	{
+		int depth = 0;
+
+		for (final int lane : queued)
+		{
+			depth += lane;
+		}
+
+		return depth;
+	}
+
+	/**
+	 * Gets the number of requests of the given priority queued for the limit.
+	 * 
+	 * @param priority
+	 *            the priority
+	 * @return the queue depth
+	 */
+	public synchronized int getQueueDepth(final Priority priority)
+	{
+		return queued[priority.ordinal()];
+	}
+
+	/**
+	 * Gets the number of requests shed because the queue was full or their wait ran out.
+	 * 
+	 * @return the number of requests shed
+	 */
+	public synchronized long getShedRequests()
+	{
+		return shedRequests;
+	}
+
+	/**
+	 * Waits, if need be, until a request may be sent without going over the limit, and counts it as in flight.
+	 * 
+	 * @throws RequestRejectedException
+	 *             if the queue is full or the request waited the longest it may
+	 * @throws DeadlineExceededException
+	 *             if the deadline of the call passed while the request was queued
+	 */
+	synchronized void acquire(final Priority priority, final Deadline deadline)
+	{
+		final int lane = priority.ordinal();
+
+		if (!admits(priority) && queued[lane] >= maxQueueSize)
+		{
+			throw shed(format("[%s] requests in flight and [%s] %s requests queued", inFlight, queued[lane], priority));
+		}
+
+		final long maxWaitNanos = Math.min(maxQueueWaitNanos, deadline.remainingNanos());
+		final long start = System.nanoTime();
+
+		queued[lane]++;
+
+		try
+		{
+			while (!admits(priority))
+			{
+				final long waitNanos = maxWaitNanos - (System.nanoTime() - start);
+
+				if (waitNanos <= 0)
+				{
+					deadline.ensureNotPassed("queued for the concurrency limit");
+
+					throw shed(format("[%s] requests still in flight after waiting [%s] ms", inFlight,
+							TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos)));
+				}
+
+				TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+			}
+		}
+		catch (final InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+
+			throw new RequestRejectedException("Interrupted while queued for the concurrency limit");
+		}
+		finally
+		{
+			queued[lane]--;
+			notifyAll();
+		}
+
+		inFlight++;
+	}
+
+	synchronized void succeeded(final long nanos)
+	{
+		final boolean limitInUse = inFlight * 2 >= limit;
+
+		released();
+
+		if (averageNanos != 0 && nanos > latencyTolerance * averageNanos)
+		{
+			cut(format("took [%s] ms, average is [%s] ms", TimeUnit.NANOSECONDS.toMillis(nanos), TimeUnit.NANOSECONDS
+					.toMillis((long) averageNanos)));
+		}
+		else if (limitInUse && limit < maxLimit)
+		{
+			limit++;
+			notifyAll();
+		}
+
+		averageNanos = averageNanos == 0 ? nanos : averageNanos + AVERAGING_WEIGHT * (nanos - averageNanos);
+	}
+
+	/**
+	 * Records that the request failed, which only cuts the limit if the failure shows that the service is overloaded.
+	 */
+	synchronized void failed(final RuntimeException failure, final long nanos)
+	{
+		released();
+
+		if (isOverload(failure))
+		{
+			cut(format("failed with %s", failure));
+		}
+	}
+
+	private boolean admits(final Priority priority)
+	{
+		if (priority == Priority.INTERACTIVE)
+		{
+			return inFlight < limit;
+		}
+
+		return queued[Priority.INTERACTIVE.ordinal()] == 0 && inFlight < Math.max(1, (int) (limit * bulkShare));
+	}
+
+	private void released()
+	{
+		inFlight--;
+		notifyAll();
+	}
+
+	private void cut(final String cause)
+	{
+		final int cutLimit = Math.max(minLimit, (int) (limit * backoffRatio));
+
+		if (cutLimit < limit)
+		{
+			log.debug(format("concurrency limit cut from %s to %s, a request %s", limit, cutLimit, cause));
+
+			limit = cutLimit;
+		}
+	}
+
+	private RequestRejectedException shed(final String reason)
+	{
+		shedRequests++;
+
+		return new RequestRejectedException(format("Request shed by the concurrency limit of [%s]: %s", limit,
+				reason));
+	}
+
+	private static boolean isOverload(final RuntimeException failure)
+	{
+		if (failure instanceof CircuitOpenException)
+		{
+			return false;
+		}
+
+		if (failure instanceof ResponseException)
+		{
+			final int status = ((ResponseException) failure).getStatusCode();
+
+			return status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == TOO_MANY_REQUESTS;
+		}
+
+		return failure instanceof ConnectionException;
+	}
+}
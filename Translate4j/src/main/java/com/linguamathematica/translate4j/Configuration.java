@@ -0,0 +1,526 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+
+/**
+ * Tuning options for a {@link Translator}. Every option has a sensible default, so only the ones that matter need to
+ * be set. A configuration is read once, when the translator is created; changing it afterwards has no effect on
+ * translators that already exist.
+ */
+public class Configuration
+{
+	int maxConnections = 200;
+	int maxConnectionsPerRoute = 100;
+	long keepAliveMillis = TimeUnit.SECONDS.toMillis(30);
+	long idleConnectionTimeoutMillis = TimeUnit.SECONDS.toMillis(60);
+	int connectTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(10);
+	int socketTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(30);
+	long poolTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+	long deadlineNanos;
+	int asyncThreads = 16;
+	int documentConcurrency = 4;
+	long maxResponseSize = 1024 * 1024;
+	int postThreshold = 2000;
+	int maxCharactersPerRequest = 5000;
+	boolean gzipRequests;
+	boolean singleFlight = true;
+	ExecutorService executor;
+	TranslationCache cache;
+	Batching batching;
+	RetryPolicy retryPolicy = new RetryPolicy();
+	CircuitBreaker circuitBreaker;
+	ConcurrencyLimit concurrencyLimit;
+	Hedging hedging;
+	LanguageDetector localDetector;
+	double localDetectionConfidence;
+	RateLimit rateLimit;
+
+	/**
+	 * Sets the number of threads the translator starts, on first use, to run asynchronous calls. Ignored if an
+	 * executor is supplied with {@link #executor(ExecutorService)}.
+	 *
+	 * @param asyncThreads
+	 *            the number of threads
+	 * @return this configuration
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number is not positive
+	 */
+	public Configuration asyncThreads(final int asyncThreads)
+	{
+		ensure(asyncThreads > 0, "async threads [%s] must be positive", asyncThreads);
+
+		this.asyncThreads = asyncThreads;
+
+		return this;
+	}
+
+	/**
+	 * Sets how concurrent calls to translate a single text, or to detect its language, are coalesced into batch
+	 * requests. Without it, every such call is a request of its own.
+	 *
+	 * @param batching
+	 *            the batching settings, which also collect statistics on the batches sent
+	 * @return this configuration
+	 *
+	 * @throws NullPointerException
+	 *             if the settings are null
+	 */
+	public Configuration batching(final Batching batching)
+	{
+		ensureNotNull(batching, "batching");
+
+		this.batching = batching;
+
+		return this;
+	}
+
+	/**
+	 * Sets the cache placed in front of the translator. Without one, every call goes to the service.
+	 *
+	 * @param cache
+	 *            the cache
+	 * @return this configuration
+	 *
+	 * @throws NullPointerException
+	 *             if the cache is null
+	 */
+	public Configuration cache(final TranslationCache cache)
+	{
+		ensureNotNull(cache, "cache");
+
+		this.cache = cache;
+
+		return this;
+	}
+
+	/**
+	 * Sets the circuit breaker that stops requests from being sent while the service is failing. Without one, every
+	 * request is sent however many have just failed.
+	 *
+	 * @param circuitBreaker
+	 *            the circuit breaker, which may be shared by several translators
+	 * @return this configuration
+	 *
+	 * @throws NullPointerException
+	 *             if the breaker is null
+	 */
+	public Configuration circuitBreaker(final CircuitBreaker circuitBreaker)
+	{
+		ensureNotNull(circuitBreaker, "circuit breaker");
+
+		this.circuitBreaker = circuitBreaker;
+
+		return this;
+	}
+
+	/**
+	 * Sets the limit on the requests in flight to the service, which adapts to how the service copes with them.
+	 * Without one, requests are only limited by the size of the connection pool.
+	 *
+	 * @param concurrencyLimit
+	 *            the limit, which may be shared by several translators
+	 * @return this configuration
+	 *
+	 * @throws NullPointerException
+	 *             if the limit is null
+	 */
+	public Configuration concurrencyLimit(final ConcurrencyLimit concurrencyLimit)
+	{
+		ensureNotNull(concurrencyLimit, "concurrency limit");
+
+		this.concurrencyLimit = concurrencyLimit;
+
+		return this;
+	}
+
+	/**
+	 * Sets how long opening a connection to the service may take before it is abandoned. 10 seconds by default.
+	 *
+	 * @param timeout
+	 *            the timeout
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return this configuration
+	 */
+	public Configuration connectTimeout(final long timeout, final TimeUnit unit)
+	{
+		connectTimeoutMillis = toIntMillis(toPositiveMillis(timeout, unit, "connect timeout"));
+
+		return this;
+	}
+
+	/**
+	 * Sets how long a call may take in all, including the time spent waiting for the rate limit, for a pooled
+	 * connection and between retries. A request still in flight when the deadline passes is aborted, and the call fails
+	 * with a {@link DeadlineExceededException}. Calls have no deadline by default.
+	 *
+	 * @param deadline
+	 *            the time a call may take
+	 * @param unit
+	 *            the unit of the time
+	 * @return this configuration
+	 */
+	public Configuration deadline(final long deadline, final TimeUnit unit)
+	{
+		deadlineNanos = TimeUnit.MILLISECONDS.toNanos(toPositiveMillis(deadline, unit, "deadline"));
+
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of parts of a document translated at the same time by
+	 * {@link Translator#translateDocument(String, Language, Language)}. The calling thread translates one of them and
+	 * the translator's asynchronous threads, or the supplied executor, the others.
+	 *
+	 * @param documentConcurrency
+	 *            the number of parts
+	 * @return this configuration
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number is not positive
+	 */
+	public Configuration documentConcurrency(final int documentConcurrency)
+	{
+		ensure(documentConcurrency > 0, "document concurrency [%s] must be positive", documentConcurrency);
+
+		this.documentConcurrency = documentConcurrency;
+
+		return this;
+	}
+
+	/**
+	 * Sets the executor that runs asynchronous calls instead of the translator's own threads. On a JVM that supports
+	 * them, an executor that starts a virtual thread per task lets thousands of calls be in flight at once. The
+	 * executor is not shut down when the translator is disposed.
+	 *
+	 * @param executor
+	 *            the executor
+	 * @return this configuration
+	 *
+	 * @throws NullPointerException
+	 *             if the executor is null
+	 */
+	public Configuration executor(final ExecutorService executor)
+	{
+		ensureNotNull(executor, "executor");
+
+		this.executor = executor;
+
+		return this;
+	}
+
+	/**
+	 * Sets the default time a connection is kept alive for reuse when the service does not say how long it will keep
+	 * it open.
+	 *
+	 * @param duration
+	 *            the duration
+	 * @param unit
+	 *            the unit of the duration
+	 * @return this configuration
+	 */
+	public Configuration keepAlive(final long duration, final TimeUnit unit)
+	{
+		keepAliveMillis = toPositiveMillis(duration, unit, "keep alive");
+
+		return this;
+	}
+
+	/**
+	 * Sets how long a pooled connection may sit unused before it is closed.
+	 *
+	 * @param duration
+	 *            the duration
+	 * @param unit
+	 *            the unit of the duration
+	 * @return this configuration
+	 */
+	public Configuration idleConnectionTimeout(final long duration, final TimeUnit unit)
+	{
+		idleConnectionTimeoutMillis = toPositiveMillis(duration, unit, "idle connection timeout");
+
+		return this;
+	}
+
+	/**
+	 * Sets a detector that tells the language of texts locally, so that only the detections it is less confident about
+	 * than the given confidence are asked of the service. Without one, every detection goes to the service.
+	 *
+	 * @param detector
+	 *            the detector, such as {@link LanguageDetector#builtIn()}
+	 * @param minConfidence
+	 *            the confidence from which the detector's guess is taken, between 0 and 1
+	 * @return this configuration
+	 *
+	 * @throws NullPointerException
+	 *             if the detector is null
+	 * @throws IllegalArgumentException
+	 *             if the confidence is not between 0 and 1
+	 */
+	public Configuration localDetection(final LanguageDetector detector, final double minConfidence)
+	{
+		ensureNotNull(detector, "detector");
+		ensure(minConfidence >= 0 && minConfidence <= 1, "min confidence [%s] must be between 0 and 1", minConfidence);
+
+		localDetector = detector;
+		localDetectionConfidence = minConfidence;
+
+		return this;
+	}
+
+	/**
+	 * Sets the largest response body, in bytes, the translator accepts. Reading a longer one is abandoned and reported
+	 * with a {@link ResponseException}, whether or not the service announced its length.
+	 *
+	 * @param maxResponseSize
+	 *            the maximum size in bytes
+	 * @return this configuration
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the size is not positive
+	 */
+	public Configuration maxResponseSize(final long maxResponseSize)
+	{
+		ensure(maxResponseSize > 0, "max response size [%s] must be positive", maxResponseSize);
+
+		this.maxResponseSize = maxResponseSize;
+
+		return this;
+	}
+
+	/**
+	 * Sets whether the bodies of POST requests are compressed with gzip. Off by default.
+	 *
+	 * @param gzipRequests
+	 *            true to compress request bodies
+	 * @return this configuration
+	 */
+	public Configuration gzipRequests(final boolean gzipRequests)
+	{
+		this.gzipRequests = gzipRequests;
+
+		return this;
+	}
+
+	/**
+	 * Sets how requests that are slower than usual are hedged with a second copy. Without it, a slow request is waited
+	 * for however long it takes.
+	 *
+	 * @param hedging
+	 *            the hedging settings, which also count the requests hedged
+	 * @return this configuration
+	 *
+	 * @throws NullPointerException
+	 *             if the settings are null
+	 */
+	public Configuration hedging(final Hedging hedging)
+	{
+		ensureNotNull(hedging, "hedging");
+
+		this.hedging = hedging;
+
+		return this;
+	}
+
+	/**
+	 * Sets the maximum total number of characters of text sent in one request when batching. Texts that do not fit are
+	 * sent in further requests.
+	 *
+	 * @param maxCharactersPerRequest
+	 *            the maximum number of characters
+	 * @return this configuration
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number is smaller than {@link Translator#MAX_TEXT_SIZE}
+	 */
+	public Configuration maxCharactersPerRequest(final int maxCharactersPerRequest)
+	{
+		ensure(maxCharactersPerRequest >= Translator.MAX_TEXT_SIZE,
+				"max characters per request [%s] must be at least [%s]", maxCharactersPerRequest,
+				Translator.MAX_TEXT_SIZE);
+
+		this.maxCharactersPerRequest = maxCharactersPerRequest;
+
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of connections the translator keeps open in total.
+	 *
+	 * @param maxConnections
+	 *            the maximum number of connections
+	 * @return this configuration
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number is not positive
+	 */
+	public Configuration maxConnections(final int maxConnections)
+	{
+		ensure(maxConnections > 0, "max connections [%s] must be positive", maxConnections);
+
+		this.maxConnections = maxConnections;
+
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of connections the translator keeps open to a single host.
+	 *
+	 * @param maxConnectionsPerRoute
+	 *            the maximum number of connections per host
+	 * @return this configuration
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number is not positive
+	 */
+	public Configuration maxConnectionsPerRoute(final int maxConnectionsPerRoute)
+	{
+		ensure(maxConnectionsPerRoute > 0, "max connections per route [%s] must be positive", maxConnectionsPerRoute);
+
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+
+		return this;
+	}
+
+	/**
+	 * Sets the length of encoded query above which requests are sent as a POST with a form body, and with the
+	 * X-HTTP-Method-Override header set to GET, instead of as a GET with the query in the URL.
+	 *
+	 * @param postThreshold
+	 *            the query length in characters
+	 * @return this configuration
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the threshold is negative
+	 */
+	public Configuration postThreshold(final int postThreshold)
+	{
+		ensure(postThreshold >= 0, "post threshold [%s] cannot be negative", postThreshold);
+
+		this.postThreshold = postThreshold;
+
+		return this;
+	}
+
+	/**
+	 * Sets how long a request may wait for a connection from the pool when all of them are in use. 10 seconds by
+	 * default.
+	 *
+	 * @param timeout
+	 *            the timeout
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return this configuration
+	 */
+	public Configuration poolTimeout(final long timeout, final TimeUnit unit)
+	{
+		poolTimeoutMillis = toPositiveMillis(timeout, unit, "pool timeout");
+
+		return this;
+	}
+
+	/**
+	 * Sets the limits on the requests, and characters of text, sent to the service. Without one, requests are sent as
+	 * fast as they are made.
+	 *
+	 * @param rateLimit
+	 *            the rate limit, which may be shared by several translators
+	 * @return this configuration
+	 *
+	 * @throws NullPointerException
+	 *             if the limit is null
+	 */
+	public Configuration rateLimit(final RateLimit rateLimit)
+	{
+		ensureNotNull(rateLimit, "rate limit");
+
+		this.rateLimit = rateLimit;
+
+		return this;
+	}
+
+	/**
+	 * Sets how requests that fail for a reason that may go away are retried. By default a request is sent up to 3
+	 * times, within a budget of retries shared by the translators created with this configuration.
+	 *
+	 * @param retryPolicy
+	 *            the retry policy, which also counts the retries made
+	 * @return this configuration
+	 *
+	 * @throws NullPointerException
+	 *             if the policy is null
+	 */
+	public Configuration retryPolicy(final RetryPolicy retryPolicy)
+	{
+		ensureNotNull(retryPolicy, "retry policy");
+
+		this.retryPolicy = retryPolicy;
+
+		return this;
+	}
+
+	/**
+	 * Sets whether a call that asks for a translation or detection already being requested by another thread waits
+	 * for that request and shares its result, or its failure, instead of sending a request of its own. On by default.
+	 *
+	 * @param singleFlight
+	 *            true to share requests in flight
+	 * @return this configuration
+	 */
+	public Configuration singleFlight(final boolean singleFlight)
+	{
+		this.singleFlight = singleFlight;
+
+		return this;
+	}
+
+	/**
+	 * Sets how long reading from a connection may wait for data before the request is abandoned. 30 seconds by
+	 * default.
+	 *
+	 * @param timeout
+	 *            the timeout
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return this configuration
+	 */
+	public Configuration socketTimeout(final long timeout, final TimeUnit unit)
+	{
+		socketTimeoutMillis = toIntMillis(toPositiveMillis(timeout, unit, "socket timeout"));
+
+		return this;
+	}
+
+	static long toPositiveMillis(final long duration, final TimeUnit unit, final String name)
+	{
+		ensureNotNull(unit, "time unit");
+		ensure(duration > 0, "%s [%s] must be positive", name, duration);
+
+		return unit.toMillis(duration);
+	}
+
+	private static int toIntMillis(final long millis)
+	{
+		return (int) Math.min(Integer.MAX_VALUE, millis);
+	}
+}
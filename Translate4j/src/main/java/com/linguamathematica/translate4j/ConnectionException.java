@@ -1,39 +1,39 @@
-/**
- * Copyright (C) 2010 the author
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package com.linguamathematica.translate4j;
-
-import java.io.IOException;
-
-/**
- * Thrown if the connection to the service is unsuccessful.
- */
-public class ConnectionException extends RuntimeException
-{
-	private static final long serialVersionUID = 6714956664568216691L;
-
-	/**
-	 * Instantiates a new connection exception.
-	 * 
-	 * @param message
-	 *            the message
-	 * @param cause
-	 *            the cause
-	 */
-	public ConnectionException(final String message, final IOException cause)
-	{
-		super(message, cause);
-	}
-}
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+
+/**
+ * Thrown if the connection to the service is unsuccessful.
+ */
+public class ConnectionException extends RuntimeException
+{
+	private static final long serialVersionUID = 6714956664568216691L;
+
+	/**
+	 * Instantiates a new connection exception.
+	 * 
+	 * @param message
+	 *            the message
+	 * @param cause
+	 *            the cause
+	 */
+	public ConnectionException(final String message, final IOException cause)
+	{
+		super(message, cause);
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * The time by which a call must have finished, counted from when it was made. A call without a deadline may take as
+ * long as it needs.
+ */
+class Deadline
+{
+	static final Deadline NONE = new Deadline(0);
+
+	private final long timeoutNanos;
+	private final long startedAt;
+
+	/**
+	 * Starts counting down to a deadline.
+	 * 
+	 * @param timeoutNanos
+	 *            the time the call may take, in nanoseconds, or 0 for no deadline
+	 */
+	Deadline(final long timeoutNanos)
+	{
+		this.timeoutNanos = timeoutNanos;
+
+		startedAt = System.nanoTime();
+	}
+
+	boolean isSet()
+	{
+		return timeoutNanos != 0;
+	}
+
+	/**
+	 * Gets the time left before the deadline, which is negative once it has passed.
+	 * 
+	 * @return the time left in nanoseconds, or Long.MAX_VALUE if there is no deadline
+	 */
+	long remainingNanos()
+	{
+		return isSet() ? timeoutNanos - (System.nanoTime() - startedAt) : Long.MAX_VALUE;
+	}
+
+	long remainingMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+	}
+
+	boolean hasPassed()
+	{
+		return remainingNanos() <= 0;
+	}
+
+	/**
+	 * Makes sure the deadline has not passed.
+	 * 
+	 * @param doing
+	 *            what the call was doing, to report if it has
+	 * 
+	 * @throws DeadlineExceededException
+	 *             if the deadline has passed
+	 */
+	void ensureNotPassed(final String doing)
+	{
+		if (hasPassed())
+		{
+			throw exceeded(doing);
+		}
+	}
+
+	DeadlineExceededException exceeded(final String doing)
+	{
+		return new DeadlineExceededException(format("Deadline of [%s] ms exceeded while %s", TimeUnit.NANOSECONDS
+				.toMillis(timeoutNanos), doing));
+	}
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+/**
+ * Thrown when a call has not finished by the deadline set with {@link Configuration#deadline}, whether it was waiting
+ * for the rate limit, a connection, a retry or the response. A request in flight when the deadline passes is aborted.
+ */
+public class DeadlineExceededException extends ConnectionException
+{
+	private static final long serialVersionUID = 4128075903215669358L;
+
+	/**
+	 * Instantiates a new deadline exceeded exception.
+	 * 
+	 * @param message
+	 *            the message
+	 */
+	public DeadlineExceededException(final String message)
+	{
+		super(message, null);
+	}
+}
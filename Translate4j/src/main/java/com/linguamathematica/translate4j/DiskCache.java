@@ -0,0 +1,767 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import static java.lang.String.format;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A cache kept in a memory-mapped, append-only log file, so that its results survive restarts and crashes of the
+ * process. Every result is appended as a record of its key and value in UTF-8, with a checksum. When a log is opened it
+ * is read up to the first record that is incomplete or fails its checksum, which is as far as a crash let it get.
+ * <p>
+ * Records are found through a hash index that holds a long per result on the heap: the hash of its key and the offset
+ * of its record. A hit compares the key in place in the mapped file and only decodes the value. Results that are
+ * replaced are left in the log as garbage; when there is too much of it, or the log is filling up, the live records
+ * are copied into a new log in the background, dropping the oldest if they take more than half of it, and the new log
+ * replaces the old one. Results that do not fit while that happens are not admitted.
+ */
+class DiskCache extends TranslationCache
+{
+	private static final Logger log = Logger.getLogger(DiskCache.class);
+
+	private static final int MAGIC = 0x7434634c;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_HEADER_SIZE = 12;
+	private static final int END = 0;
+	private static final int INITIAL_SLOTS = 1024;
+	private static final int WALK_CHUNK_SIZE = 64 * 1024;
+	private static final Pattern LOG_NAME = Pattern.compile("translations-(\\d+)\\.log");
+
+	private final File directory;
+	private final int maxBytes;
+	private final ExecutorService compactor = Executors.newSingleThreadExecutor(Workers
+			.daemonThreads("translate4j-cache-compactor-%s"));
+
+	private Segment segment;
+	private long[] slots = new long[INITIAL_SLOTS];
+	private int count;
+	private int garbage;
+	private int epoch;
+	private boolean compacting;
+	private boolean closed;
+
+	DiskCache(final File directory, final int maxBytes) throws IOException
+	{
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException(format("Cannot create cache directory [%s]", directory));
+		}
+
+		segment = openLatest();
+		recover();
+
+		log.info(format("Opened cache log [%s] with [%s] results", segment.file, count));
+
+		if (segment.size() != maxBytes || needsCompaction())
+		{
+			compactInBackground();
+		}
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		if (closed)
+		{
+			return;
+		}
+
+		segment.buffer.putInt(HEADER_SIZE, END);
+		segment.tail = HEADER_SIZE;
+		slots = new long[INITIAL_SLOTS];
+		count = 0;
+		garbage = 0;
+		epoch++;
+	}
+
+	@Override
+	public void close()
+	{
+		synchronized (this)
+		{
+			if (closed)
+			{
+				return;
+			}
+
+			closed = true;
+			segment.close();
+		}
+
+		compactor.shutdown();
+	}
+
+	@Override
+	public synchronized int getSize()
+	{
+		return count;
+	}
+
+	@Override
+	synchronized String get(final CacheKey key)
+	{
+		if (!closed)
+		{
+			final byte[] bytes = key.toBytes();
+			final long entry = slots[find(bytes, hashOf(bytes))];
+
+			if (entry != 0)
+			{
+				hit();
+
+				return CacheKey.decoded(segment.valueAt((int) entry));
+			}
+		}
+
+		miss();
+
+		return null;
+	}
+
+	@Override
+	synchronized void put(final CacheKey key, final String value)
+	{
+		if (closed)
+		{
+			return;
+		}
+
+		if (!append(key.toBytes(), CacheKey.encoded(value)))
+		{
+			evicted();
+		}
+
+		if (needsCompaction())
+		{
+			compactInBackground();
+		}
+	}
+
+	@Override
+	void forEachKey(final KeyVisitor visitor)
+	{
+		final Walk walk = new Walk();
+		final List<byte[]> keys = new ArrayList<byte[]>();
+
+		while (nextRecords(walk, keys, null))
+		{
+			for (final byte[] key : keys)
+			{
+				visitor.visit(CacheKey.fromBytes(key));
+			}
+
+			keys.clear();
+		}
+	}
+
+	@Override
+	void forEachResult(final ResultVisitor visitor) throws IOException
+	{
+		final Walk walk = new Walk();
+		final List<byte[]> keys = new ArrayList<byte[]>();
+		final List<byte[]> values = new ArrayList<byte[]>();
+
+		while (nextRecords(walk, keys, values))
+		{
+			for (int i = 0; i < keys.size(); i++)
+			{
+				visitor.visit(CacheKey.fromBytes(keys.get(i)), CacheKey.decoded(values.get(i)));
+			}
+
+			keys.clear();
+			values.clear();
+		}
+	}
+
+	/**
+	 * Copies out the keys of the live records from where the walk got to and, if given a list for them, their values,
+	 * about {@link #WALK_CHUNK_SIZE} bytes of the log at a time. Records do not move in a log, so the walk starts again
+	 * from the first record only if the log was cleared or compacted meanwhile.
+	 *
+	 * @return false once the walk has reached the end of the log
+	 */
+	private synchronized boolean nextRecords(final Walk walk, final List<byte[]> keys, final List<byte[]> values)
+	{
+		if (walk.epoch != epoch)
+		{
+			walk.epoch = epoch;
+			walk.offset = HEADER_SIZE;
+		}
+
+		if (closed || walk.offset >= segment.tail)
+		{
+			return false;
+		}
+
+		for (final int start = walk.offset; walk.offset < segment.tail && walk.offset - start < WALK_CHUNK_SIZE;)
+		{
+			final byte[] key = segment.keyAt(walk.offset);
+
+			if (isLiveAt(walk.offset, key))
+			{
+				keys.add(key);
+
+				if (values != null)
+				{
+					values.add(segment.valueAt(walk.offset));
+				}
+			}
+
+			walk.offset += segment.recordSizeAt(walk.offset);
+		}
+
+		return true;
+	}
+
+	private boolean isLiveAt(final int offset, final byte[] key)
+	{
+		final long entry = slots[find(key, hashOf(key))];
+
+		return entry != 0 && (int) entry == offset;
+	}
+
+	private boolean append(final byte[] key, final byte[] value)
+	{
+		final int offset = segment.tail;
+		final int size = RECORD_HEADER_SIZE + key.length + value.length;
+		final ByteBuffer buffer = segment.buffer;
+
+		if ((long) offset + size + 4 > segment.size())
+		{
+			return false;
+		}
+
+		buffer.putInt(offset + size, END);
+		buffer.position(offset + RECORD_HEADER_SIZE);
+		buffer.put(key).put(value);
+		buffer.putInt(offset + 4, value.length);
+		buffer.putInt(offset + 8, checksum(key, value));
+		buffer.putInt(offset, key.length);
+		segment.tail += size;
+
+		index(key, offset);
+
+		return true;
+	}
+
+	private void index(final byte[] key, final int offset)
+	{
+		final int hash = hashOf(key);
+		final int slot = find(key, hash);
+
+		if (slots[slot] != 0)
+		{
+			garbage += segment.recordSizeAt((int) slots[slot]);
+		}
+		else
+		{
+			count++;
+		}
+
+		slots[slot] = (long) hash << 32 | offset;
+
+		if (count * 2 > slots.length)
+		{
+			final long[] old = slots;
+
+			slots = new long[old.length * 2];
+
+			for (final long entry : old)
+			{
+				insert(slots, entry);
+			}
+		}
+	}
+
+	private int find(final byte[] key, final int hash)
+	{
+		final int mask = slots.length - 1;
+
+		for (int slot = hash & mask;; slot = (slot + 1) & mask)
+		{
+			final long entry = slots[slot];
+
+			if (entry == 0 || (int) (entry >>> 32) == hash && segment.hasKeyAt((int) entry, key))
+			{
+				return slot;
+			}
+		}
+	}
+
+	private boolean needsCompaction()
+	{
+		final int used = segment.tail - HEADER_SIZE;
+
+		return segment.tail > segment.size() / 4 * 3 || used > segment.size() / 8 && garbage > used / 2;
+	}
+
+	private void compactInBackground()
+	{
+		if (compacting || closed)
+		{
+			return;
+		}
+
+		final long[] live = new long[count];
+		int i = 0;
+
+		for (final long entry : slots)
+		{
+			if (entry != 0)
+			{
+				live[i++] = entry << 32 | entry >>> 32;
+			}
+		}
+
+		Arrays.sort(live);
+
+		compacting = true;
+		compactor.execute(new Compaction(segment, live, segment.tail, epoch));
+	}
+
+	/**
+	 * Makes the compacted log the one in use, if nothing was cleared or closed meanwhile, and appends to it the results
+	 * put since the compaction started.
+	 */
+	private synchronized boolean replace(final Compaction compaction, final Segment compacted, final long[] slots,
+			final int kept)
+	{
+		if (closed || epoch != compaction.epoch)
+		{
+			return false;
+		}
+
+		final Segment old = segment;
+
+		segment = compacted;
+		this.slots = slots;
+		count = kept;
+		garbage = 0;
+		epoch++;
+
+		for (int i = kept; i < compaction.live.length; i++)
+		{
+			evicted();
+		}
+
+		for (int offset = compaction.tail; offset < old.tail; offset += old.recordSizeAt(offset))
+		{
+			if (!append(old.keyAt(offset), old.valueAt(offset)))
+			{
+				evicted();
+			}
+		}
+
+		old.close();
+		old.delete();
+
+		log.debug(format("Compacted cache log [%s] into [%s] with [%s] results", old.file, segment.file, count));
+
+		return true;
+	}
+
+	private synchronized void compacted()
+	{
+		compacting = false;
+	}
+
+	/**
+	 * Opens the latest complete log in the directory, or a new one if there is none, and deletes the others.
+	 */
+	private Segment openLatest() throws IOException
+	{
+		final File[] files = directory.listFiles();
+		Segment latest = null;
+
+		Arrays.sort(files);
+
+		for (final File file : files)
+		{
+			final Matcher name = LOG_NAME.matcher(file.getName());
+
+			if (!name.matches())
+			{
+				continue;
+			}
+
+			final long generation = Long.parseLong(name.group(1));
+			final boolean fits = file.length() > HEADER_SIZE + 4 && file.length() <= Integer.MAX_VALUE;
+			final Segment candidate = fits ? new Segment(file, generation, (int) file.length()) : null;
+
+			if (candidate != null && candidate.isSealed() && (latest == null || generation > latest.generation))
+			{
+				if (latest != null)
+				{
+					latest.close();
+					latest.delete();
+				}
+
+				latest = candidate;
+			}
+			else
+			{
+				if (candidate != null)
+				{
+					candidate.close();
+				}
+
+				delete(file);
+			}
+		}
+
+		if (latest != null)
+		{
+			return latest;
+		}
+
+		final Segment created = Segment.create(directory, 1, maxBytes);
+
+		created.seal();
+
+		return created;
+	}
+
+	/**
+	 * Indexes the records of the log up to the first one that is incomplete or fails its checksum, and ends the log
+	 * there.
+	 */
+	private void recover()
+	{
+		int offset = HEADER_SIZE;
+
+		for (int size = segment.recordSizeAt(offset); size > 0; size = segment.recordSizeAt(offset))
+		{
+			final byte[] key = segment.keyAt(offset);
+
+			if (checksum(key, segment.valueAt(offset)) != segment.buffer.getInt(offset + 8))
+			{
+				log.warn(format("Cache log [%s] ends with a damaged record at [%s]", segment.file, offset));
+
+				break;
+			}
+
+			index(key, offset);
+			offset += size;
+		}
+
+		segment.tail = offset;
+
+		if (offset + 4 <= segment.size())
+		{
+			segment.buffer.putInt(offset, END);
+		}
+	}
+
+	private static void delete(final File file)
+	{
+		if (file.exists() && !file.delete())
+		{
+			log.warn(format("Cannot delete cache log [%s]", file));
+		}
+	}
+
+	private static void insert(final long[] slots, final long entry)
+	{
+		if (entry == 0)
+		{
+			return;
+		}
+
+		final int mask = slots.length - 1;
+		int slot = (int) (entry >>> 32) & mask;
+
+		while (slots[slot] != 0)
+		{
+			slot = (slot + 1) & mask;
+		}
+
+		slots[slot] = entry;
+	}
+
+	private static int hashOf(final byte[] bytes)
+	{
+		int hash = 0x811c9dc5;
+
+		for (final byte b : bytes)
+		{
+			hash = (hash ^ (b & 0xff)) * 0x01000193;
+		}
+
+		return hash;
+	}
+
+	private static int checksum(final byte[] key, final byte[] value)
+	{
+		final CRC32 crc = new CRC32();
+
+		crc.update(key);
+		crc.update(value);
+
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Where a walk of the records of the log has got to.
+	 */
+	private static class Walk
+	{
+		private int epoch = -1;
+		private int offset;
+	}
+
+	/**
+	 * Copies the live records of a log, newest first up to half of a log, into a new one, away from the threads using
+	 * the cache. The records of the old log up to where it ended when the compaction started do not change unless the
+	 * cache is cleared, in which case the new log is thrown away.
+	 */
+	private class Compaction implements Runnable
+	{
+		final Segment source;
+		final long[] live;
+		final int tail;
+		final int epoch;
+
+		Compaction(final Segment source, final long[] live, final int tail, final int epoch)
+		{
+			this.source = source;
+			this.live = live;
+			this.tail = tail;
+			this.epoch = epoch;
+		}
+
+		public void run()
+		{
+			Segment compacted = null;
+
+			try
+			{
+				compacted = Segment.create(directory, source.generation + 1, maxBytes);
+
+				int first = live.length;
+
+				for (int bytes = HEADER_SIZE + 4; first > 0; first--)
+				{
+					bytes += source.recordSizeAt((int) (live[first - 1] >>> 32));
+
+					if (bytes > maxBytes / 2)
+					{
+						break;
+					}
+				}
+
+				final int kept = live.length - first;
+				final long[] slots = new long[Integer.highestOneBit(Math.max(INITIAL_SLOTS, kept * 2) - 1) << 1];
+				final ByteBuffer from = source.buffer.duplicate();
+				final ByteBuffer to = compacted.buffer;
+
+				for (int i = first; i < live.length; i++)
+				{
+					final int offset = (int) (live[i] >>> 32);
+					final int hash = (int) live[i];
+
+					from.limit(offset + source.recordSizeAt(offset)).position(offset);
+					to.position(compacted.tail);
+					to.put(from);
+					insert(slots, (long) hash << 32 | compacted.tail);
+					compacted.tail = to.position();
+				}
+
+				to.putInt(compacted.tail, END);
+				compacted.seal();
+
+				if (!replace(this, compacted, slots, kept))
+				{
+					discard(compacted);
+				}
+			}
+			catch (final IOException exception)
+			{
+				log.warn(format("Cannot compact cache log [%s]", source.file), exception);
+
+				discard(compacted);
+			}
+			catch (final RuntimeException exception)
+			{
+				log.warn(format("Cannot compact cache log [%s]", source.file), exception);
+
+				discard(compacted);
+			}
+			finally
+			{
+				compacted();
+			}
+		}
+
+		private void discard(final Segment compacted)
+		{
+			if (compacted != null)
+			{
+				compacted.close();
+				compacted.delete();
+			}
+		}
+	}
+
+	/**
+	 * A log file, mapped whole. It starts with a header of a magic number, written once the rest of the log is in
+	 * place, the version of the format and the generation of the log, which grows with every compaction. Each record
+	 * is the length of its key, the length of its value, their checksum, the key and the value. The log ends at the
+	 * first record whose key length is 0.
+	 */
+	private static class Segment
+	{
+		final File file;
+		final long generation;
+		final RandomAccessFile access;
+		final MappedByteBuffer buffer;
+
+		int tail = HEADER_SIZE;
+
+		Segment(final File file, final long generation, final int size) throws IOException
+		{
+			this.file = file;
+			this.generation = generation;
+
+			access = new RandomAccessFile(file, "rw");
+			access.setLength(size);
+			buffer = access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+
+		static Segment create(final File directory, final long generation, final int size) throws IOException
+		{
+			final Segment segment = new Segment(new File(directory, format("translations-%s.log", generation)),
+					generation, size);
+
+			segment.buffer.putInt(0, 0);
+			segment.buffer.putInt(4, VERSION);
+			segment.buffer.putLong(8, generation);
+			segment.buffer.putInt(HEADER_SIZE, END);
+
+			return segment;
+		}
+
+		int size()
+		{
+			return buffer.capacity();
+		}
+
+		boolean isSealed()
+		{
+			return buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION && buffer.getLong(8) == generation;
+		}
+
+		void seal()
+		{
+			buffer.force();
+			buffer.putInt(0, MAGIC);
+			buffer.force();
+		}
+
+		/**
+		 * Gets the size of the record at the offset, or 0 if there is none or it would not fit in the log.
+		 */
+		int recordSizeAt(final int offset)
+		{
+			if (offset + RECORD_HEADER_SIZE > size())
+			{
+				return 0;
+			}
+
+			final long size = (long) RECORD_HEADER_SIZE + buffer.getInt(offset) + buffer.getInt(offset + 4);
+			final boolean valid = buffer.getInt(offset) > 0 && buffer.getInt(offset + 4) >= 0
+					&& offset + size <= size();
+
+			return valid ? (int) size : 0;
+		}
+
+		boolean hasKeyAt(final int offset, final byte[] key)
+		{
+			if (buffer.getInt(offset) != key.length)
+			{
+				return false;
+			}
+
+			for (int i = 0; i < key.length; i++)
+			{
+				if (buffer.get(offset + RECORD_HEADER_SIZE + i) != key[i])
+				{
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		byte[] keyAt(final int offset)
+		{
+			return bytesAt(offset + RECORD_HEADER_SIZE, buffer.getInt(offset));
+		}
+
+		byte[] valueAt(final int offset)
+		{
+			return bytesAt(offset + RECORD_HEADER_SIZE + buffer.getInt(offset), buffer.getInt(offset + 4));
+		}
+
+		private byte[] bytesAt(final int offset, final int length)
+		{
+			final byte[] bytes = new byte[length];
+
+			buffer.position(offset);
+			buffer.get(bytes);
+
+			return bytes;
+		}
+
+		void close()
+		{
+			try
+			{
+				buffer.force();
+				access.close();
+			}
+			catch (final IOException exception)
+			{
+				log.warn(format("Cannot close cache log [%s]", file), exception);
+			}
+		}
+
+		void delete()
+		{
+			DiskCache.delete(file);
+		}
+	}
+}
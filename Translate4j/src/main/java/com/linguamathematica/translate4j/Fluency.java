@@ -1,65 +1,70 @@
-/**
- * Copyright (C) 2010 the author
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package com.linguamathematica.translate4j;
-
-class Fluency
-{
-	public static <T> T withA(final T object)
-	{
-		return object;
-	}
-
-	static <T> T afterAborting(final T object)
-	{
-		return object;
-	}
-
-	static <T> T against(final T object)
-	{
-		return object;
-	}
-
-	static <T> T and(final T object)
-	{
-		return object;
-	}
-
-	static <T> T between(final T object)
-	{
-		return object;
-	}
-
-	static <T> T from(final T object)
-	{
-		return object;
-	}
-
-	static <T> T ifFailureThenReportAbout(final T object)
-	{
-		return object;
-	}
-
-	static <T> T of(final T object)
-	{
-		return object;
-	}
-
-	static <T> T to(final T object)
-	{
-		return object;
-	}
-
-}
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+class Fluency
+{
+	public static <T> T withA(final T object)
+	{
+		return object;
+	}
+
+	static <T> T afterAborting(final T object)
+	{
+		return object;
+	}
+
+	static <T> T against(final T object)
+	{
+		return object;
+	}
+
+	static <T> T and(final T object)
+	{
+		return object;
+	}
+
+	static <T> T between(final T object)
+	{
+		return object;
+	}
+
+	static <T> T from(final T object)
+	{
+		return object;
+	}
+
+	static <T> T ifFailureThenReportAbout(final T object)
+	{
+		return object;
+	}
+
+	static <T> T of(final T object)
+	{
+		return object;
+	}
+
+	static <T> T to(final T object)
+	{
+		return object;
+	}
+
+	static <T> T with(final T object)
+	{
+		return object;
+	}
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.List;
+
+/**
+ * A translator that forwards every call to another one. Decorators extend it and override only the calls they change.
+ */
+abstract class ForwardingTranslator extends Translator
+{
+	final Translator delegate;
+
+	ForwardingTranslator(final Translator delegate)
+	{
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Language detect(final String text)
+	{
+		return delegate.detect(text);
+	}
+
+	@Override
+	public List<Language> detect(final List<String> texts)
+	{
+		return delegate.detect(texts);
+	}
+
+	@Override
+	public void dispose()
+	{
+		delegate.dispose();
+	}
+
+	@Override
+	public String translate(final String text, final Language source, final Language target)
+	{
+		return delegate.translate(text, source, target);
+	}
+
+	@Override
+	public List<String> translate(final List<String> texts, final Language source, final Language target)
+	{
+		return delegate.translate(texts, source, target);
+	}
+
+	@Override
+	public List<Translation> translateAndDetect(final List<String> texts, final Language target)
+	{
+		return delegate.translateAndDetect(texts, target);
+	}
+
+	@Override
+	Workers workers()
+	{
+		return delegate.workers();
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+/**
+ * Estimates how often keys have been asked for recently, in constant space. A count-min sketch of four rows of small
+ * saturating counters; every counter is halved once enough increments have been recorded, so that old popularity
+ * fades. Not thread-safe.
+ */
+class FrequencySketch
+{
+	private static final int ROWS = 4;
+	private static final int MAX_COUNT = 15;
+	private static final int[] SEEDS = { 0x97cb3127, 0x5b9f4a2d, 0x3c6ef372, 0x1b873593 };
+
+	private final byte[][] counters;
+	private final int mask;
+	private final int sampleSize;
+
+	private int increments;
+
+	FrequencySketch(final int expectedKeys)
+	{
+		final int width = Integer.highestOneBit(Math.max(16, Math.min(expectedKeys, 1 << 24)) - 1) << 1;
+
+		counters = new byte[ROWS][width];
+		mask = width - 1;
+		sampleSize = 10 * width;
+	}
+
+	int frequency(final int hash)
+	{
+		int frequency = MAX_COUNT;
+
+		for (int row = 0; row < ROWS; row++)
+		{
+			frequency = Math.min(frequency, counters[row][indexOf(hash, row)]);
+		}
+
+		return frequency;
+	}
+
+	void increment(final int hash)
+	{
+		for (int row = 0; row < ROWS; row++)
+		{
+			final int index = indexOf(hash, row);
+
+			if (counters[row][index] < MAX_COUNT)
+			{
+				counters[row][index]++;
+			}
+		}
+
+		if (++increments == sampleSize)
+		{
+			age();
+		}
+	}
+
+	private void age()
+	{
+		for (final byte[] row : counters)
+		{
+			for (int i = 0; i < row.length; i++)
+			{
+				row[i] >>= 1;
+			}
+		}
+
+		increments /= 2;
+	}
+
+	private int indexOf(final int hash, final int row)
+	{
+		int mixed = (hash ^ SEEDS[row]) * 0x9e3779b9;
+
+		mixed ^= mixed >>> 16;
+
+		return mixed & mask;
+	}
+}
@@ -1,123 +1,269 @@
-/**
- * Copyright (C) 2010 the author
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package com.linguamathematica.translate4j;
-
-import java.io.UnsupportedEncodingException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import static java.lang.String.format;
-
-import static java.net.URLEncoder.encode;
-import static java.util.regex.Pattern.compile;
-import static com.linguamathematica.translate4j.Base.ensure;
-import static com.linguamathematica.translate4j.Base.ensureNotNull;
-import static com.linguamathematica.translate4j.Fluency.from;
-
-class GoogleTranslatorVersion2 extends Translator
-{
-	private final String apiKey;
-	private final HTTPService service;
-	private static final Pattern detect = compile(asRegex("{'data':{'translations':[{'translatedText':'?','detectedSourceLanguage':'?'}]}}"));
-	private static final Pattern translate = compile(asRegex("{'data':{'translations':[{'translatedText':'?'}]}}"));
-
-	GoogleTranslatorVersion2(final String apiKey, final HTTPService service)
-	{
-		this.service = service;
-		this.apiKey = apiKey;
-	}
-
-	@Override
-	public Language detect(final String text)
-	{
-		ensureIsValid(text);
-
-		final String responseBody = service.query(buildQuery(text, Language.UNKNOWN, Language.ENGLISH));
-
-		return extractLanguage(from(responseBody));
-	}
-
-	@Override
-	public void dispose()
-	{
-		service.shutDown();
-	}
-
-	@Override
-	public String translate(final String text, final Language source, final Language target)
-	{
-		ensureIsValid(text);
-		ensureNotNull(source, "source language");
-		ensureNotNull(target, "target language");
-		ensure(target != Language.UNKNOWN, "target language must be known");
-
-		final String responseBody = service.query(buildQuery(text, source, target));
-
-		return extractTranslation(from(responseBody));
-
-	}
-
-	private String buildQuery(final String text, final Language source, final Language target)
-	{
-		try
-		{
-			return source == Language.UNKNOWN ? format("key=%s&target=%s&q=%s", apiKey, target.getCode(),
-					encode(text, "UTF-8")) : format("key=%s&source=%s&target=%s&q=%s", apiKey, source.getCode(),
-					target.getCode(), encode(text, "UTF-8"));
-		}
-		catch (final UnsupportedEncodingException exception)
-		{
-			throw new RequestException(format("Error while building query for text [%s] . Report as bug", text),
-					exception);
-		}
-	}
-
-	private static String asRegex(final String string)
-	{
-		return string.replace("{", "\\{").replace("}", "\\}").replace("[", "\\[").replace("]", "\\]")
-				.replace("'", "\\\"").replace("?", "(.+)");
-	}
-
-	private static void ensureIsValid(final String text)
-	{
-		ensureNotNull(text, "text");
-		ensure(text.trim().length() != 0, "text cannot be empty");
-		ensure(text.trim().length() <= MAX_TEXT_SIZE, "text size [%s] is greater than limit [%s]",
-				text.trim().length(), MAX_TEXT_SIZE);
-	}
-
-	private static Language extractLanguage(final String responseBody)
-	{
-		final Matcher matcher = detect.matcher(responseBody);
-
-		matcher.find();
-
-		return Language.from(matcher.group(2));
-	}
-
-	private static String extractTranslation(final String responseBody)
-	{
-		final String withoutEncoding = responseBody.replace("&#39;", "'");
-
-		final Matcher matcher = responseBody.contains("detectedSourceLanguage") ? detect.matcher(withoutEncoding)
-				: translate.matcher(withoutEncoding);
-
-		matcher.find();
-
-		return matcher.group(1);
-	}
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.linguamathematica.translate4j;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+
+import static java.net.URLEncoder.encode;
+import static java.util.Collections.singletonList;
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+import static com.linguamathematica.translate4j.Base.ensureResponse;
+import static com.linguamathematica.translate4j.ResponseParser.TRANSLATIONS;
+
+import org.apache.http.HttpStatus;
+
+class GoogleTranslatorVersion2 extends Translator
+{
+	private static final int MAX_SEGMENTS_PER_REQUEST = 128;
+
+	private final ApiKeys apiKeys;
+	private final HTTPService service;
+	private final Workers workers;
+	private final int maxCharactersPerRequest;
+	private final RateLimit rateLimit;
+	private final long deadlineNanos;
+
+	GoogleTranslatorVersion2(final String apiKey, final HTTPService service)
+	{
+		this(new ApiKeys(apiKey), service, new Configuration());
+	}
+
+	GoogleTranslatorVersion2(final ApiKeys apiKeys, final HTTPService service, final Configuration configuration)
+	{
+		this.service = service;
+		this.apiKeys = apiKeys;
+
+		workers = new Workers(configuration);
+		maxCharactersPerRequest = configuration.maxCharactersPerRequest;
+		rateLimit = configuration.rateLimit;
+		deadlineNanos = configuration.deadlineNanos;
+	}
+
+	@Override
+	public Language detect(final String text)
+	{
+		return detect(singletonList(text)).get(0);
+	}
+
+	@Override
+	public List<Language> detect(final List<String> texts)
+	{
+		ensureAreValid(texts);
+
+		final List<Language> languages = new ArrayList<Language>(texts.size());
+		final Deadline deadline = new Deadline(deadlineNanos);
+
+		for (final List<String> batch : packed(texts))
+		{
+			for (final Translation translation : translations(batch, Language.UNKNOWN, Language.ENGLISH, deadline))
+			{
+				languages.add(translation.detectedLanguage != null ? translation.detectedLanguage : Language.UNKNOWN);
+			}
+		}
+
+		return languages;
+	}
+
+	@Override
+	public void dispose()
+	{
+		workers.shutDown();
+		service.shutDown();
+	}
+
+	@Override
+	public String translate(final String text, final Language source, final Language target)
+	{
+		return translate(singletonList(text), source, target).get(0);
+	}
+
+	@Override
+	public List<String> translate(final List<String> texts, final Language source, final Language target)
+	{
+		ensureAreValid(texts);
+		ensureNotNull(source, "source language");
+		ensureNotNull(target, "target language");
+		ensure(target != Language.UNKNOWN, "target language must be known");
+
+		final List<String> translated = new ArrayList<String>(texts.size());
+		final Deadline deadline = new Deadline(deadlineNanos);
+
+		for (final List<String> batch : packed(texts))
+		{
+			for (final Translation translation : translations(batch, source, target, deadline))
+			{
+				translated.add(translation.text);
+			}
+		}
+
+		return translated;
+	}
+
+	@Override
+	public List<Translation> translateAndDetect(final List<String> texts, final Language target)
+	{
+		ensureAreValid(texts);
+		ensureNotNull(target, "target language");
+		ensure(target != Language.UNKNOWN, "target language must be known");
+
+		final List<Translation> translated = new ArrayList<Translation>(texts.size());
+		final Deadline deadline = new Deadline(deadlineNanos);
+
+		for (final List<String> batch : packed(texts))
+		{
+			for (final Translation translation : translations(batch, Language.UNKNOWN, target, deadline))
+			{
+				translated.add(translation.detectedLanguage != null ? translation : new Translation(translation.text,
+						Language.UNKNOWN));
+			}
+		}
+
+		return translated;
+	}
+
+	@Override
+	Workers workers()
+	{
+		return workers;
+	}
+
+	private List<Translation> translations(final List<String> batch, final Language source, final Language target,
+			final Deadline deadline)
+	{
+		final int characters = charactersIn(batch);
+
+		if (rateLimit != null)
+		{
+			rateLimit.acquireCharacters(characters, deadline);
+		}
+
+		for (int attempt = 1;; attempt++)
+		{
+			final String apiKey = apiKeys.acquire(characters);
+
+			try
+			{
+				final List<Translation> translations = service.query(buildQuery(apiKey, batch, source, target),
+						TRANSLATIONS, deadline);
+
+				ensureResponse(translations.size() == batch.size(), format(
+						"Expected [%s] translations but response contained [%s]", batch.size(), translations.size()),
+						HttpStatus.SC_OK, "OK");
+
+				apiKeys.succeeded(apiKey, characters);
+
+				return translations;
+			}
+			catch (final RuntimeException failure)
+			{
+				if (!apiKeys.failed(apiKey, failure) || attempt == apiKeys.size())
+				{
+					throw failure;
+				}
+			}
+		}
+	}
+
+	private String buildQuery(final String apiKey, final List<String> texts, final Language source,
+			final Language target)
+	{
+		final StringBuilder query = new StringBuilder(source == Language.UNKNOWN ? format("key=%s&target=%s", apiKey,
+				target.getCode()) : format("key=%s&source=%s&target=%s", apiKey, source.getCode(), target.getCode()));
+
+		for (final String text : texts)
+		{
+			try
+			{
+				query.append("&q=").append(encode(text, "UTF-8"));
+			}
+			catch (final UnsupportedEncodingException exception)
+			{
+				throw new RequestException(format("Error while building query for text [%s] . Report as bug", text),
+						exception);
+			}
+		}
+
+		return query.toString();
+	}
+
+	private List<List<String>> packed(final List<String> texts)
+	{
+		final List<List<String>> batches = new ArrayList<List<String>>();
+
+		List<String> batch = new ArrayList<String>();
+		int batchSize = 0;
+
+		for (final String text : texts)
+		{
+			final int size = text.trim().length();
+
+			final boolean full = batch.size() == MAX_SEGMENTS_PER_REQUEST || batchSize + size > maxCharactersPerRequest;
+
+			if (!batch.isEmpty() && full)
+			{
+				batches.add(batch);
+				batch = new ArrayList<String>();
+				batchSize = 0;
+			}
+
+			batch.add(text);
+			batchSize += size;
+		}
+
+		if (!batch.isEmpty())
+		{
+			batches.add(batch);
+		}
+
+		return batches;
+	}
+
+	private static int charactersIn(final List<String> texts)
+	{
+		int characters = 0;
+
+		for (final String text : texts)
+		{
+			characters += text.length();
+		}
+
+		return characters;
+	}
+
+	private static void ensureAreValid(final List<String> texts)
+	{
+		ensureNotNull(texts, "texts");
+
+		for (final String text : texts)
+		{
+			ensureIsValid(text);
+		}
+	}
+
+	private static void ensureIsValid(final String text)
+	{
+		ensureNotNull(text, "text");
+		ensure(text.trim().length() != 0, "text cannot be empty");
+		ensure(text.trim().length() <= MAX_TEXT_SIZE, "text size [%s] is greater than limit [%s]",
+				text.trim().length(), MAX_TEXT_SIZE);
+	}
 }
\ No newline at end of file
@@ -1,213 +1,703 @@
-/**
- * Copyright (C) 2010 the author
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package com.linguamathematica.translate4j;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-
-import static java.lang.String.format;
-
-import static org.apache.http.client.utils.URIUtils.createURI;
-import static com.linguamathematica.translate4j.Base.ensureResponse;
-import static com.linguamathematica.translate4j.Fluency.afterAborting;
-import static com.linguamathematica.translate4j.Fluency.ifFailureThenReportAbout;
-
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.StatusLine;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.log4j.Logger;
-
-class HTTPService
-{
-	private static final String NO_FRAGMENT = null;
-
-	private static final int EMPTY = 0;
-	private static final int MAX_EXPECTED_CONTENT_LENGTH = 2048;
-
-	private static final Logger log = Logger.getLogger(HTTPService.class);
-
-	private final HttpClient client;
-	private final String path;
-	private final String host;
-	private final String protocol;
-	private final int port;
-
-	HTTPService(final String protocol, final String host, final int port, final String path, final HttpClient client)
-	{
-		this.protocol = protocol;
-		this.host = host;
-		this.port = port;
-		this.path = path;
-		this.client = client;
-	}
-
-	String query(final String query)
-	{
-		HttpGet request = null;
-
-		try
-		{
-			request = buildRequest(query, protocol, host, port, path);
-
-			final HttpResponse response = execute(request);
-
-			final StatusLine status = response.getStatusLine();
-
-			final String responseBody = extractStringFrom(response);
-
-			ensureResponse(status.getStatusCode() == HttpStatus.SC_OK,
-					format("Server responded with %s to request %s", responseBody, request.getURI()),
-					status.getStatusCode(), status.getReasonPhrase());
-
-			return responseBody;
-		}
-		catch (final RuntimeException anyException)
-		{
-			rethrow(anyException, afterAborting(request));
-		}
-
-		return null;
-	}
-
-	void shutDown()
-	{
-		client.getConnectionManager().shutdown();
-	}
-
-	private HttpResponse execute(final HttpGet GET)
-	{
-		log.debug(format("executing request %s...", GET.getURI()));
-
-		try
-		{
-			return client.execute(GET);
-		}
-		catch (final ClientProtocolException exception)
-		{
-			throw new RequestException(format("Error using protocol while requesting %s. Report as bug", GET),
-					exception);
-		}
-		catch (final IOException exception)
-		{
-			throw new ConnectionException(format("Error connecting to service while requesting %s", GET.getURI()),
-					exception);
-		}
-	}
-
-	private static HttpGet buildRequest(final String query, final String protocol, final String host, final int port,
-			final String path)
-	{
-		log.debug(format("creating request with URI [%s]:[%s]:[%s]:[%s]...", protocol, host, path, query));
-
-		try
-		{
-			return new HttpGet(createURI(protocol, host, port, path, query, NO_FRAGMENT));
-		}
-		catch (final Exception exception)
-		{
-			throw new RequestException(format("Error whilst building URI [%s]:[%s]:[%s]:[%s]. Report as bug", protocol,
-					host, path, query), exception);
-		}
-	}
-
-	private static void close(final InputStream content, final StatusLine statusLine)
-	{
-		if (content != null)
-		{
-			try
-			{
-				content.close();
-			}
-			catch (final IOException exception)
-			{
-				throw new ResponseException("Unable to close response stream", statusLine.getStatusCode(),
-						statusLine.getReasonPhrase());
-			}
-		}
-	}
-
-	private static boolean contentSizeIsValid(final HttpEntity entity)
-	{
-		return entity.getContentLength() != EMPTY && entity.getContentLength() <= MAX_EXPECTED_CONTENT_LENGTH;
-	}
-
-	private static String extractStringFrom(final HttpResponse response)
-	{
-		final HttpEntity entity = response.getEntity();
-		final StatusLine status = response.getStatusLine();
-		InputStream stream = null;
-
-		ensureResponse(contentSizeIsValid(entity),
-				format("Response content has unexpected length [%s]", entity.getContentLength()),
-				status.getStatusCode(), status.getReasonPhrase());
-
-		try
-		{
-			stream = entity.getContent();
-		}
-		catch (final Exception exception)
-		{
-			throw new ResponseException("Error while opening response stream", status.getStatusCode(),
-					status.getReasonPhrase(), exception);
-		}
-
-		return readStringFrom(stream, ifFailureThenReportAbout(status));
-	}
-
-	private static boolean isValid(final String response)
-	{
-		return response != null && response.length() != 0;
-	}
-
-	private static String readStringFrom(final InputStream stream, final StatusLine status)
-	{
-		try
-		{
-			final String response = new BufferedReader(new InputStreamReader(stream), MAX_EXPECTED_CONTENT_LENGTH)
-					.readLine();
-
-			ensureResponse(isValid(response), format("Response content was invalid, got this [%s]", response),
-					status.getStatusCode(), status.getReasonPhrase());
-
-			return response;
-		}
-		catch (final IOException exception)
-		{
-			throw new ResponseException("Error while reading response stream", status.getStatusCode(),
-					status.getReasonPhrase());
-		}
-		finally
-		{
-			close(stream, ifFailureThenReportAbout(status));
-		}
-	}
-
-	private static void rethrow(final RuntimeException exception, final HttpGet GET)
-	{
-		if (GET != null)
-		{
-			GET.abort();
-		}
-
-		throw exception;
-	}
-}
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+import static java.lang.String.format;
+
+import static java.util.concurrent.Executors.newCachedThreadPool;
+
+import static org.apache.http.client.utils.URIUtils.createURI;
+import static org.apache.http.impl.cookie.DateUtils.parseDate;
+import static com.linguamathematica.translate4j.Base.ensureResponse;
+import static com.linguamathematica.translate4j.Fluency.afterAborting;
+import static com.linguamathematica.translate4j.Fluency.ifFailureThenReportAbout;
+import static com.linguamathematica.translate4j.Fluency.with;
+import static com.linguamathematica.translate4j.ResponseParser.errorReason;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.log4j.Logger;
+
+class HTTPService
+{
+	private static final String NO_FRAGMENT = null;
+	private static final String NO_QUERY = null;
+	private static final String METHOD_OVERRIDE = "X-HTTP-Method-Override";
+	private static final String UTF_8 = "UTF-8";
+
+	private static final int EMPTY = 0;
+
+	private static final Logger log = Logger.getLogger(HTTPService.class);
+
+	private final HttpClient client;
+	private final String path;
+	private final String host;
+	private final String protocol;
+	private final int port;
+	private final long maxResponseSize;
+	private final int postThreshold;
+	private final boolean gzipRequests;
+	private final IdleConnectionEvictor evictor;
+	private final RetryPolicy retryPolicy;
+	private final CircuitBreaker circuitBreaker;
+	private final ConcurrencyLimit concurrencyLimit;
+	private final RateLimit rateLimit;
+	private final Hedging hedging;
+	private final ExecutorService hedges;
+
+	private Timer timer;
+
+	HTTPService(final String protocol, final String host, final int port, final String path, final HttpClient client)
+	{
+		this(protocol, host, port, path, client, new Configuration());
+	}
+
+	HTTPService(final String protocol, final String host, final int port, final String path, final HttpClient client,
+			final Configuration configuration)
+	{
+		this.protocol = protocol;
+		this.host = host;
+		this.port = port;
+		this.path = path;
+		this.client = client;
+
+		maxResponseSize = configuration.maxResponseSize;
+		postThreshold = configuration.postThreshold;
+		gzipRequests = configuration.gzipRequests;
+		retryPolicy = configuration.retryPolicy;
+		circuitBreaker = configuration.circuitBreaker;
+		concurrencyLimit = configuration.concurrencyLimit;
+		rateLimit = configuration.rateLimit;
+		hedging = configuration.hedging;
+		hedges = hedging == null ? null : newCachedThreadPool(Workers.daemonThreads("translate4j-hedge-%s"));
+		evictor = new IdleConnectionEvictor(client.getConnectionManager(), configuration.idleConnectionTimeoutMillis);
+		evictor.start();
+	}
+
+	<T> T query(final String query, final ResponseReader<T> reader)
+	{
+		return query(query, reader, Deadline.NONE);
+	}
+
+	<T> T query(final String query, final ResponseReader<T> reader, final Deadline deadline)
+	{
+		for (int attempt = 1;; attempt++)
+		{
+			deadline.ensureNotPassed(format("waiting to send attempt %s", attempt));
+
+			if (rateLimit != null)
+			{
+				rateLimit.acquireRequest(deadline);
+			}
+
+			try
+			{
+				final T result = limitedAttempt(query, reader, deadline);
+
+				retryPolicy.succeeded();
+
+				return result;
+			}
+			catch (final RuntimeException failure)
+			{
+				final long backoffMillis = retryPolicy.backoffMillisAfter(failure, attempt);
+
+				if (backoffMillis < 0)
+				{
+					throw failure;
+				}
+
+				if (backoffMillis >= deadline.remainingMillis())
+				{
+					throw deadline.exceeded(format("waiting %sms to retry after attempt %s failed: %s", backoffMillis,
+							attempt, failure));
+				}
+
+				log.debug(format("retrying in %sms after attempt %s failed: %s", backoffMillis, attempt, failure));
+
+				pause(backoffMillis, failure);
+			}
+		}
+	}
+
+	void shutDown()
+	{
+		evictor.shutDown();
+
+		if (hedging != null)
+		{
+			hedges.shutdown();
+		}
+
+		synchronized (this)
+		{
+			if (timer != null)
+			{
+				timer.cancel();
+			}
+		}
+
+		client.getConnectionManager().shutdown();
+	}
+
+	private <T> T limitedAttempt(final String query, final ResponseReader<T> reader, final Deadline deadline)
+	{
+		if (concurrencyLimit == null)
+		{
+			return guardedAttempt(query, reader, deadline);
+		}
+
+		concurrencyLimit.acquire(Priority.current(), deadline);
+
+		final long start = System.nanoTime();
+
+		try
+		{
+			final T result = guardedAttempt(query, reader, deadline);
+
+			concurrencyLimit.succeeded(System.nanoTime() - start);
+
+			return result;
+		}
+		catch (final RuntimeException failure)
+		{
+			concurrencyLimit.failed(failure, System.nanoTime() - start);
+
+			throw failure;
+		}
+	}
+
+	private <T> T guardedAttempt(final String query, final ResponseReader<T> reader, final Deadline deadline)
+	{
+		if (circuitBreaker == null)
+		{
+			return hedgedAttempt(query, reader, deadline);
+		}
+
+		circuitBreaker.acquire();
+
+		final long start = System.nanoTime();
+
+		try
+		{
+			final T result = hedgedAttempt(query, reader, deadline);
+
+			circuitBreaker.succeeded(System.nanoTime() - start);
+
+			return result;
+		}
+		catch (final RuntimeException failure)
+		{
+			circuitBreaker.failed(failure, System.nanoTime() - start);
+
+			throw failure;
+		}
+	}
+
+	private <T> T hedgedAttempt(final String query, final ResponseReader<T> reader, final Deadline deadline)
+	{
+		if (hedging == null)
+		{
+			return attempt(buildRequest(query), reader, deadline);
+		}
+
+		final long delayMillis = hedging.sent();
+		final Race<T> race = new Race<T>(query, reader, deadline);
+
+		if (delayMillis >= 0)
+		{
+			timer().schedule(race, delayMillis);
+		}
+
+		return race.first();
+	}
+
+	private <T> T attempt(final HttpRequestBase request, final ResponseReader<T> reader, final Deadline deadline)
+	{
+		final TimerTask expiry = deadline.isSet() ? abortingWhenPassed(request, deadline) : null;
+
+		try
+		{
+			final HttpResponse response = execute(request);
+
+			final StatusLine status = response.getStatusLine();
+
+			if (status.getStatusCode() != HttpStatus.SC_OK)
+			{
+				final String responseBody = extractStringFrom(response);
+
+				throw new ResponseException(format("Server responded with %s to request %s", responseBody, request
+						.getURI()), status.getStatusCode(), status.getReasonPhrase(), errorReason(responseBody),
+						retryAfterMillisOf(response));
+			}
+
+			return read(response, with(reader));
+		}
+		catch (final RuntimeException anyException)
+		{
+			rethrow(deadline.hasPassed() ? deadline.exceeded("waiting for the response") : anyException,
+					afterAborting(request));
+		}
+		finally
+		{
+			if (expiry != null)
+			{
+				expiry.cancel();
+			}
+		}
+
+		return null;
+	}
+
+	private TimerTask abortingWhenPassed(final HttpRequestBase request, final Deadline deadline)
+	{
+		final TimerTask expiry = new TimerTask()
+		{
+			@Override
+			public void run()
+			{
+				request.abort();
+			}
+		};
+
+		timer().schedule(expiry, Math.max(0, deadline.remainingMillis()));
+
+		return expiry;
+	}
+
+	private synchronized Timer timer()
+	{
+		if (timer == null)
+		{
+			timer = new Timer("translate4j-timer", true);
+		}
+
+		return timer;
+	}
+
+	private HttpResponse execute(final HttpRequestBase request)
+	{
+		log.debug(format("executing request %s...", request.getURI()));
+
+		try
+		{
+			return client.execute(request);
+		}
+		catch (final ClientProtocolException exception)
+		{
+			throw new RequestException(format("Error using protocol while requesting %s. Report as bug", request),
+					exception);
+		}
+		catch (final IOException exception)
+		{
+			throw new ConnectionException(format("Error connecting to service while requesting %s",
+					request.getURI()), exception);
+		}
+	}
+
+	private HttpRequestBase buildRequest(final String query)
+	{
+		log.debug(format("creating request with URI [%s]:[%s]:[%s]:[%s]...", protocol, host, path, query));
+
+		try
+		{
+			if (query.length() <= postThreshold)
+			{
+				return new HttpGet(createURI(protocol, host, port, path, query, NO_FRAGMENT));
+			}
+
+			final HttpPost POST = new HttpPost(createURI(protocol, host, port, path, NO_QUERY, NO_FRAGMENT));
+
+			POST.setHeader(METHOD_OVERRIDE, "GET");
+			POST.setEntity(formOf(query));
+
+			return POST;
+		}
+		catch (final Exception exception)
+		{
+			throw new RequestException(format("Error whilst building URI [%s]:[%s]:[%s]:[%s]. Report as bug", protocol,
+					host, path, query), exception);
+		}
+	}
+
+	private AbstractHttpEntity formOf(final String query) throws IOException
+	{
+		final byte[] form = query.getBytes(UTF_8);
+
+		if (!gzipRequests)
+		{
+			return withFormContentType(new ByteArrayEntity(form));
+		}
+
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream(form.length / 2);
+		final GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+
+		gzip.write(form);
+		gzip.close();
+
+		final AbstractHttpEntity entity = withFormContentType(new ByteArrayEntity(compressed.toByteArray()));
+
+		entity.setContentEncoding("gzip");
+
+		return entity;
+	}
+
+	private static AbstractHttpEntity withFormContentType(final AbstractHttpEntity entity)
+	{
+		entity.setContentType("application/x-www-form-urlencoded; charset=UTF-8");
+
+		return entity;
+	}
+
+	private static void close(final Closeable content, final StatusLine statusLine)
+	{
+		if (content != null)
+		{
+			try
+			{
+				content.close();
+			}
+			catch (final IOException exception)
+			{
+				throw new ResponseException("Unable to close response stream", statusLine.getStatusCode(),
+						statusLine.getReasonPhrase());
+			}
+		}
+	}
+
+	private String extractStringFrom(final HttpResponse response)
+	{
+		final StatusLine status = response.getStatusLine();
+		final ResponseBody body = new ResponseBody(openContentOf(response), maxResponseSize);
+
+		try
+		{
+			final String text = body.readAll();
+
+			ensureResponse(isValid(text), format("Response content was invalid, got this [%s]", text),
+					status.getStatusCode(), status.getReasonPhrase());
+
+			return text;
+		}
+		catch (final IOException exception)
+		{
+			throw new ResponseException("Error while reading response stream", status.getStatusCode(),
+					status.getReasonPhrase(), exception);
+		}
+		finally
+		{
+			close(body, ifFailureThenReportAbout(status));
+		}
+	}
+
+	private InputStream openContentOf(final HttpResponse response)
+	{
+		final HttpEntity entity = response.getEntity();
+		final StatusLine status = response.getStatusLine();
+
+		ensureResponse(entity != null && entity.getContentLength() != EMPTY,
+				format("Response content has unexpected length [%s]", EMPTY), status.getStatusCode(),
+				status.getReasonPhrase());
+
+		ensureResponse(entity.getContentLength() <= maxResponseSize, format(
+				"Response content is longer than the limit of [%s] bytes", maxResponseSize), status.getStatusCode(),
+				status.getReasonPhrase());
+
+		try
+		{
+			return entity.getContent();
+		}
+		catch (final Exception exception)
+		{
+			throw new ResponseException("Error while opening response stream", status.getStatusCode(),
+					status.getReasonPhrase(), exception);
+		}
+	}
+
+	private <T> T read(final HttpResponse response, final ResponseReader<T> reader)
+	{
+		final StatusLine status = response.getStatusLine();
+		final ResponseBody body = new ResponseBody(openContentOf(response), maxResponseSize);
+
+		try
+		{
+			return reader.read(body);
+		}
+		catch (final IOException exception)
+		{
+			throw new ResponseException(exception.getMessage(), status.getStatusCode(), status.getReasonPhrase(),
+					exception);
+		}
+		finally
+		{
+			close(body, ifFailureThenReportAbout(status));
+		}
+	}
+
+	private static long retryAfterMillisOf(final HttpResponse response)
+	{
+		final Header retryAfter = response.getFirstHeader("Retry-After");
+
+		if (retryAfter == null)
+		{
+			return ResponseException.NOT_GIVEN;
+		}
+
+		final String value = retryAfter.getValue().trim();
+
+		try
+		{
+			return value.matches("\\d{1,9}") ? Long.parseLong(value) * 1000 : Math.max(0, parseDate(value).getTime()
+					- System.currentTimeMillis());
+		}
+		catch (final DateParseException exception)
+		{
+			return ResponseException.NOT_GIVEN;
+		}
+	}
+
+	private static void pause(final long millis, final RuntimeException failure)
+	{
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch (final InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+
+			throw failure;
+		}
+	}
+
+	private static boolean isValid(final String response)
+	{
+		return response != null && response.trim().length() != 0;
+	}
+
+	private static void rethrow(final RuntimeException exception, final HttpRequestBase request)
+	{
+		abort(request);
+
+		throw exception;
+	}
+
+	private static void abort(final HttpRequestBase request)
+	{
+		if (request != null)
+		{
+			request.abort();
+		}
+	}
+
+	/**
+	 * A request that may be hedged. It is sent on the calling thread and, if it has not answered by the time the timer
+	 * runs this task, a copy of it is sent on a hedge thread, if the rate limit has a request free for it at once. The
+	 * first copy to answer wins and the other is aborted. The latency recorded is the time since the request itself
+	 * was sent, whichever copy won, so that the slow requests that get hedged still count towards the percentile.
+	 * If the request fails while its copy is in flight, the copy is waited for.
+	 */
+	private class Race<T> extends TimerTask
+	{
+		private final String query;
+		private final ResponseReader<T> reader;
+		private final Deadline deadline;
+		private final long start = System.nanoTime();
+
+		private HttpRequestBase request;
+		private HttpRequestBase hedge;
+		private boolean over;
+		private boolean hedgeAnswered;
+		private boolean hedgeWon;
+		private T hedgeResult;
+
+		Race(final String query, final ResponseReader<T> reader, final Deadline deadline)
+		{
+			this.query = query;
+			this.reader = reader;
+			this.deadline = deadline;
+		}
+
+		T first()
+		{
+			try
+			{
+				final HttpRequestBase sent = buildRequest(query);
+
+				synchronized (this)
+				{
+					request = sent;
+				}
+
+				final T result = attempt(sent, reader, deadline);
+
+				synchronized (this)
+				{
+					if (over)
+					{
+						return result;
+					}
+
+					over = true;
+					abort(hedge);
+				}
+
+				hedging.answered(System.nanoTime() - start);
+
+				return result;
+			}
+			catch (final RuntimeException failure)
+			{
+				return afterFailureOf(failure);
+			}
+			finally
+			{
+				cancel();
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			synchronized (this)
+			{
+				if (over)
+				{
+					return;
+				}
+			}
+
+			if (rateLimit != null && !rateLimit.tryAcquireRequest() || !hedging.spendHedge())
+			{
+				return;
+			}
+
+			try
+			{
+				hedges.execute(new Runnable()
+				{
+					public void run()
+					{
+						second();
+					}
+				});
+			}
+			catch (final RejectedExecutionException exception)
+			{
+				// the service has been shut down
+			}
+		}
+
+		private void second()
+		{
+			try
+			{
+				final HttpRequestBase sent = buildRequest(query);
+
+				synchronized (this)
+				{
+					if (over)
+					{
+						return;
+					}
+
+					hedge = sent;
+				}
+
+				final T result = attempt(sent, reader, deadline);
+
+				synchronized (this)
+				{
+					if (!over)
+					{
+						over = true;
+						hedgeWon = true;
+						hedgeResult = result;
+						abort(request);
+						hedging.hedgeWon();
+						hedging.answered(System.nanoTime() - start);
+					}
+				}
+			}
+			catch (final RuntimeException failure)
+			{
+				log.debug(format("hedge of request failed: %s", failure));
+			}
+			finally
+			{
+				synchronized (this)
+				{
+					hedgeAnswered = true;
+					notifyAll();
+				}
+			}
+		}
+
+		private synchronized T afterFailureOf(final RuntimeException failure)
+		{
+			try
+			{
+				while (hedge != null && !hedgeAnswered)
+				{
+					wait();
+				}
+			}
+			catch (final InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+				abort(hedge);
+			}
+
+			over = true;
+
+			if (hedgeWon)
+			{
+				return hedgeResult;
+			}
+
+			throw failure;
+		}
+	}
+
+	/**
+	 * Reads what the caller needs out of the body of a successful response.
+	 */
+	interface ResponseReader<T>
+	{
+		T read(ResponseBody body) throws IOException;
+	}
+}
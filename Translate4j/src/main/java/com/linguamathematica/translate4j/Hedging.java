@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+
+/**
+ * Cuts the time spent waiting on a request that happens to be slow, set through
+ * {@link Configuration#hedging(Hedging)}. The latency of the latest requests is recorded and, once a request has been
+ * waiting longer than a percentile of it, 95th by default, a second copy of the request is sent. Whichever copy answers
+ * first is used and the other one is aborted.
+ * <p>
+ * Hedges are limited by a budget, so that the extra load they add stays bounded even when the service slows down as a
+ * whole: every request earns a fraction of a hedge, every hedge spends a whole one, and no more than a fixed number can
+ * be saved up. A hedge is a request like any other for the {@link RateLimit}: it is only sent if the limit lets a
+ * request through at once. Instances are thread-safe and count the requests hedged and the times the hedge answered
+ * first.
+ */
+public class Hedging
+{
+	private static final long MILLI = 1000;
+	private static final long NOT_YET = -1;
+
+	private double percentile = 95;
+	private int minimumSamples = 20;
+	private long[] latencies = new long[100];
+	private int next;
+	private int recorded;
+
+	private long budgetMilliTokensPerRequest = 50;
+	private long maxBudgetMilliTokens = 10 * MILLI;
+
+	private final AtomicLong budgetMilliTokens = new AtomicLong(maxBudgetMilliTokens);
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong hedgedRequests = new AtomicLong();
+	private final AtomicLong hedgeWins = new AtomicLong();
+	private final AtomicLong refusedHedges = new AtomicLong();
+
+	/**
+	 * Sets the percentile of the latency of the latest requests after which a request is hedged. 95 by default.
+	 * 
+	 * @param percentile
+	 *            the percentile
+	 * @return this hedging
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the percentile is not greater than 0 and less than 100
+	 */
+	public synchronized Hedging percentile(final double percentile)
+	{
+		ensure(percentile > 0 && percentile < 100, "percentile [%s] must be greater than 0 and less than 100",
+				percentile);
+
+		this.percentile = percentile;
+
+		return this;
+	}
+
+	/**
+	 * Sets the number of latest requests whose latency is considered, 100 by default, and the number of them that must
+	 * have been recorded before requests are hedged, 20 by default.
+	 * 
+	 * @param size
+	 *            the number of requests considered
+	 * @param minimumSamples
+	 *            the number of requests needed to hedge
+	 * @return this hedging
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if either number is not positive or the minimum is greater than the size
+	 */
+	public synchronized Hedging latencyWindow(final int size, final int minimumSamples)
+	{
+		ensure(size > 0, "latency window size [%s] must be positive", size);
+		ensure(minimumSamples > 0 && minimumSamples <= size, "minimum samples [%s] must be between 1 and [%s]",
+				minimumSamples, size);
+
+		this.minimumSamples = minimumSamples;
+		latencies = new long[size];
+		next = 0;
+		recorded = 0;
+
+		return this;
+	}
+
+	/**
+	 * Sets the hedging budget. By default every request earns a twentieth of a hedge, so that hedging adds at most 5%
+	 * to the requests sent, and up to 10 hedges can be saved up, which is also what the budget starts with.
+	 * 
+	 * @param hedgesPerRequest
+	 *            the fraction of a hedge earned by every request
+	 * @param maxSavedHedges
+	 *            the maximum number of hedges that can be saved up
+	 * @return this hedging
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the fraction is negative or greater than 1, or the maximum is negative
+	 */
+	public Hedging budget(final double hedgesPerRequest, final int maxSavedHedges)
+	{
+		ensure(hedgesPerRequest >= 0 && hedgesPerRequest <= 1, "hedges per request [%s] must be between 0 and 1",
+				hedgesPerRequest);
+		ensure(maxSavedHedges >= 0, "max saved hedges [%s] cannot be negative", maxSavedHedges);
+
+		budgetMilliTokensPerRequest = Math.round(hedgesPerRequest * MILLI);
+		maxBudgetMilliTokens = maxSavedHedges * MILLI;
+		budgetMilliTokens.set(maxBudgetMilliTokens);
+
+		return this;
+	}
+
+	/**
+	 * Gets the number of requests sent, not counting the hedges.
+	 * 
+	 * @return the number of requests
+	 */
+	public long getRequests()
+	{
+		return requests.get();
+	}
+
+	/**
+	 * Gets the number of requests for which a second copy was sent.
+	 * 
+	 * @return the number of requests hedged
+	 */
+	public long getHedgedRequests()
+	{
+		return hedgedRequests.get();
+	}
+
+	/**
+	 * Gets the number of hedges that answered before the request they were sent for.
+	 * 
+	 * @return the number of hedges that won
+	 */
+	public long getHedgeWins()
+	{
+		return hedgeWins.get();
+	}
+
+	/**
+	 * Gets the number of requests that were not hedged, though slow enough, because the budget had run out.
+	 * 
+	 * @return the number of hedges refused
+	 */
+	public long getRefusedHedges()
+	{
+		return refusedHedges.get();
+	}
+
+	/**
+	 * Gets the share of requests that were hedged, which is also the extra load hedging added.
+	 * 
+	 * @return the hedge rate, between 0 and 1
+	 */
+	public double getHedgeRate()
+	{
+		final long sent = requests.get();
+
+		return sent == 0 ? 0 : (double) hedgedRequests.get() / sent;
+	}
+
+	/**
+	 * Gets the share of hedges that answered before the request they were sent for.
+	 * 
+	 * @return the win rate, between 0 and 1
+	 */
+	public double getWinRate()
+	{
+		final long hedged = hedgedRequests.get();
+
+		return hedged == 0 ? 0 : (double) hedgeWins.get() / hedged;
+	}
+
+	/**
+	 * Records that a request is about to be sent and tells how long it may wait before it is hedged.
+	 * 
+	 * @return the time to wait in milliseconds, or -1 if too few latencies have been recorded yet to tell
+	 */
+	long sent()
+	{
+		requests.incrementAndGet();
+
+		for (long tokens = budgetMilliTokens.get(); tokens < maxBudgetMilliTokens; tokens = budgetMilliTokens.get())
+		{
+			if (budgetMilliTokens.compareAndSet(tokens, Math.min(maxBudgetMilliTokens, tokens
+					+ budgetMilliTokensPerRequest)))
+			{
+				break;
+			}
+		}
+
+		return delayMillis();
+	}
+
+	boolean spendHedge()
+	{
+		for (long tokens = budgetMilliTokens.get(); tokens >= MILLI; tokens = budgetMilliTokens.get())
+		{
+			if (budgetMilliTokens.compareAndSet(tokens, tokens - MILLI))
+			{
+				hedgedRequests.incrementAndGet();
+
+				return true;
+			}
+		}
+
+		refusedHedges.incrementAndGet();
+
+		return false;
+	}
+
+	void hedgeWon()
+	{
+		hedgeWins.incrementAndGet();
+	}
+
+	synchronized void answered(final long nanos)
+	{
+		latencies[next] = nanos;
+		next = (next + 1) % latencies.length;
+		recorded = Math.min(recorded + 1, latencies.length);
+	}
+
+	private synchronized long delayMillis()
+	{
+		if (recorded < minimumSamples)
+		{
+			return NOT_YET;
+		}
+
+		final long[] sorted = new long[recorded];
+
+		System.arraycopy(latencies, 0, sorted, 0, recorded);
+		Arrays.sort(sorted);
+
+		final int rank = (int) Math.ceil(percentile / 100 * recorded) - 1;
+
+		return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, rank)]);
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Closes pooled connections that have expired or stayed idle for too long, so that the pool does not hand out
+ * connections the service has already dropped.
+ */
+class IdleConnectionEvictor extends Thread
+{
+	private static final Logger log = Logger.getLogger(IdleConnectionEvictor.class);
+
+	private final ClientConnectionManager connections;
+	private final long idleTimeoutMillis;
+
+	private volatile boolean running = true;
+
+	IdleConnectionEvictor(final ClientConnectionManager connections, final long idleTimeoutMillis)
+	{
+		super("translate4j-idle-connection-evictor");
+
+		this.connections = connections;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+
+		setDaemon(true);
+	}
+
+	@Override
+	public void run()
+	{
+		while (running)
+		{
+			try
+			{
+				synchronized (this)
+				{
+					wait(idleTimeoutMillis);
+				}
+
+				if (running)
+				{
+					evict();
+				}
+			}
+			catch (final InterruptedException exception)
+			{
+				running = false;
+			}
+		}
+	}
+
+	void shutDown()
+	{
+		running = false;
+
+		synchronized (this)
+		{
+			notifyAll();
+		}
+	}
+
+	private void evict()
+	{
+		log.debug(format("closing connections idle for more than %sms...", idleTimeoutMillis));
+
+		try
+		{
+			connections.closeExpiredConnections();
+			connections.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		catch (final IllegalStateException exception)
+		{
+			running = false;
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded on-heap cache. Entries are kept in access order; when the cache is full, a new entry replaces the least
+ * recently used one only if the frequency sketch says it is asked for more often, otherwise it is not admitted.
+ */
+class InMemoryCache extends TranslationCache
+{
+	private static final boolean ACCESS_ORDER = true;
+
+	private final LinkedHashMap<CacheKey, Entry> entries;
+	private final FrequencySketch sketch;
+	private final int maxEntries;
+	private final long timeToLiveMillis;
+
+	InMemoryCache(final int maxEntries, final long timeToLiveMillis)
+	{
+		this.maxEntries = maxEntries;
+		this.timeToLiveMillis = timeToLiveMillis;
+
+		entries = new LinkedHashMap<CacheKey, Entry>(16, 0.75f, ACCESS_ORDER);
+		sketch = new FrequencySketch(maxEntries);
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	@Override
+	public synchronized int getSize()
+	{
+		return entries.size();
+	}
+
+	@Override
+	synchronized String get(final CacheKey key)
+	{
+		sketch.increment(key.hashCode());
+
+		final Entry entry = entries.get(key);
+
+		if (entry == null || entry.hasExpired())
+		{
+			if (entry != null)
+			{
+				entries.remove(key);
+			}
+
+			miss();
+
+			return null;
+		}
+
+		hit();
+
+		return entry.value;
+	}
+
+	@Override
+	synchronized void put(final CacheKey key, final String value)
+	{
+		if (entries.containsKey(key) || entries.size() < maxEntries || makeRoomFor(key))
+		{
+			entries.put(key, new Entry(value, expiryTime()));
+		}
+	}
+
+	@Override
+	void forEachKey(final KeyVisitor visitor)
+	{
+		for (final CacheKey key : keys())
+		{
+			visitor.visit(key);
+		}
+	}
+
+	@Override
+	void forEachResult(final ResultVisitor visitor) throws IOException
+	{
+		for (final Map.Entry<CacheKey, String> result : results().entrySet())
+		{
+			visitor.visit(result.getKey(), result.getValue());
+		}
+	}
+
+	private synchronized List<CacheKey> keys()
+	{
+		return new ArrayList<CacheKey>(entries.keySet());
+	}
+
+	private synchronized Map<CacheKey, String> results()
+	{
+		final Map<CacheKey, String> results = new LinkedHashMap<CacheKey, String>();
+
+		for (final Map.Entry<CacheKey, Entry> entry : entries.entrySet())
+		{
+			if (!entry.getValue().hasExpired())
+			{
+				results.put(entry.getKey(), entry.getValue().value);
+			}
+		}
+
+		return results;
+	}
+
+	private long expiryTime()
+	{
+		return timeToLiveMillis > 0 ? System.currentTimeMillis() + timeToLiveMillis : Long.MAX_VALUE;
+	}
+
+	private boolean makeRoomFor(final CacheKey candidate)
+	{
+		final Iterator<Map.Entry<CacheKey, Entry>> leastRecentlyUsed = entries.entrySet().iterator();
+		final Map.Entry<CacheKey, Entry> victim = leastRecentlyUsed.next();
+
+		if (!victim.getValue().hasExpired()
+				&& sketch.frequency(candidate.hashCode()) <= sketch.frequency(victim.getKey().hashCode()))
+		{
+			evicted();
+
+			return false;
+		}
+
+		leastRecentlyUsed.remove();
+		evicted();
+
+		return true;
+	}
+
+	private static class Entry
+	{
+		private final String value;
+		private final long expiryTime;
+
+		private Entry(final String value, final long expiryTime)
+		{
+			this.value = value;
+			this.expiryTime = expiryTime;
+		}
+
+		private boolean hasExpired()
+		{
+			return System.currentTimeMillis() >= expiryTime;
+		}
+	}
+}
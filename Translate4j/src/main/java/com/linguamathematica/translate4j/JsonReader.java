@@ -0,0 +1,312 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import static java.lang.String.format;
+
+/**
+ * A pull tokenizer that reads JSON straight from a stream, through a small buffer, without building a tree. Callers
+ * walk the document with the begin/end, name and value methods and skip whatever they are not interested in. Not
+ * thread-safe.
+ */
+class JsonReader
+{
+	private static final int END = -1;
+
+	private final Reader reader;
+	private final char[] buffer;
+	private final StringBuilder string = new StringBuilder();
+
+	private int position;
+	private int limit;
+	private long offset;
+
+	JsonReader(final Reader reader, final char[] buffer)
+	{
+		this.reader = reader;
+		this.buffer = buffer;
+	}
+
+	void beginArray() throws IOException
+	{
+		expect('[');
+	}
+
+	void beginObject() throws IOException
+	{
+		expect('{');
+	}
+
+	void endArray() throws IOException
+	{
+		expect(']');
+	}
+
+	void endObject() throws IOException
+	{
+		expect('}');
+	}
+
+	/**
+	 * Tells whether the current object or array has another member, consuming the comma before it if there is one.
+	 */
+	boolean hasNext() throws IOException
+	{
+		final int next = peekSignificant();
+
+		if (next == ',')
+		{
+			position++;
+
+			return true;
+		}
+
+		return next != '}' && next != ']' && next != END;
+	}
+
+	boolean nextIsString() throws IOException
+	{
+		return peekSignificant() == '"';
+	}
+
+	String nextName() throws IOException
+	{
+		final String name = nextString();
+
+		expect(':');
+
+		return name;
+	}
+
+	String nextString() throws IOException
+	{
+		expect('"');
+
+		string.setLength(0);
+
+		while (true)
+		{
+			if (position == limit && !fill())
+			{
+				throw invalid("unterminated string");
+			}
+
+			final int start = position;
+
+			while (position < limit && buffer[position] != '"' && buffer[position] != '\\')
+			{
+				position++;
+			}
+
+			string.append(buffer, start, position - start);
+
+			if (position < limit)
+			{
+				if (buffer[position++] == '"')
+				{
+					return string.toString();
+				}
+
+				string.append(unescaped());
+			}
+		}
+	}
+
+	void skipValue() throws IOException
+	{
+		final int next = peekSignificant();
+
+		if (next == '{')
+		{
+			beginObject();
+
+			while (hasNext())
+			{
+				nextName();
+				skipValue();
+			}
+
+			endObject();
+		}
+		else if (next == '[')
+		{
+			beginArray();
+
+			while (hasNext())
+			{
+				skipValue();
+			}
+
+			endArray();
+		}
+		else if (next == '"')
+		{
+			skipString();
+		}
+		else
+		{
+			skipLiteral();
+		}
+	}
+
+	private void skipString() throws IOException
+	{
+		expect('"');
+
+		for (int next = read(); next != '"'; next = read())
+		{
+			if (next == END)
+			{
+				throw invalid("unterminated string");
+			}
+
+			if (next == '\\')
+			{
+				unescaped();
+			}
+		}
+	}
+
+	private void skipLiteral() throws IOException
+	{
+		int length = 0;
+
+		for (int next = peek(); next != END && !isDelimiter(next); next = peek())
+		{
+			position++;
+			length++;
+		}
+
+		if (length == 0)
+		{
+			throw invalid("expected a value");
+		}
+	}
+
+	private char unescaped() throws IOException
+	{
+		final int escaped = read();
+
+		switch (escaped)
+		{
+		case '"':
+		case '\\':
+		case '/':
+			return (char) escaped;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			return (char) (hexDigit() << 12 | hexDigit() << 8 | hexDigit() << 4 | hexDigit());
+		default:
+			throw invalid("invalid escape sequence");
+		}
+	}
+
+	private int hexDigit() throws IOException
+	{
+		final int digit = Character.digit(read(), 16);
+
+		if (digit < 0)
+		{
+			throw invalid("invalid unicode escape");
+		}
+
+		return digit;
+	}
+
+	private void expect(final char expected) throws IOException
+	{
+		final int next = peekSignificant();
+
+		if (next != expected)
+		{
+			throw invalid(format("expected '%s' but found %s", expected, describe(next)));
+		}
+
+		position++;
+	}
+
+	private int peekSignificant() throws IOException
+	{
+		int next = peek();
+
+		while (next == ' ' || next == '\n' || next == '\r' || next == '\t')
+		{
+			position++;
+			next = peek();
+		}
+
+		return next;
+	}
+
+	private int peek() throws IOException
+	{
+		if (position == limit && !fill())
+		{
+			return END;
+		}
+
+		return buffer[position];
+	}
+
+	private int read() throws IOException
+	{
+		final int next = peek();
+
+		if (next != END)
+		{
+			position++;
+		}
+
+		return next;
+	}
+
+	private boolean fill() throws IOException
+	{
+		offset += limit;
+		position = 0;
+		limit = Math.max(0, reader.read(buffer, 0, buffer.length));
+
+		return limit > 0;
+	}
+
+	private IOException invalid(final String problem)
+	{
+		return new IOException(format("Response content was invalid, %s at offset %s", problem, offset + position));
+	}
+
+	private static String describe(final int next)
+	{
+		return next == END ? "end of content" : format("'%s'", (char) next);
+	}
+
+	private static boolean isDelimiter(final int next)
+	{
+		return next == ',' || next == '}' || next == ']' || next == ' ' || next == '\n' || next == '\r'
+				|| next == '\t';
+	}
+}
@@ -0,0 +1,468 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+
+/**
+ * Tells the language of a text locally, from the character n-grams in it, without asking the service. Every language
+ * has a profile of how often each n-gram of one to three letters turns up in a sample of it, and a text is scored
+ * against all the profiles at once, naive Bayes fashion: the language that makes the n-grams of the text likeliest
+ * wins, with a confidence that is its share of the likelihood of them all.
+ * <p>
+ * The profiles are kept in one open-addressed table of primitive arrays and texts are scored without allocating, so
+ * detecting is cheap enough to do on every call. Short texts and languages as close as Indonesian and Malay get low
+ * confidences; set through {@link Configuration#localDetection(LanguageDetector, double)}, a detector answers the
+ * detections it is confident about and leaves the rest to the service. Instances are immutable and thread-safe.
+ */
+public class LanguageDetector
+{
+	private static final String BUILT_IN_SAMPLES = "language-samples.txt";
+	private static final long EMPTY = 0;
+	private static final double N_GRAMS_PER_LETTER = 3;
+
+	private final Language[] languages;
+	private final double[] logSizes;
+	private final long[] keys;
+	private final int[] nGramAt;
+	private final int[] entriesFrom;
+	private final byte[] entryLanguages;
+	private final float[] entryWeights;
+	private final int mask;
+
+	private final ThreadLocal<Scorer> scorers = new ThreadLocal<Scorer>()
+	{
+		@Override
+		protected Scorer initialValue()
+		{
+			return new Scorer();
+		}
+	};
+
+	/**
+	 * Gets a detector for every language but {@link Language#UNKNOWN}, with profiles made from the samples bundled
+	 * with the library. They are loaded the first time this is called.
+	 *
+	 * @return the detector
+	 */
+	public static LanguageDetector builtIn()
+	{
+		return BuiltIn.DETECTOR;
+	}
+
+	/**
+	 * Makes a detector with profiles from the given samples: one language per line, as its code, a tab and sample
+	 * text in it. Blank lines and lines starting with # are skipped. The longer the samples, the better the profiles;
+	 * a few sentences each will tell most languages apart.
+	 *
+	 * @param samples
+	 *            the samples, which are read to the end but not closed
+	 * @return the detector
+	 *
+	 * @throws IOException
+	 *             if the samples cannot be read
+	 * @throws IllegalArgumentException
+	 *             if a line is not a known language code and its sample, or a language has two samples
+	 */
+	public static LanguageDetector fromSamples(final Reader samples) throws IOException
+	{
+		ensureNotNull(samples, "samples");
+
+		final BufferedReader lines = new BufferedReader(samples);
+		final List<Language> languages = new ArrayList<Language>();
+		final List<NGramCounter> counters = new ArrayList<NGramCounter>();
+
+		for (String line = lines.readLine(); line != null; line = lines.readLine())
+		{
+			if (line.trim().length() == 0 || line.startsWith("#"))
+			{
+				continue;
+			}
+
+			final int tab = line.indexOf('\t');
+
+			ensure(tab > 0, "sample line [%s] must start with a language code and a tab", line);
+
+			final Language language = Language.from(line.substring(0, tab));
+
+			ensure(language != Language.UNKNOWN, "sample line [%s] must start with a known language code", line);
+			ensure(!languages.contains(language), "language [%s] has more than one sample", language);
+
+			final NGramCounter counter = new NGramCounter();
+
+			counter.of(line.substring(tab + 1));
+			languages.add(language);
+			counters.add(counter);
+		}
+
+		ensure(!languages.isEmpty(), "samples must have at least one language");
+		ensure(languages.size() <= Byte.MAX_VALUE, "samples cannot have more than [%s] languages", Byte.MAX_VALUE);
+
+		return new LanguageDetector(languages, counters);
+	}
+
+	private LanguageDetector(final List<Language> languages, final List<NGramCounter> counters)
+	{
+		this.languages = languages.toArray(new Language[languages.size()]);
+
+		final Map<Long, Integer> indexes = new HashMap<Long, Integer>();
+		final List<Long> nGrams = new ArrayList<Long>();
+		int entries = 0;
+
+		logSizes = new double[counters.size()];
+
+		for (int language = 0; language < counters.size(); language++)
+		{
+			final Map<Long, int[]> counts = counters.get(language).counts;
+
+			logSizes[language] = Math.log(counters.get(language).total + counts.size());
+			entries += counts.size();
+
+			for (final Long nGram : counts.keySet())
+			{
+				if (!indexes.containsKey(nGram))
+				{
+					indexes.put(nGram, nGrams.size());
+					nGrams.add(nGram);
+				}
+			}
+		}
+
+		final int capacity = Integer.highestOneBit(Math.max(2, nGrams.size()) * 2 - 1) * 2;
+
+		mask = capacity - 1;
+		keys = new long[capacity];
+		nGramAt = new int[capacity];
+		entriesFrom = new int[nGrams.size() + 1];
+		entryLanguages = new byte[entries];
+		entryWeights = new float[entries];
+
+		for (int index = 0; index < nGrams.size(); index++)
+		{
+			final long nGram = nGrams.get(index);
+			int slot = slotOf(nGram);
+
+			while (keys[slot] != EMPTY)
+			{
+				slot = (slot + 1) & mask;
+			}
+
+			keys[slot] = nGram;
+			nGramAt[slot] = index;
+
+			for (final NGramCounter counter : counters)
+			{
+				entriesFrom[index + 1] += counter.counts.containsKey(nGram) ? 1 : 0;
+			}
+
+			entriesFrom[index + 1] += entriesFrom[index];
+		}
+
+		final int[] filled = new int[nGrams.size()];
+
+		for (int language = 0; language < counters.size(); language++)
+		{
+			for (final Map.Entry<Long, int[]> count : counters.get(language).counts.entrySet())
+			{
+				final int index = indexes.get(count.getKey());
+				final int entry = entriesFrom[index] + filled[index]++;
+
+				entryLanguages[entry] = (byte) language;
+				entryWeights[entry] = (float) Math.log(count.getValue()[0] + 1);
+			}
+		}
+	}
+
+	/**
+	 * Gets the languages this detector has profiles for.
+	 *
+	 * @return the languages
+	 */
+	public List<Language> getLanguages()
+	{
+		return Base.newList(languages.clone());
+	}
+
+	/**
+	 * Guesses the language of the given text. A text without any letters known to the profiles is guessed to be
+	 * {@link Language#UNKNOWN} with no confidence.
+	 *
+	 * @param text
+	 *            the text
+	 * @return the likeliest language and the confidence in it
+	 *
+	 * @throws NullPointerException
+	 *             if the text is null
+	 */
+	public Guess guess(final CharSequence text)
+	{
+		ensureNotNull(text, "text");
+
+		final Scorer scorer = scorers.get();
+		final double confidence = scorer.score(text);
+
+		return new Guess(scorer.best, confidence);
+	}
+
+	/**
+	 * Gets the likeliest language of the text if the confidence in it is at least the given one, or
+	 * {@link Language#UNKNOWN} otherwise, without allocating.
+	 */
+	Language detect(final CharSequence text, final double minConfidence)
+	{
+		ensureNotNull(text, "text");
+
+		final Scorer scorer = scorers.get();
+
+		return scorer.score(text) >= minConfidence ? scorer.best : Language.UNKNOWN;
+	}
+
+	private int slotOf(final long nGram)
+	{
+		return (int) (nGram * 0x9E3779B97F4A7C15L >>> 32) & mask;
+	}
+
+	/**
+	 * The likeliest language of a text, and how confident the detector is that the text is in it.
+	 */
+	public static class Guess
+	{
+		private final Language language;
+		private final double confidence;
+
+		Guess(final Language language, final double confidence)
+		{
+			this.language = language;
+			this.confidence = confidence;
+		}
+
+		/**
+		 * Gets the likeliest language of the text.
+		 *
+		 * @return the language, or {@link Language#UNKNOWN} if nothing in the text is known
+		 */
+		public Language getLanguage()
+		{
+			return language;
+		}
+
+		/**
+		 * Gets the confidence that the text is in the language guessed.
+		 *
+		 * @return the confidence, between 0 and 1
+		 */
+		public double getConfidence()
+		{
+			return confidence;
+		}
+
+		@Override
+		public String toString()
+		{
+			return format("%s (%.2f)", language, confidence);
+		}
+	}
+
+	/**
+	 * Goes over the n-grams of one to three letters of a text, each as a key of up to three 16-bit characters. Letters
+	 * are lower-cased and anything else is a word boundary, which counts as a space before and after every word.
+	 */
+	private abstract static class NGrams
+	{
+		final void of(final CharSequence text)
+		{
+			long lastTwo = ' ';
+
+			for (int i = 0; i <= text.length(); i++)
+			{
+				final char letter = i < text.length() ? normalized(text.charAt(i)) : ' ';
+				final long last = lastTwo & 0xFFFF;
+
+				if (letter == ' ' && last == ' ')
+				{
+					continue;
+				}
+
+				if (letter != ' ')
+				{
+					add(letter);
+				}
+
+				add(last << 16 | letter);
+
+				if (lastTwo > 0xFFFF)
+				{
+					add(lastTwo << 16 | letter);
+				}
+
+				lastTwo = last << 16 | letter;
+			}
+		}
+
+		abstract void add(long nGram);
+
+		private static char normalized(final char character)
+		{
+			final int type = Character.getType(character);
+
+			return Character.isLetter(character) || type == Character.NON_SPACING_MARK
+					|| type == Character.COMBINING_SPACING_MARK ? Character.toLowerCase(character) : ' ';
+		}
+	}
+
+	private static class NGramCounter extends NGrams
+	{
+		final Map<Long, int[]> counts = new HashMap<Long, int[]>();
+		int total;
+
+		@Override
+		void add(final long nGram)
+		{
+			final int[] count = counts.get(nGram);
+
+			if (count == null)
+			{
+				counts.put(nGram, new int[] { 1 });
+			}
+			else
+			{
+				count[0]++;
+			}
+
+			total++;
+		}
+	}
+
+	/**
+	 * Scores a text against every profile, with one per thread so that scoring allocates nothing. A language scores the
+	 * log-likelihood of the n-grams of the text known to any profile, each counted once more than in its sample so
+	 * that missing ones are not ruled out. Every letter is in up to three n-grams, which are far from independent, so
+	 * scores are divided by three before being turned into a confidence, or it would be overstated.
+	 */
+	private class Scorer extends NGrams
+	{
+		final double[] scores = new double[languages.length];
+		int known;
+		Language best;
+
+		double score(final CharSequence text)
+		{
+			for (int language = 0; language < scores.length; language++)
+			{
+				scores[language] = 0;
+			}
+
+			known = 0;
+			of(text);
+
+			if (known == 0)
+			{
+				best = Language.UNKNOWN;
+
+				return 0;
+			}
+
+			int likeliest = 0;
+
+			for (int language = 0; language < scores.length; language++)
+			{
+				scores[language] -= known * logSizes[language];
+				likeliest = scores[language] > scores[likeliest] ? language : likeliest;
+			}
+
+			double likelihoods = 0;
+
+			for (int language = 0; language < scores.length; language++)
+			{
+				likelihoods += Math.exp((scores[language] - scores[likeliest]) / N_GRAMS_PER_LETTER);
+			}
+
+			best = languages[likeliest];
+
+			return 1 / likelihoods;
+		}
+
+		@Override
+		void add(final long nGram)
+		{
+			for (int slot = slotOf(nGram); keys[slot] != EMPTY; slot = (slot + 1) & mask)
+			{
+				if (keys[slot] == nGram)
+				{
+					final int index = nGramAt[slot];
+
+					for (int entry = entriesFrom[index]; entry < entriesFrom[index + 1]; entry++)
+					{
+						scores[entryLanguages[entry]] += entryWeights[entry];
+					}
+
+					known++;
+
+					return;
+				}
+			}
+		}
+	}
+
+	private static class BuiltIn
+	{
+		static final LanguageDetector DETECTOR = load();
+
+		private static LanguageDetector load()
+		{
+			final InputStream samples = LanguageDetector.class.getResourceAsStream(BUILT_IN_SAMPLES);
+
+			if (samples == null)
+			{
+				throw new IllegalStateException(format("Language samples [%s] are missing", BUILT_IN_SAMPLES));
+			}
+
+			try
+			{
+				return fromSamples(new InputStreamReader(samples, "UTF-8"));
+			}
+			catch (final IOException exception)
+			{
+				throw new IllegalStateException(format("Language samples [%s] cannot be read", BUILT_IN_SAMPLES),
+						exception);
+			}
+			finally
+			{
+				try
+				{
+					samples.close();
+				}
+				catch (final IOException ignored)
+				{
+					// nothing more to read from it
+				}
+			}
+		}
+	}
+}
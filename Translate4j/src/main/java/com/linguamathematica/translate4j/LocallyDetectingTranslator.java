@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells the language of texts with a {@link LanguageDetector} and only asks the translator behind it about the ones
+ * the detector is not confident enough about. Those of a batch are asked about with a single batch call.
+ */
+class LocallyDetectingTranslator extends ForwardingTranslator
+{
+	private final LanguageDetector detector;
+	private final double minConfidence;
+
+	LocallyDetectingTranslator(final Translator delegate, final LanguageDetector detector, final double minConfidence)
+	{
+		super(delegate);
+
+		this.detector = detector;
+		this.minConfidence = minConfidence;
+	}
+
+	@Override
+	public Language detect(final String text)
+	{
+		final Language language = detector.detect(text, minConfidence);
+
+		return language != Language.UNKNOWN ? language : delegate.detect(text);
+	}
+
+	@Override
+	public List<Language> detect(final List<String> texts)
+	{
+		final List<Language> languages = new ArrayList<Language>(texts.size());
+		final List<String> unsure = new ArrayList<String>();
+
+		for (final String text : texts)
+		{
+			final Language language = detector.detect(text, minConfidence);
+
+			languages.add(language);
+
+			if (language == Language.UNKNOWN)
+			{
+				unsure.add(text);
+			}
+		}
+
+		if (unsure.isEmpty())
+		{
+			return languages;
+		}
+
+		final List<Language> detected = delegate.detect(unsure);
+
+		for (int i = 0, next = 0; i < languages.size(); i++)
+		{
+			if (languages.get(i) == Language.UNKNOWN)
+			{
+				languages.set(i, detected.get(next++));
+			}
+		}
+
+		return languages;
+	}
+}
@@ -0,0 +1,415 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cache kept outside the heap, so that millions of results add nothing for the garbage collector to trace. Results
+ * are written one after another, key and value in UTF-8, into slabs of direct memory used in turn as a ring, and found
+ * through an open-addressed hash index, also in direct memory, of a long per result: the hash of its key and the
+ * address of its record. A record holds the length of the key and of the value, a byte set once the result has been
+ * asked for, the key and the value.
+ * <p>
+ * When the slabs are full, or the index is, the oldest slab is evicted to make room. Its results that have been asked
+ * for since they were written get a second chance: they are copied into a spare slab, up to half of it, which takes
+ * the place of the evicted one. The rest are dropped.
+ */
+class OffHeapCache extends TranslationCache
+{
+	private static final int MAX_SLAB_SIZE = 1024 * 1024;
+	private static final int RECORD_HEADER_SIZE = 9;
+	private static final int ACCESSED_FLAG = 8;
+	private static final int BYTES_PER_SLOT = 64;
+
+	private final int slabSize;
+	private final int[] ends;
+	private final int mask;
+	private final int maxCount;
+
+	private ByteBuffer[] slabs;
+	private ByteBuffer spare;
+	private LongBuffer index;
+	private int current;
+	private int count;
+
+	OffHeapCache(final int maxBytes)
+	{
+		slabSize = Math.min(MAX_SLAB_SIZE, maxBytes / 8);
+		slabs = new ByteBuffer[maxBytes / slabSize - 1];
+		ends = new int[slabs.length];
+
+		final int slots = Integer.highestOneBit(maxBytes / BYTES_PER_SLOT);
+
+		index = ByteBuffer.allocateDirect(slots * 8).asLongBuffer();
+		mask = slots - 1;
+		maxCount = slots / 4 * 3;
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		if (index == null)
+		{
+			return;
+		}
+
+		for (int slot = 0; slot <= mask; slot++)
+		{
+			index.put(slot, 0);
+		}
+
+		for (int slab = 0; slab < ends.length; slab++)
+		{
+			ends[slab] = 0;
+		}
+
+		current = 0;
+		count = 0;
+	}
+
+	@Override
+	public synchronized void close()
+	{
+		slabs = null;
+		spare = null;
+		index = null;
+		count = 0;
+	}
+
+	@Override
+	public synchronized int getSize()
+	{
+		return count;
+	}
+
+	@Override
+	synchronized String get(final CacheKey key)
+	{
+		if (index != null)
+		{
+			final byte[] bytes = key.toBytes();
+			final long entry = index.get(find(bytes, hashOf(bytes)));
+
+			if (entry != 0)
+			{
+				final ByteBuffer slab = slabs[slabOf(entry)];
+				final int offset = offsetOf(entry);
+				final byte[] value = new byte[slab.getInt(offset + 4)];
+
+				slab.put(offset + ACCESSED_FLAG, (byte) 1);
+				slab.position(offset + RECORD_HEADER_SIZE + slab.getInt(offset));
+				slab.get(value);
+
+				hit();
+
+				return CacheKey.decoded(value);
+			}
+		}
+
+		miss();
+
+		return null;
+	}
+
+	@Override
+	synchronized void put(final CacheKey key, final String value)
+	{
+		if (index == null)
+		{
+			return;
+		}
+
+		final byte[] keyBytes = key.toBytes();
+		final byte[] valueBytes = CacheKey.encoded(value);
+		final int size = RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+
+		for (int turns = 0; ends[current] + size > slabSize || count >= maxCount; turns++)
+		{
+			if (size > slabSize || turns == slabs.length)
+			{
+				evicted();
+
+				return;
+			}
+
+			current = (current + 1) % slabs.length;
+			evict(current);
+		}
+
+		if (slabs[current] == null)
+		{
+			slabs[current] = ByteBuffer.allocateDirect(slabSize);
+		}
+
+		final ByteBuffer slab = slabs[current];
+		final int offset = ends[current];
+		final int hash = hashOf(keyBytes);
+		final int slot = find(keyBytes, hash);
+
+		slab.putInt(offset, keyBytes.length);
+		slab.putInt(offset + 4, valueBytes.length);
+		slab.put(offset + ACCESSED_FLAG, (byte) 0);
+		slab.position(offset + RECORD_HEADER_SIZE);
+		slab.put(keyBytes).put(valueBytes);
+		ends[current] += size;
+
+		if (index.get(slot) == 0)
+		{
+			count++;
+		}
+
+		index.put(slot, entryOf(hash, current, offset));
+	}
+
+	@Override
+	void forEachKey(final KeyVisitor visitor)
+	{
+		final List<byte[]> keys = new ArrayList<byte[]>();
+
+		for (int slab = 0; slab < ends.length; slab++)
+		{
+			recordsIn(slab, keys, null);
+
+			for (final byte[] key : keys)
+			{
+				visitor.visit(CacheKey.fromBytes(key));
+			}
+
+			keys.clear();
+		}
+	}
+
+	@Override
+	void forEachResult(final ResultVisitor visitor) throws IOException
+	{
+		final List<byte[]> keys = new ArrayList<byte[]>();
+		final List<byte[]> values = new ArrayList<byte[]>();
+
+		for (int slab = 0; slab < ends.length; slab++)
+		{
+			recordsIn(slab, keys, values);
+
+			for (int i = 0; i < keys.size(); i++)
+			{
+				visitor.visit(CacheKey.fromBytes(keys.get(i)), CacheKey.decoded(values.get(i)));
+			}
+
+			keys.clear();
+			values.clear();
+		}
+	}
+
+	/**
+	 * Copies out the keys of the results in a slab and, if given a list for them, their values. Results only ever move
+	 * within their slab, so a walk of the slabs one at a time sees every result that is in the cache throughout.
+	 */
+	private synchronized void recordsIn(final int slab, final List<byte[]> keys, final List<byte[]> values)
+	{
+		final ByteBuffer from = slabs != null ? slabs[slab] : null;
+
+		for (int offset = 0; from != null && offset < ends[slab];)
+		{
+			final int keyLength = from.getInt(offset);
+
+			if (slotOf(hashOf(from, offset + RECORD_HEADER_SIZE, keyLength), slab, offset) >= 0)
+			{
+				final byte[] key = new byte[keyLength];
+
+				from.position(offset + RECORD_HEADER_SIZE);
+				from.get(key);
+				keys.add(key);
+
+				if (values != null)
+				{
+					final byte[] value = new byte[from.getInt(offset + 4)];
+
+					from.get(value);
+					values.add(value);
+				}
+			}
+
+			offset += RECORD_HEADER_SIZE + keyLength + from.getInt(offset + 4);
+		}
+	}
+
+	/**
+	 * Empties a slab to write in, copying the results in it that were asked for into the spare slab, which takes its
+	 * place, and dropping the rest from the index. Results that were replaced are already out of the index.
+	 */
+	private void evict(final int slab)
+	{
+		final ByteBuffer from = slabs[slab];
+
+		if (from == null || ends[slab] == 0)
+		{
+			return;
+		}
+
+		if (spare == null)
+		{
+			spare = ByteBuffer.allocateDirect(slabSize);
+		}
+
+		int kept = 0;
+
+		for (int offset = 0; offset < ends[slab];)
+		{
+			final int size = RECORD_HEADER_SIZE + from.getInt(offset) + from.getInt(offset + 4);
+			final int hash = hashOf(from, offset + RECORD_HEADER_SIZE, from.getInt(offset));
+			final int slot = slotOf(hash, slab, offset);
+
+			if (slot >= 0 && from.get(offset + ACCESSED_FLAG) != 0 && kept + size <= slabSize / 2)
+			{
+				from.limit(offset + size).position(offset);
+				spare.position(kept);
+				spare.put(from);
+				from.clear();
+				spare.put(kept + ACCESSED_FLAG, (byte) 0);
+				index.put(slot, entryOf(hash, slab, kept));
+				kept += size;
+			}
+			else if (slot >= 0)
+			{
+				remove(slot);
+				count--;
+				evicted();
+			}
+
+			offset += size;
+		}
+
+		slabs[slab] = spare;
+		spare = from;
+		ends[slab] = kept;
+	}
+
+	private int find(final byte[] key, final int hash)
+	{
+		for (int slot = hash & mask;; slot = (slot + 1) & mask)
+		{
+			final long entry = index.get(slot);
+
+			if (entry == 0 || (int) (entry >>> 32) == hash && hasKeyAt(entry, key))
+			{
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Finds the slot of the index that points at the given record, or -1 if the record was replaced since.
+	 */
+	private int slotOf(final int hash, final int slab, final int offset)
+	{
+		final long wanted = entryOf(hash, slab, offset);
+
+		for (int slot = hash & mask;; slot = (slot + 1) & mask)
+		{
+			final long entry = index.get(slot);
+
+			if (entry == 0 || entry == wanted)
+			{
+				return entry == 0 ? -1 : slot;
+			}
+		}
+	}
+
+	/**
+	 * Empties a slot of the index, moving back the entries after it that would no longer be found otherwise.
+	 */
+	private void remove(final int removed)
+	{
+		int empty = removed;
+
+		for (int slot = (empty + 1) & mask;; slot = (slot + 1) & mask)
+		{
+			final long entry = index.get(slot);
+
+			if (entry == 0)
+			{
+				break;
+			}
+
+			final int home = (int) (entry >>> 32) & mask;
+
+			if (((slot - home) & mask) >= ((slot - empty) & mask))
+			{
+				index.put(empty, entry);
+				empty = slot;
+			}
+		}
+
+		index.put(empty, 0);
+	}
+
+	private boolean hasKeyAt(final long entry, final byte[] key)
+	{
+		final ByteBuffer slab = slabs[slabOf(entry)];
+		final int offset = offsetOf(entry);
+
+		if (slab.getInt(offset) != key.length)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < key.length; i++)
+		{
+			if (slab.get(offset + RECORD_HEADER_SIZE + i) != key[i])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private long entryOf(final int hash, final int slab, final int offset)
+	{
+		return (long) hash << 32 | slab * slabSize + offset + 1;
+	}
+
+	private int slabOf(final long entry)
+	{
+		return ((int) entry - 1) / slabSize;
+	}
+
+	private int offsetOf(final long entry)
+	{
+		return ((int) entry - 1) % slabSize;
+	}
+
+	private static int hashOf(final byte[] bytes)
+	{
+		return hashOf(ByteBuffer.wrap(bytes), 0, bytes.length);
+	}
+
+	private static int hashOf(final ByteBuffer buffer, final int offset, final int length)
+	{
+		int hash = 0x811c9dc5;
+
+		for (int i = offset; i < offset + length; i++)
+		{
+			hash = (hash ^ (buffer.get(i) & 0xff)) * 0x01000193;
+		}
+
+		return hash;
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * A view of a translator whose calls are all made with the same priority. Each call sets the priority of the calling
+ * thread for as long as it runs, and asynchronous calls carry it over to the thread that runs them.
+ */
+class PrioritizedTranslator extends ForwardingTranslator
+{
+	private final Priority priority;
+
+	PrioritizedTranslator(final Translator delegate, final Priority priority)
+	{
+		super(delegate);
+
+		this.priority = priority;
+	}
+
+	@Override
+	public Language detect(final String text)
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			return delegate.detect(text);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public List<Language> detect(final List<String> texts)
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			return delegate.detect(texts);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public Future<Language> detectAsync(final String text)
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			return super.detectAsync(text);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public Future<List<Language>> detectAsync(final List<String> texts)
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			return super.detectAsync(texts);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public String translate(final String text, final Language source, final Language target)
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			return delegate.translate(text, source, target);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public List<String> translate(final List<String> texts, final Language source, final Language target)
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			return delegate.translate(texts, source, target);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public List<Translation> translateAndDetect(final List<String> texts, final Language target)
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			return delegate.translateAndDetect(texts, target);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public Future<String> translateAsync(final String text, final Language source, final Language target)
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			return super.translateAsync(text, source, target);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public Future<List<String>> translateAsync(final List<String> texts, final Language source,
+			final Language target)
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			return super.translateAsync(texts, source, target);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public String translateDocument(final String document, final Language source, final Language target)
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			return super.translateDocument(document, source, target);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public void translate(final Reader reader, final Writer writer, final Language source, final Language target)
+			throws IOException
+	{
+		final Priority previous = Priority.use(priority);
+
+		try
+		{
+			super.translate(reader, writer, source, target);
+		}
+		finally
+		{
+			Priority.use(previous);
+		}
+	}
+
+	@Override
+	public Translator withPriority(final Priority priority)
+	{
+		return delegate.withPriority(priority);
+	}
+}
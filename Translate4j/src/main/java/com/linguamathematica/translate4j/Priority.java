@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+/**
+ * The priority of the calls made through a translator, given with {@link Translator#withPriority(Priority)}. Calls that
+ * someone is waiting for go ahead of bulk work wherever calls queue: for the translator's own asynchronous threads
+ * and for a {@link ConcurrencyLimit}, which also keeps part of its capacity for them.
+ */
+public enum Priority
+{
+	/** Calls someone is waiting for, which go first; the priority of calls made on a translator by default */
+	INTERACTIVE,
+
+	/** Background work, which uses the capacity interactive calls leave */
+	BULK;
+
+	private static final ThreadLocal<Priority> current = new ThreadLocal<Priority>()
+	{
+		@Override
+		protected Priority initialValue()
+		{
+			return INTERACTIVE;
+		}
+	};
+
+	/**
+	 * Gets the priority of the call the current thread is making.
+	 */
+	static Priority current()
+	{
+		return current.get();
+	}
+
+	/**
+	 * Sets the priority of the calls the current thread makes.
+	 * 
+	 * @return the priority they had before
+	 */
+	static Priority use(final Priority priority)
+	{
+		final Priority previous = current.get();
+
+		current.set(priority);
+
+		return previous;
+	}
+}
@@ -0,0 +1,412 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+
+/**
+ * Limits the requests sent to the service, and the characters of text in them, on the client side, set through
+ * {@link Configuration#rateLimit(RateLimit)}. Both are metered with token buckets that hold up to a second's worth.
+ * A request that would go over a limit waits until it no longer would, for as long as it takes or up to a maximum
+ * wait, or is rejected at once with a {@link RequestRejectedException}.
+ * <p>
+ * A daily character quota can also be set. Once most of it has been used, the characters left are spread evenly over
+ * the rest of the day, so that bulk work slows down instead of failing part way when the quota runs out. Requests
+ * that would go over the quota itself are rejected. The day ends at midnight Pacific time, when the service resets its
+ * quotas, unless another time zone is given. Instances are thread-safe and may be shared by several translators.
+ */
+public class RateLimit
+{
+	static final TimeZone QUOTA_TIME_ZONE = TimeZone.getTimeZone("America/Los_Angeles");
+
+	private static final long UNLIMITED = 0;
+	private static final long FOREVER = Long.MAX_VALUE;
+	private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private double requestsPerSecond = UNLIMITED;
+	private double charactersPerSecond = UNLIMITED;
+	private long dailyCharacters = UNLIMITED;
+	private double pacingThreshold = 0.8;
+	private TimeZone quotaTimeZone = QUOTA_TIME_ZONE;
+	private long maxWaitNanos = FOREVER;
+
+	private final AtomicLong throttledRequests = new AtomicLong();
+	private final AtomicLong rejectedRequests = new AtomicLong();
+
+	private double requestTokens;
+	private double characterTokens;
+	private long refilledAt = System.nanoTime();
+	private long charactersToday;
+	private long dayEndsAtMillis;
+
+	/**
+	 * Sets the maximum number of requests per second. Unlimited by default.
+	 *
+	 * @param requestsPerSecond
+	 *            the number of requests per second
+	 * @return this limit
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number is not positive
+	 */
+	public synchronized RateLimit requestsPerSecond(final double requestsPerSecond)
+	{
+		ensure(requestsPerSecond > 0, "requests per second [%s] must be positive", requestsPerSecond);
+
+		this.requestsPerSecond = requestsPerSecond;
+		requestTokens = requestsPerSecond;
+
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of characters of text per second. Unlimited by default.
+	 *
+	 * @param charactersPerSecond
+	 *            the number of characters per second
+	 * @return this limit
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number is not positive
+	 */
+	public synchronized RateLimit charactersPerSecond(final double charactersPerSecond)
+	{
+		ensure(charactersPerSecond > 0, "characters per second [%s] must be positive", charactersPerSecond);
+
+		this.charactersPerSecond = charactersPerSecond;
+		characterTokens = charactersPerSecond;
+
+		return this;
+	}
+
+	/**
+	 * Sets the daily character quota. Unlimited by default.
+	 *
+	 * @param dailyCharacters
+	 *            the number of characters per day
+	 * @return this limit
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number is not positive
+	 */
+	public synchronized RateLimit dailyCharacters(final long dailyCharacters)
+	{
+		ensure(dailyCharacters > 0, "daily characters [%s] must be positive", dailyCharacters);
+
+		this.dailyCharacters = dailyCharacters;
+
+		return this;
+	}
+
+	/**
+	 * Sets the share of the daily quota after which the characters left are spread over the rest of the day. 0.8 by
+	 * default.
+	 *
+	 * @param pacingThreshold
+	 *            the share of the quota, between 0 and 1
+	 * @return this limit
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the share is not between 0 and 1
+	 */
+	public synchronized RateLimit pacingThreshold(final double pacingThreshold)
+	{
+		ensure(pacingThreshold >= 0 && pacingThreshold <= 1, "pacing threshold [%s] must be between 0 and 1",
+				pacingThreshold);
+
+		this.pacingThreshold = pacingThreshold;
+
+		return this;
+	}
+
+	/**
+	 * Sets the time zone at whose midnight the daily quota starts again. Pacific time by default.
+	 *
+	 * @param timeZone
+	 *            the time zone
+	 * @return this limit
+	 *
+	 * @throws NullPointerException
+	 *             if the time zone is null
+	 */
+	public synchronized RateLimit quotaTimeZone(final TimeZone timeZone)
+	{
+		ensureNotNull(timeZone, "time zone");
+
+		quotaTimeZone = timeZone;
+		dayEndsAtMillis = 0;
+
+		return this;
+	}
+
+	/**
+	 * Sets the longest a request waits for the limits to let it through before it is rejected. Zero rejects requests
+	 * at once; by default they wait as long as it takes.
+	 *
+	 * @param maxWait
+	 *            the maximum wait
+	 * @param unit
+	 *            the unit of the wait
+	 * @return this limit
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the wait is negative
+	 */
+	public synchronized RateLimit maxWait(final long maxWait, final TimeUnit unit)
+	{
+		ensureNotNull(unit, "time unit");
+		ensure(maxWait >= 0, "max wait [%s] cannot be negative", maxWait);
+
+		maxWaitNanos = unit.toNanos(maxWait);
+
+		return this;
+	}
+
+	/**
+	 * Gets the number of times a request had to wait for the limits, for its characters or for its turn to be sent.
+	 *
+	 * @return the number of requests throttled
+	 */
+	public long getThrottledRequests()
+	{
+		return throttledRequests.get();
+	}
+
+	/**
+	 * Gets the number of requests rejected.
+	 *
+	 * @return the number of requests rejected
+	 */
+	public long getRejectedRequests()
+	{
+		return rejectedRequests.get();
+	}
+
+	/**
+	 * Gets the number of characters sent, or about to be sent, since the quota day began.
+	 *
+	 * @return the number of characters
+	 */
+	public synchronized long getCharactersToday()
+	{
+		startNewDayIfOver(System.currentTimeMillis());
+
+		return charactersToday;
+	}
+
+	/**
+	 * Takes the given number of characters from the character bucket and the daily quota, waiting for them to be there
+	 * if need be, unless that means waiting past the deadline of the call. The request itself is metered, every time
+	 * it is sent, by {@link #acquireRequest(Deadline)}.
+	 *
+	 * @throws RequestRejectedException
+	 *             if the request would have to wait longer than the maximum or would go over the daily quota
+	 * @throws DeadlineExceededException
+	 *             if the request would have to wait past the deadline
+	 */
+	void acquireCharacters(final int characters, final Deadline deadline)
+	{
+		acquire(0, characters, deadline);
+	}
+
+	/**
+	 * Takes a request from the request bucket, for every attempt at sending a request including retries, unless that
+	 * means waiting past the deadline of the call.
+	 *
+	 * @throws RequestRejectedException
+	 *             if the request would have to wait longer than the maximum
+	 * @throws DeadlineExceededException
+	 *             if the request would have to wait past the deadline
+	 */
+	void acquireRequest(final Deadline deadline)
+	{
+		acquire(1, 0, deadline);
+	}
+
+	/**
+	 * Takes a request from the request bucket if there is one there now, without waiting, for a hedged copy of a
+	 * request, which is not worth waiting for. A request not taken is neither throttled nor rejected.
+	 *
+	 * @return whether the request was taken
+	 */
+	synchronized boolean tryAcquireRequest()
+	{
+		final long nowMillis = System.currentTimeMillis();
+
+		startNewDayIfOver(nowMillis);
+		refill(characterRate(nowMillis));
+
+		if (requestsPerSecond == UNLIMITED)
+		{
+			return true;
+		}
+
+		if (requestTokens < 1)
+		{
+			return false;
+		}
+
+		requestTokens--;
+
+		return true;
+	}
+
+	/**
+	 * Takes the given number of requests and characters. A request taken on its own is reported as a request of no
+	 * characters.
+	 */
+	private void acquire(final int requests, final int characters, final Deadline deadline)
+	{
+		final long waitNanos = reserve(requests, characters, deadline);
+
+		if (waitNanos == 0)
+		{
+			return;
+		}
+
+		throttledRequests.incrementAndGet();
+
+		try
+		{
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+		catch (final InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+
+			throw new RequestRejectedException("Interrupted while waiting for the rate limit");
+		}
+	}
+
+	private synchronized long reserve(final int requests, final int characters, final Deadline deadline)
+	{
+		final long nowMillis = System.currentTimeMillis();
+
+		startNewDayIfOver(nowMillis);
+
+		if (dailyCharacters != UNLIMITED && charactersToday + characters > dailyCharacters)
+		{
+			throw rejected(format("Request of [%s] characters would go over the daily quota of [%s], [%s] used",
+					characters, dailyCharacters, charactersToday));
+		}
+
+		final double characterRate = characterRate(nowMillis);
+
+		refill(characterRate);
+
+		final long waitNanos = Math.max(nanosUntil(requestTokens, requests, requestsPerSecond), nanosUntil(
+				characterTokens, characters, characterRate));
+
+		if (waitNanos > deadline.remainingNanos())
+		{
+			throw deadline.exceeded(format("waiting [%s] ms for the rate limit", TimeUnit.NANOSECONDS
+					.toMillis(waitNanos)));
+		}
+
+		if (waitNanos > maxWaitNanos)
+		{
+			throw rejected(format("Request of [%s] characters would have to wait [%s] ms for the rate limit",
+					characters, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+		}
+
+		requestTokens -= requestsPerSecond != UNLIMITED ? requests : 0;
+		characterTokens -= characterRate != UNLIMITED ? characters : 0;
+		charactersToday += characters;
+
+		return waitNanos;
+	}
+
+	/**
+	 * Gets the character rate in force: the configured one or, once the pacing threshold of the daily quota has been
+	 * passed, the characters left spread over the rest of the day, whichever is lower.
+	 */
+	private double characterRate(final long nowMillis)
+	{
+		if (dailyCharacters == UNLIMITED || charactersToday < pacingThreshold * dailyCharacters)
+		{
+			return charactersPerSecond;
+		}
+
+		final double secondsLeft = Math.max(1, (dayEndsAtMillis - nowMillis) / 1000.0);
+		final double pacedRate = Math.max(1, (dailyCharacters - charactersToday) / secondsLeft);
+
+		return charactersPerSecond != UNLIMITED ? Math.min(charactersPerSecond, pacedRate) : pacedRate;
+	}
+
+	private void refill(final double characterRate)
+	{
+		final long now = System.nanoTime();
+		final double seconds = (now - refilledAt) / NANOS_PER_SECOND;
+
+		requestTokens = Math.min(requestsPerSecond, requestTokens + seconds * requestsPerSecond);
+		characterTokens = Math.min(characterRate, characterTokens + seconds * characterRate);
+		refilledAt = now;
+	}
+
+	private void startNewDayIfOver(final long nowMillis)
+	{
+		if (nowMillis < dayEndsAtMillis)
+		{
+			return;
+		}
+
+		dayEndsAtMillis = nextMidnightMillis(quotaTimeZone, nowMillis);
+		charactersToday = 0;
+	}
+
+	/**
+	 * Gets the time of the next midnight in the given time zone, when the service's daily quotas start again if it is
+	 * Pacific time.
+	 */
+	static long nextMidnightMillis(final TimeZone timeZone, final long nowMillis)
+	{
+		final Calendar midnight = Calendar.getInstance(timeZone);
+
+		midnight.setTimeInMillis(nowMillis);
+		midnight.set(Calendar.HOUR_OF_DAY, 0);
+		midnight.set(Calendar.MINUTE, 0);
+		midnight.set(Calendar.SECOND, 0);
+		midnight.set(Calendar.MILLISECOND, 0);
+		midnight.add(Calendar.DAY_OF_MONTH, 1);
+
+		return midnight.getTimeInMillis();
+	}
+
+	private RequestRejectedException rejected(final String message)
+	{
+		rejectedRequests.incrementAndGet();
+
+		return new RequestRejectedException(message);
+	}
+
+	private static long nanosUntil(final double tokens, final double needed, final double rate)
+	{
+		if (rate == UNLIMITED || needed == 0 || tokens >= needed)
+		{
+			return 0;
+		}
+
+		return (long) Math.ceil((needed - tokens) / rate * NANOS_PER_SECOND);
+	}
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+/**
+ * Thrown when the translator refuses to send a request rather than go over a limit set on the client side, such as a
+ * {@link RateLimit}.
+ */
+public class RequestRejectedException extends RequestException
+{
+	private static final long serialVersionUID = 4417207393520839180L;
+
+	/**
+	 * Instantiates a new request rejected exception.
+	 * 
+	 * @param message
+	 *            the message
+	 */
+	public RequestRejectedException(final String message)
+	{
+		super(message, null);
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+
+/**
+ * The body of a response, decoded as UTF-8 while it is read from the connection, whatever its transfer encoding.
+ * Reading fails as soon as more bytes than the ceiling have arrived. The byte and char buffers come from a small pool
+ * shared by all responses and go back to it when the body is closed.
+ */
+class ResponseBody extends Reader
+{
+	private static final int END = -1;
+	private static final int BYTE_BUFFER_SIZE = 8192;
+	private static final int CHAR_BUFFER_SIZE = 2048;
+	private static final int MAX_POOLED = 64;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final Queue<Buffers> pool = new ConcurrentLinkedQueue<Buffers>();
+	private static final AtomicInteger pooled = new AtomicInteger();
+
+	private final InputStream stream;
+	private final long maxBytes;
+
+	private Buffers buffers;
+	private long bytesRead;
+	private boolean endOfInput;
+	private boolean flushed;
+
+	ResponseBody(final InputStream stream, final long maxBytes)
+	{
+		this.stream = stream;
+		this.maxBytes = maxBytes;
+
+		buffers = acquire();
+	}
+
+	/**
+	 * A pooled char buffer callers may use to read this body, valid until the body is closed.
+	 */
+	char[] charBuffer()
+	{
+		return buffers.chars;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (buffers != null)
+		{
+			release(buffers);
+			buffers = null;
+		}
+
+		stream.close();
+	}
+
+	@Override
+	public int read(final char[] target, final int offset, final int length) throws IOException
+	{
+		if (length == 0)
+		{
+			return 0;
+		}
+
+		final ByteBuffer bytes = buffers.bytes;
+		final CharsetDecoder decoder = buffers.decoder;
+		final CharBuffer decoded = CharBuffer.wrap(target, offset, length);
+
+		while (true)
+		{
+			if (!flushed)
+			{
+				decoder.decode(bytes, decoded, endOfInput);
+
+				if (endOfInput && !bytes.hasRemaining())
+				{
+					decoder.flush(decoded);
+					flushed = true;
+				}
+			}
+
+			if (decoded.position() > offset)
+			{
+				return decoded.position() - offset;
+			}
+
+			if (flushed)
+			{
+				return END;
+			}
+
+			fill(bytes);
+		}
+	}
+
+	String readAll() throws IOException
+	{
+		final StringBuilder text = new StringBuilder();
+		final char[] chars = charBuffer();
+
+		for (int count = read(chars, 0, chars.length); count != END; count = read(chars, 0, chars.length))
+		{
+			text.append(chars, 0, count);
+		}
+
+		return text.toString();
+	}
+
+	private void fill(final ByteBuffer bytes) throws IOException
+	{
+		bytes.compact();
+
+		final int count = stream.read(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+
+		if (count == END)
+		{
+			endOfInput = true;
+		}
+		else
+		{
+			bytes.position(bytes.position() + count);
+			bytesRead += count;
+		}
+
+		bytes.flip();
+
+		if (bytesRead > maxBytes)
+		{
+			throw new IOException(format("Response content is longer than the limit of [%s] bytes", maxBytes));
+		}
+	}
+
+	private static Buffers acquire()
+	{
+		final Buffers buffers = pool.poll();
+
+		if (buffers == null)
+		{
+			return new Buffers();
+		}
+
+		pooled.decrementAndGet();
+
+		return buffers.reset();
+	}
+
+	private static void release(final Buffers buffers)
+	{
+		if (pooled.incrementAndGet() <= MAX_POOLED)
+		{
+			pool.offer(buffers);
+		}
+		else
+		{
+			pooled.decrementAndGet();
+		}
+	}
+
+	private static class Buffers
+	{
+		private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+		private final char[] chars = new char[CHAR_BUFFER_SIZE];
+		private final CharsetDecoder decoder = UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		private Buffers()
+		{
+			reset();
+		}
+
+		private Buffers reset()
+		{
+			bytes.clear().flip();
+			decoder.reset();
+
+			return this;
+		}
+	}
+}
@@ -1,84 +1,123 @@
-/**
- * Copyright (C) 2010 the author
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package com.linguamathematica.translate4j;
-
-import static java.lang.String.format;
-
-/**
- * Thrown when the service responds with an error or when the response was OK but its content is not valid.
- */
-public class ResponseException extends RuntimeException
-{
-	private final int statusCode;
-	private final String reason;
-
-	private static final long serialVersionUID = -7015869450117727041L;
-
-	/**
-	 * Instantiates a new ResponseException.
-	 * 
-	 * @param message
-	 *            an explanation of the cause of the error
-	 * @param statusCode
-	 *            the HTTP status code
-	 * @param reason
-	 *            the HTTP reason phrase
-	 */
-	public ResponseException(final String message, final int statusCode, final String reason)
-	{
-		this(message, statusCode, reason, null);
-	}
-
-	/**
-	 * Instantiates a new response exception.
-	 * 
-	 * @param message
-	 *            an explanation of the cause of the error
-	 * @param statusCode
-	 *            the HTTP status code
-	 * @param reason
-	 *            the HTTP reason phrase
-	 * @param cause
-	 *            the cause
-	 */
-	public ResponseException(final String message, final int statusCode, final String reason, final Exception cause)
-	{
-		super(format("%s;  status code: [%s], reason: [%s]", message, statusCode, reason), cause);
-
-		this.statusCode = statusCode;
-		this.reason = reason;
-	}
-
-	/**
-	 * Gets the reason.
-	 * 
-	 * @return the HTTP reason phrase
-	 */
-	public String getReason()
-	{
-		return reason;
-	}
-
-	/**
-	 * Gets the the HTTP status code
-	 * 
-	 * @return the status code
-	 */
-	public int getStatusCode()
-	{
-		return statusCode;
-	}
-}
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import static java.lang.String.format;
+
+/**
+ * Thrown when the service responds with an error or when the response was OK but its content is not valid.
+ */
+public class ResponseException extends RuntimeException
+{
+	private final int statusCode;
+	private final String reason;
+	private final String errorReason;
+	private final long retryAfterMillis;
+
+	private static final long serialVersionUID = -7015869450117727041L;
+
+	static final long NOT_GIVEN = -1;
+
+	/**
+	 * Instantiates a new ResponseException.
+	 * 
+	 * @param message
+	 *            an explanation of the cause of the error
+	 * @param statusCode
+	 *            the HTTP status code
+	 * @param reason
+	 *            the HTTP reason phrase
+	 */
+	public ResponseException(final String message, final int statusCode, final String reason)
+	{
+		this(message, statusCode, reason, null);
+	}
+
+	/**
+	 * Instantiates a new response exception.
+	 * 
+	 * @param message
+	 *            an explanation of the cause of the error
+	 * @param statusCode
+	 *            the HTTP status code
+	 * @param reason
+	 *            the HTTP reason phrase
+	 * @param cause
+	 *            the cause
+	 */
+	public ResponseException(final String message, final int statusCode, final String reason, final Exception cause)
+	{
+		this(message, statusCode, reason, cause, null, NOT_GIVEN);
+	}
+
+	ResponseException(final String message, final int statusCode, final String reason, final String errorReason,
+			final long retryAfterMillis)
+	{
+		this(message, statusCode, reason, null, errorReason, retryAfterMillis);
+	}
+
+	private ResponseException(final String message, final int statusCode, final String reason, final Exception cause,
+			final String errorReason, final long retryAfterMillis)
+	{
+		super(format("%s;  status code: [%s], reason: [%s]", message, statusCode, reason), cause);
+
+		this.statusCode = statusCode;
+		this.reason = reason;
+		this.errorReason = errorReason;
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	/**
+	 * Gets the reason the service gave for the error in the body of its response, such as dailyLimitExceeded or
+	 * rateLimitExceeded.
+	 * 
+	 * @return the reason for the error, or null if the service gave none
+	 */
+	public String getErrorReason()
+	{
+		return errorReason;
+	}
+
+	/**
+	 * Gets the reason.
+	 * 
+	 * @return the HTTP reason phrase
+	 */
+	public String getReason()
+	{
+		return reason;
+	}
+
+	/**
+	 * Gets the the HTTP status code
+	 * 
+	 * @return the status code
+	 */
+	public int getStatusCode()
+	{
+		return statusCode;
+	}
+
+	/**
+	 * Gets how long the service asked, with a Retry-After header, to be left alone before the request is retried.
+	 * 
+	 * @return the time in milliseconds, or -1 if the service did not say
+	 */
+	public long getRetryAfterMillis()
+	{
+		return retryAfterMillis;
+	}
+}
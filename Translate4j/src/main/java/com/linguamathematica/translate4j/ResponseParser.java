@@ -0,0 +1,275 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.linguamathematica.translate4j.HTTPService.ResponseReader;
+
+/**
+ * Reads the parts of the service's JSON responses the translator needs, skipping everything else.
+ */
+class ResponseParser
+{
+	private static final String[] ENTITY_NAMES = { "amp", "lt", "gt", "quot", "apos" };
+	private static final char[] ENTITY_CHARACTERS = { '&', '<', '>', '"', '\'' };
+
+	static final ResponseReader<List<Translation>> TRANSLATIONS = new ResponseReader<List<Translation>>()
+	{
+		public List<Translation> read(final ResponseBody body) throws IOException
+		{
+			return translations(new JsonReader(body, body.charBuffer()));
+		}
+	};
+
+	/**
+	 * Reads data.translations[*] into a list of translations, in the order they appear.
+	 */
+	static List<Translation> translations(final JsonReader json) throws IOException
+	{
+		final List<Translation> translations = new ArrayList<Translation>();
+
+		json.beginObject();
+
+		while (json.hasNext())
+		{
+			if (json.nextName().equals("data"))
+			{
+				json.beginObject();
+
+				while (json.hasNext())
+				{
+					if (json.nextName().equals("translations"))
+					{
+						readTranslations(json, translations);
+					}
+					else
+					{
+						json.skipValue();
+					}
+				}
+
+				json.endObject();
+			}
+			else
+			{
+				json.skipValue();
+			}
+		}
+
+		json.endObject();
+
+		return translations;
+	}
+
+	/**
+	 * Reads the reason of the first of error.errors[*] out of the body of an error response.
+	 * 
+	 * @return the reason, or null if the body does not have one
+	 */
+	static String errorReason(final String body)
+	{
+		try
+		{
+			final JsonReader json = new JsonReader(new StringReader(body), new char[Math.min(body.length() + 1, 1024)]);
+
+			json.beginObject();
+
+			while (json.hasNext())
+			{
+				if (json.nextName().equals("error"))
+				{
+					return reasonOfFirstError(json);
+				}
+
+				json.skipValue();
+			}
+		}
+		catch (final IOException exception)
+		{
+			// not the JSON the service sends with errors
+		}
+
+		return null;
+	}
+
+	/**
+	 * Replaces the HTML character references the service uses in translated text with the characters they stand for.
+	 * Unknown references are left as they are.
+	 */
+	static String decodeEntities(final String text)
+	{
+		int ampersand = text.indexOf('&');
+
+		if (ampersand < 0)
+		{
+			return text;
+		}
+
+		final StringBuilder decoded = new StringBuilder(text.length());
+		int copied = 0;
+
+		while (ampersand >= 0)
+		{
+			final int semicolon = text.indexOf(';', ampersand);
+
+			if (semicolon < 0)
+			{
+				break;
+			}
+
+			final int character = characterOf(text, ampersand + 1, semicolon);
+
+			if (character >= 0)
+			{
+				decoded.append(text, copied, ampersand).appendCodePoint(character);
+				copied = semicolon + 1;
+			}
+
+			ampersand = text.indexOf('&', character >= 0 ? semicolon + 1 : ampersand + 1);
+		}
+
+		return decoded.append(text, copied, text.length()).toString();
+	}
+
+	private static String reasonOfFirstError(final JsonReader json) throws IOException
+	{
+		json.beginObject();
+
+		while (json.hasNext())
+		{
+			if (json.nextName().equals("errors"))
+			{
+				json.beginArray();
+
+				if (json.hasNext())
+				{
+					json.beginObject();
+
+					while (json.hasNext())
+					{
+						if (json.nextName().equals("reason") && json.nextIsString())
+						{
+							return json.nextString();
+						}
+
+						json.skipValue();
+					}
+				}
+
+				return null;
+			}
+
+			json.skipValue();
+		}
+
+		return null;
+	}
+
+	private static void readTranslations(final JsonReader json, final List<Translation> translations)
+			throws IOException
+	{
+		json.beginArray();
+
+		while (json.hasNext())
+		{
+			String text = null;
+			Language detectedLanguage = null;
+
+			json.beginObject();
+
+			while (json.hasNext())
+			{
+				final String name = json.nextName();
+
+				if (name.equals("translatedText") && json.nextIsString())
+				{
+					text = decodeEntities(json.nextString());
+				}
+				else if (name.equals("detectedSourceLanguage") && json.nextIsString())
+				{
+					final String code = json.nextString();
+
+					detectedLanguage = code.trim().length() != 0 ? Language.from(code) : Language.UNKNOWN;
+				}
+				else
+				{
+					json.skipValue();
+				}
+			}
+
+			json.endObject();
+
+			if (text == null)
+			{
+				throw new IOException("Response content was invalid, translation has no translatedText");
+			}
+
+			translations.add(new Translation(text, detectedLanguage));
+		}
+
+		json.endArray();
+	}
+
+	private static int characterOf(final String text, final int start, final int end)
+	{
+		final int length = end - start;
+
+		if (length < 2 || length > 8)
+		{
+			return -1;
+		}
+
+		if (text.charAt(start) == '#')
+		{
+			return codePointOf(text, start + 1, end);
+		}
+
+		for (int i = 0; i < ENTITY_NAMES.length; i++)
+		{
+			if (ENTITY_NAMES[i].length() == length && text.startsWith(ENTITY_NAMES[i], start))
+			{
+				return ENTITY_CHARACTERS[i];
+			}
+		}
+
+		return -1;
+	}
+
+	private static int codePointOf(final String text, final int start, final int end)
+	{
+		final boolean hexadecimal = text.charAt(start) == 'x' || text.charAt(start) == 'X';
+		final int radix = hexadecimal ? 16 : 10;
+		int codePoint = 0;
+
+		for (int i = hexadecimal ? start + 1 : start; i < end; i++)
+		{
+			final int digit = Character.digit(text.charAt(i), radix);
+
+			if (digit < 0)
+			{
+				return -1;
+			}
+
+			codePoint = codePoint * radix + digit;
+		}
+
+		return end > (hexadecimal ? start + 1 : start) && Character.isValidCodePoint(codePoint) ? codePoint : -1;
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+
+import org.apache.http.HttpStatus;
+
+/**
+ * How requests that fail for a reason that may go away are retried, set through
+ * {@link Configuration#retryPolicy(RetryPolicy)}. Failures to connect, server errors, 429 responses and errors the
+ * service reports as rate limits are retried after a backoff that doubles with every attempt, up to a cap, and is
+ * randomized so that clients that failed together do not retry together. If the service asks to be left alone for a
+ * time with a Retry-After header, that time is waited instead, unless it is longer than the cap. Other errors, such as
+ * an exceeded daily limit or an invalid key, are not retried.
+ * <p>
+ * Retries are limited by a budget, so that they cannot multiply the load on a service that is already failing: every
+ * request that succeeds earns a fraction of a retry, every retry spends a whole one, and no more than a fixed number
+ * can be saved up. Instances are thread-safe and count the retries made and the ones the budget refused.
+ */
+public class RetryPolicy
+{
+	private static final List<String> RETRYABLE_REASONS = Arrays.asList("rateLimitExceeded", "userRateLimitExceeded",
+			"backendError", "internalError");
+	private static final int TOO_MANY_REQUESTS = 429;
+	private static final long MILLI = 1000;
+	private static final long NO_RETRY = -1;
+
+	int maxAttempts = 3;
+	long initialBackoffMillis = 100;
+	long maxBackoffMillis = TimeUnit.SECONDS.toMillis(5);
+
+	private long budgetMilliTokensPerSuccess = 100;
+	private long maxBudgetMilliTokens = 10 * MILLI;
+
+	private final AtomicLong budgetMilliTokens = new AtomicLong(maxBudgetMilliTokens);
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong refusedRetries = new AtomicLong();
+	private final Random random = new Random();
+
+	/**
+	 * Sets the maximum number of times a request is sent, counting the first. 3 by default; 1 turns retrying off.
+	 *
+	 * @param maxAttempts
+	 *            the maximum number of attempts
+	 * @return this policy
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number is not positive
+	 */
+	public RetryPolicy maxAttempts(final int maxAttempts)
+	{
+		ensure(maxAttempts > 0, "max attempts [%s] must be positive", maxAttempts);
+
+		this.maxAttempts = maxAttempts;
+
+		return this;
+	}
+
+	/**
+	 * Sets the backoff before the first retry, which doubles for every further one. 100 milliseconds by default.
+	 *
+	 * @param backoff
+	 *            the initial backoff
+	 * @param unit
+	 *            the unit of the backoff
+	 * @return this policy
+	 */
+	public RetryPolicy initialBackoff(final long backoff, final TimeUnit unit)
+	{
+		initialBackoffMillis = Configuration.toPositiveMillis(backoff, unit, "initial backoff");
+
+		return this;
+	}
+
+	/**
+	 * Sets the longest wait before a retry, including waits asked for with Retry-After. 5 seconds by default.
+	 *
+	 * @param backoff
+	 *            the maximum backoff
+	 * @param unit
+	 *            the unit of the backoff
+	 * @return this policy
+	 */
+	public RetryPolicy maxBackoff(final long backoff, final TimeUnit unit)
+	{
+		maxBackoffMillis = Configuration.toPositiveMillis(backoff, unit, "max backoff");
+
+		return this;
+	}
+
+	/**
+	 * Sets the retry budget. By default every successful request earns a tenth of a retry and up to 10 retries can be
+	 * saved up, which is also what the budget starts with.
+	 *
+	 * @param retriesPerSuccess
+	 *            the fraction of a retry earned by every successful request
+	 * @param maxSavedRetries
+	 *            the maximum number of retries that can be saved up
+	 * @return this policy
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the fraction is negative or greater than 1, or the maximum is negative
+	 */
+	public RetryPolicy budget(final double retriesPerSuccess, final int maxSavedRetries)
+	{
+		ensure(retriesPerSuccess >= 0 && retriesPerSuccess <= 1, "retries per success [%s] must be between 0 and 1",
+				retriesPerSuccess);
+		ensure(maxSavedRetries >= 0, "max saved retries [%s] cannot be negative", maxSavedRetries);
+
+		budgetMilliTokensPerSuccess = Math.round(retriesPerSuccess * MILLI);
+		maxBudgetMilliTokens = maxSavedRetries * MILLI;
+		budgetMilliTokens.set(maxBudgetMilliTokens);
+
+		return this;
+	}
+
+	/**
+	 * Gets the number of requests retried.
+	 *
+	 * @return the number of retries
+	 */
+	public long getRetries()
+	{
+		return retries.get();
+	}
+
+	/**
+	 * Gets the number of retryable failures that were not retried because the budget had run out.
+	 *
+	 * @return the number of retries refused
+	 */
+	public long getRefusedRetries()
+	{
+		return refusedRetries.get();
+	}
+
+	void succeeded()
+	{
+		for (long tokens = budgetMilliTokens.get(); tokens < maxBudgetMilliTokens; tokens = budgetMilliTokens.get())
+		{
+			if (budgetMilliTokens.compareAndSet(tokens, Math.min(maxBudgetMilliTokens, tokens
+					+ budgetMilliTokensPerSuccess)))
+			{
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Decides whether the given failure of the given attempt is retried and, if so, after how long.
+	 *
+	 * @return the time to wait in milliseconds before retrying, or -1 if the failure is not to be retried
+	 */
+	long backoffMillisAfter(final RuntimeException failure, final int attempt)
+	{
+		if (attempt >= maxAttempts || !isRetryable(failure))
+		{
+			return NO_RETRY;
+		}
+
+		final long retryAfterMillis = failure instanceof ResponseException ? ((ResponseException) failure)
+				.getRetryAfterMillis() : ResponseException.NOT_GIVEN;
+
+		if (retryAfterMillis > maxBackoffMillis || !spendRetry())
+		{
+			return NO_RETRY;
+		}
+
+		retries.incrementAndGet();
+
+		if (retryAfterMillis != ResponseException.NOT_GIVEN)
+		{
+			return retryAfterMillis;
+		}
+
+		final long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+
+		return (long) (random.nextDouble() * ceiling);
+	}
+
+	private boolean spendRetry()
+	{
+		for (long tokens = budgetMilliTokens.get(); tokens >= MILLI; tokens = budgetMilliTokens.get())
+		{
+			if (budgetMilliTokens.compareAndSet(tokens, tokens - MILLI))
+			{
+				return true;
+			}
+		}
+
+		refusedRetries.incrementAndGet();
+
+		return false;
+	}
+
+	static boolean isRetryable(final RuntimeException failure)
+	{
+		if (failure instanceof CircuitOpenException || failure instanceof DeadlineExceededException)
+		{
+			return false;
+		}
+
+		if (failure instanceof ConnectionException)
+		{
+			return !(failure.getCause() instanceof UnknownHostException);
+		}
+
+		if (failure instanceof ResponseException)
+		{
+			final ResponseException exception = (ResponseException) failure;
+			final int status = exception.getStatusCode();
+
+			final boolean serverError = status >= HttpStatus.SC_INTERNAL_SERVER_ERROR
+					&& status != HttpStatus.SC_NOT_IMPLEMENTED;
+
+			return serverError || status == TOO_MANY_REQUESTS || RETRYABLE_REASONS.contains(exception.getErrorReason());
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A text cut into chunks no longer than a given size, at line breaks first, then at sentence boundaries and, for
+ * sentences that are too long, at word boundaries. Whitespace around the chunks is kept aside, so that their
+ * translations can be joined back into the same layout.
+ */
+class Segments
+{
+	private final String text;
+	private final int maxChunkSize;
+	private final BreakIterator sentences;
+	private final BreakIterator words;
+	private final List<String> chunks = new ArrayList<String>();
+	private final List<String> separators = new ArrayList<String>();
+
+	private int separatorStart;
+	private int lastChunkStart;
+
+	private Segments(final String text, final int maxChunkSize, final Locale locale)
+	{
+		this.text = text;
+		this.maxChunkSize = maxChunkSize;
+
+		sentences = BreakIterator.getSentenceInstance(locale);
+		words = BreakIterator.getWordInstance(locale);
+		sentences.setText(text);
+		words.setText(text);
+	}
+
+	/**
+	 * Cuts the given text, using the sentence and word rules of the given language when they are known.
+	 */
+	static Segments of(final String text, final int maxChunkSize, final Language language)
+	{
+		final Segments segments = new Segments(text, maxChunkSize, localeOf(language));
+
+		segments.cut();
+
+		return segments;
+	}
+
+	/**
+	 * Gets the chunks, which are never empty nor begin or end with whitespace.
+	 */
+	List<String> chunks()
+	{
+		return chunks;
+	}
+
+	/**
+	 * Gets the position in the text where the last chunk begins, or 0 if there are no chunks.
+	 */
+	int lastChunkStart()
+	{
+		return lastChunkStart;
+	}
+
+	/**
+	 * Joins the given replacements for the chunks, in the same order, with the whitespace that surrounded them.
+	 */
+	String join(final List<String> replacements)
+	{
+		final StringBuilder joined = new StringBuilder(text.length());
+
+		for (int i = 0; i < replacements.size(); i++)
+		{
+			joined.append(separators.get(i)).append(replacements.get(i));
+		}
+
+		return joined.append(separators.get(separators.size() - 1)).toString();
+	}
+
+	private void cut()
+	{
+		int lineStart = 0;
+
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (text.charAt(i) == '\n' || text.charAt(i) == '\r')
+			{
+				cut(lineStart, i);
+				lineStart = i + 1;
+			}
+		}
+
+		cut(lineStart, text.length());
+		separators.add(text.substring(separatorStart));
+	}
+
+	private void cut(final int lineStart, final int lineEnd)
+	{
+		int start = skipWhitespace(lineStart, lineEnd);
+
+		while (start < lineEnd)
+		{
+			final int end = lineEnd - start > maxChunkSize ? breakBefore(start + maxChunkSize + 1, start) : lineEnd;
+			final int contentEnd = trimEnd(start, end);
+
+			separators.add(text.substring(separatorStart, start));
+			chunks.add(text.substring(start, contentEnd));
+			lastChunkStart = start;
+			separatorStart = contentEnd;
+			start = skipWhitespace(end, lineEnd);
+		}
+	}
+
+	/**
+	 * Finds the last sentence or, failing that, word boundary before the given limit, or cuts at the limit itself if
+	 * there is none, though never inside a surrogate pair.
+	 */
+	private int breakBefore(final int limit, final int start)
+	{
+		final int sentence = sentences.preceding(limit);
+
+		if (sentence > start && trimEnd(start, sentence) > start)
+		{
+			return sentence;
+		}
+
+		final int word = words.preceding(limit);
+
+		if (word > start && trimEnd(start, word) > start)
+		{
+			return word;
+		}
+
+		final int cut = limit - 1;
+
+		return Character.isLowSurrogate(text.charAt(cut)) && Character.isHighSurrogate(text.charAt(cut - 1)) ? cut - 1
+				: cut;
+	}
+
+	private int skipWhitespace(final int start, final int end)
+	{
+		int position = start;
+
+		while (position < end && isWhitespace(text.charAt(position)))
+		{
+			position++;
+		}
+
+		return position;
+	}
+
+	private int trimEnd(final int start, final int end)
+	{
+		int position = end;
+
+		while (position > start && isWhitespace(text.charAt(position - 1)))
+		{
+			position--;
+		}
+
+		return position;
+	}
+
+	private static boolean isWhitespace(final char character)
+	{
+		return character <= ' ';
+	}
+
+	private static Locale localeOf(final Language language)
+	{
+		if (language == Language.UNKNOWN)
+		{
+			return new Locale("");
+		}
+
+		final String[] parts = language.getCode().split("-");
+
+		return parts.length > 1 ? new Locale(parts[0], parts[1]) : new Locale(parts[0]);
+	}
+}
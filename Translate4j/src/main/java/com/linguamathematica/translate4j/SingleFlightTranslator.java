@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Makes sure that a text is not asked about again while the translator behind it is still working on the same
+ * question. Calls that ask for a translation or detection already in flight wait for it and share its result, or its
+ * failure, instead of sending a request of their own. Calls with a text the service would refuse start no flight and
+ * fail on their own.
+ * <p>
+ * Flights are kept apart by {@link Priority}: an interactive call only joins an interactive flight, so that it never
+ * waits in the bulk lane behind bulk work, while a bulk call also joins an interactive one.
+ */
+class SingleFlightTranslator extends ForwardingTranslator
+{
+	private final Map<Priority, ConcurrentMap<CacheKey, Flight>> flights = new EnumMap<Priority, ConcurrentMap<CacheKey,
+			Flight>>(Priority.class);
+
+	SingleFlightTranslator(final Translator delegate)
+	{
+		super(delegate);
+
+		for (final Priority priority : Priority.values())
+		{
+			flights.put(priority, new ConcurrentHashMap<CacheKey, Flight>());
+		}
+	}
+
+	@Override
+	public Language detect(final String text)
+	{
+		if (!isValid(text))
+		{
+			return delegate.detect(text);
+		}
+
+		return Language.from(shared(text, Language.UNKNOWN, Language.UNKNOWN, new Lookup()
+		{
+			public List<String> missing(final List<String> texts)
+			{
+				return singletonList(delegate.detect(texts.get(0)).getCode());
+			}
+		}));
+	}
+
+	@Override
+	public List<Language> detect(final List<String> texts)
+	{
+		if (!areValid(texts))
+		{
+			return delegate.detect(texts);
+		}
+
+		final List<String> codes = shared(texts, Language.UNKNOWN, Language.UNKNOWN, new Lookup()
+		{
+			public List<String> missing(final List<String> texts)
+			{
+				final List<String> codes = new ArrayList<String>(texts.size());
+
+				for (final Language language : delegate.detect(texts))
+				{
+					codes.add(language.getCode());
+				}
+
+				return codes;
+			}
+		});
+
+		final List<Language> languages = new ArrayList<Language>(codes.size());
+
+		for (final String code : codes)
+		{
+			languages.add(Language.from(code));
+		}
+
+		return languages;
+	}
+
+	@Override
+	public String translate(final String text, final Language source, final Language target)
+	{
+		if (!isValid(text) || source == null || target == null)
+		{
+			return delegate.translate(text, source, target);
+		}
+
+		return shared(text, source, target, new Lookup()
+		{
+			public List<String> missing(final List<String> texts)
+			{
+				return singletonList(delegate.translate(texts.get(0), source, target));
+			}
+		});
+	}
+
+	@Override
+	public List<String> translate(final List<String> texts, final Language source, final Language target)
+	{
+		if (!areValid(texts) || source == null || target == null)
+		{
+			return delegate.translate(texts, source, target);
+		}
+
+		return shared(texts, source, target, new Lookup()
+		{
+			public List<String> missing(final List<String> texts)
+			{
+				return delegate.translate(texts, source, target);
+			}
+		});
+	}
+
+	private String shared(final String text, final Language source, final Language target, final Lookup lookup)
+	{
+		return shared(singletonList(text), source, target, lookup).get(0);
+	}
+
+	/**
+	 * Joins the flights already under way for some of the texts and starts one, with a single lookup, for the rest.
+	 */
+	private List<String> shared(final List<String> texts, final Language source, final Language target,
+			final Lookup lookup)
+	{
+		final Priority priority = Priority.current();
+		final ConcurrentMap<CacheKey, Flight> ownFlights = flights.get(priority);
+		final List<Flight> joined = new ArrayList<Flight>(texts.size());
+		final List<CacheKey> startedKeys = new ArrayList<CacheKey>();
+		final List<Flight> started = new ArrayList<Flight>();
+
+		for (final String text : texts)
+		{
+			final CacheKey key = new CacheKey(text, source, target);
+			final Flight flight = new Flight();
+			final Flight higher = flightAbove(priority, key);
+			final Flight existing = higher != null ? higher : ownFlights.putIfAbsent(key, flight);
+
+			if (existing == null)
+			{
+				startedKeys.add(key);
+				started.add(flight);
+			}
+
+			joined.add(existing != null ? existing : flight);
+		}
+
+		if (!started.isEmpty())
+		{
+			fly(ownFlights, startedKeys, started, lookup);
+		}
+
+		final List<String> results = new ArrayList<String>(joined.size());
+
+		for (final Flight flight : joined)
+		{
+			results.add(flight.result());
+		}
+
+		return results;
+	}
+
+	/**
+	 * Finds a flight for the key already under way with a higher priority than the given one.
+	 */
+	private Flight flightAbove(final Priority priority, final CacheKey key)
+	{
+		for (final Priority higher : Priority.values())
+		{
+			if (higher.compareTo(priority) >= 0)
+			{
+				break;
+			}
+
+			final Flight flight = flights.get(higher).get(key);
+
+			if (flight != null)
+			{
+				return flight;
+			}
+		}
+
+		return null;
+	}
+
+	private static void fly(final ConcurrentMap<CacheKey, Flight> flights, final List<CacheKey> keys,
+			final List<Flight> started, final Lookup lookup)
+	{
+		final List<String> texts = new ArrayList<String>(keys.size());
+
+		for (final CacheKey key : keys)
+		{
+			texts.add(key.text);
+		}
+
+		try
+		{
+			final List<String> found = lookup.missing(texts);
+
+			for (int i = 0; i < started.size(); i++)
+			{
+				started.get(i).land(found.get(i), null);
+			}
+		}
+		catch (final RuntimeException exception)
+		{
+			for (final Flight flight : started)
+			{
+				flight.land(null, exception);
+			}
+
+			throw exception;
+		}
+		catch (final Error error)
+		{
+			for (final Flight flight : started)
+			{
+				flight.land(null, new IllegalStateException("Shared call failed", error));
+			}
+
+			throw error;
+		}
+		finally
+		{
+			for (int i = 0; i < keys.size(); i++)
+			{
+				flights.remove(keys.get(i), started.get(i));
+			}
+		}
+	}
+
+	private interface Lookup
+	{
+		List<String> missing(List<String> texts);
+	}
+
+	private static class Flight
+	{
+		private boolean landed;
+		private String result;
+		private RuntimeException failure;
+
+		synchronized void land(final String result, final RuntimeException failure)
+		{
+			this.result = result;
+			this.failure = failure;
+			landed = true;
+			notifyAll();
+		}
+
+		synchronized String result()
+		{
+			boolean interrupted = false;
+
+			while (!landed)
+			{
+				try
+				{
+					wait();
+				}
+				catch (final InterruptedException exception)
+				{
+					interrupted = true;
+				}
+			}
+
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+			if (failure != null)
+			{
+				throw failure;
+			}
+
+			return result;
+		}
+	}
+}
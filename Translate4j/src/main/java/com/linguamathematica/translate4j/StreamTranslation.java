@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Translates text from a reader to a writer a block at a time. Blocks end at a line break or, in the middle of a long
+ * line, at the start of a chunk, and are translated by the workers while the next ones are read. No more than a fixed
+ * number of blocks is held at once, so the memory used does not grow with the size of the text.
+ */
+class StreamTranslation
+{
+	static final int BLOCK_SIZE = 2 * Translator.MAX_TEXT_SIZE;
+
+	private static final int END = -1;
+
+	private final Translator translator;
+	private final Language source;
+	private final Language target;
+	private final Workers workers;
+	private final Queue<FutureTask<String>> window = new LinkedList<FutureTask<String>>();
+
+	StreamTranslation(final Translator translator, final Language source, final Language target)
+	{
+		this.translator = translator;
+		this.source = source;
+		this.target = target;
+
+		workers = translator.workers();
+	}
+
+	void copy(final Reader reader, final Writer writer) throws IOException
+	{
+		final char[] buffer = new char[BLOCK_SIZE];
+		final StringBuilder pending = new StringBuilder(2 * BLOCK_SIZE);
+
+		try
+		{
+			for (int count = reader.read(buffer); count != END; count = reader.read(buffer))
+			{
+				pending.append(buffer, 0, count);
+
+				while (pending.length() >= BLOCK_SIZE)
+				{
+					final int end = blockEnd(pending);
+
+					translate(pending.substring(0, end), writer);
+					pending.delete(0, end);
+				}
+			}
+
+			if (pending.length() != 0)
+			{
+				translate(pending.toString(), writer);
+			}
+
+			while (!window.isEmpty())
+			{
+				writer.write(Workers.await(window.poll()));
+			}
+
+			writer.flush();
+		}
+		finally
+		{
+			for (final FutureTask<String> task : window)
+			{
+				task.cancel(false);
+			}
+		}
+	}
+
+	private void translate(final String block, final Writer writer) throws IOException
+	{
+		if (window.size() == workers.parallelism())
+		{
+			writer.write(Workers.await(window.poll()));
+		}
+
+		final FutureTask<String> task = new FutureTask<String>(translationOf(block));
+
+		window.add(task);
+		workers.execute(task);
+	}
+
+	private Callable<String> translationOf(final String block)
+	{
+		return new Callable<String>()
+		{
+			public String call()
+			{
+				final Segments segments = Segments.of(block, Translator.MAX_TEXT_SIZE, source);
+
+				return segments.chunks().isEmpty() ? block : segments.join(translator.translate(segments.chunks(),
+						source, target));
+			}
+		};
+	}
+
+	/**
+	 * Finds where the block at the start of the pending text ends: after its last line break or, if there is none,
+	 * where the last chunk of its first {@link #BLOCK_SIZE} characters begins, since that chunk may go on further.
+	 */
+	private int blockEnd(final StringBuilder pending)
+	{
+		for (int i = BLOCK_SIZE - 1; i >= 0; i--)
+		{
+			if (pending.charAt(i) == '\n' || pending.charAt(i) == '\r')
+			{
+				return i + 1;
+			}
+		}
+
+		final Segments segments = Segments.of(pending.substring(0, BLOCK_SIZE), Translator.MAX_TEXT_SIZE, source);
+
+		if (segments.lastChunkStart() > 0)
+		{
+			return segments.lastChunkStart();
+		}
+
+		return Character.isHighSurrogate(pending.charAt(BLOCK_SIZE - 1)) ? BLOCK_SIZE - 1 : BLOCK_SIZE;
+	}
+}
@@ -0,0 +1,307 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A cache of two tiers, created with {@link TranslationCache#tiered(TranslationCache, TranslationCache, int)}. Every
+ * result is written through to the cold tier and its key added to a Bloom filter, so that most misses are answered
+ * without asking the cold tier. A result the cold tier answers is promoted to the hot tier once it has been asked for
+ * twice recently, as told by a frequency sketch; the hot tier demotes results by its own policy, and they are still in
+ * the cold tier. Each tier counts its own hits, misses and evictions; this cache counts them overall, and the misses
+ * the filter answered and the results promoted.
+ * <p>
+ * The filter cannot forget keys. When more have been added to it than it was sized for, a new one, for twice as many
+ * as there are in the cold tier, is built from them in the background. Lookups go on being answered by the full one
+ * until the new one replaces it, and keys put meanwhile are added to both.
+ */
+public class TieredCache extends TranslationCache
+{
+	private static final Logger log = Logger.getLogger(TieredCache.class);
+
+	private static final int PROMOTION_FREQUENCY = 2;
+	private static final double FALSE_POSITIVE_RATE = 0.01;
+
+	private final TranslationCache hot;
+	private final TranslationCache cold;
+	private final FrequencySketch sketch;
+	private final int expectedEntries;
+	private final AtomicLong filteredMisses = new AtomicLong();
+	private final AtomicLong promotions = new AtomicLong();
+	private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(Workers
+			.daemonThreads("translate4j-cache-filter-%s"));
+
+	private BloomFilter filter;
+	private BloomFilter rebuilt;
+
+	TieredCache(final TranslationCache hot, final TranslationCache cold, final int expectedEntries)
+	{
+		this.hot = hot;
+		this.cold = cold;
+
+		this.expectedEntries = expectedEntries;
+
+		sketch = new FrequencySketch(expectedEntries);
+		filter = new BloomFilter(Math.max(expectedEntries, 2 * cold.getSize()), FALSE_POSITIVE_RATE);
+
+		addKeysOf(cold, filter);
+	}
+
+	/**
+	 * Gets the hot tier, with its own statistics.
+	 *
+	 * @return the hot tier
+	 */
+	public TranslationCache getHotTier()
+	{
+		return hot;
+	}
+
+	/**
+	 * Gets the cold tier, with its own statistics. Its misses do not include those the Bloom filter answered.
+	 *
+	 * @return the cold tier
+	 */
+	public TranslationCache getColdTier()
+	{
+		return cold;
+	}
+
+	/**
+	 * Gets the number of misses the Bloom filter answered without asking the cold tier.
+	 *
+	 * @return the number of misses filtered
+	 */
+	public long getFilteredMisses()
+	{
+		return filteredMisses.get();
+	}
+
+	/**
+	 * Gets the number of results the cold tier answered that were promoted to the hot tier.
+	 *
+	 * @return the number of promotions
+	 */
+	public long getPromotions()
+	{
+		return promotions.get();
+	}
+
+	@Override
+	public int getSize()
+	{
+		return cold.getSize();
+	}
+
+	@Override
+	public void clear()
+	{
+		synchronized (this)
+		{
+			filter.clear();
+			rebuilt = null;
+		}
+
+		hot.clear();
+		cold.clear();
+	}
+
+	@Override
+	public void close()
+	{
+		rebuilder.shutdown();
+		hot.close();
+		cold.close();
+	}
+
+	@Override
+	String get(final CacheKey key)
+	{
+		final int frequency = accessed(key);
+		final String hotValue = hot.get(key);
+
+		if (hotValue != null)
+		{
+			hit();
+
+			return hotValue;
+		}
+
+		if (!mightBeCold(key))
+		{
+			filteredMisses.incrementAndGet();
+			miss();
+
+			return null;
+		}
+
+		final String value = cold.get(key);
+
+		if (value == null)
+		{
+			miss();
+
+			return null;
+		}
+
+		if (frequency >= PROMOTION_FREQUENCY)
+		{
+			hot.put(key, value);
+			promotions.incrementAndGet();
+		}
+
+		hit();
+
+		return value;
+	}
+
+	@Override
+	void put(final CacheKey key, final String value)
+	{
+		cold.put(key, value);
+		addToFilter(key);
+	}
+
+	@Override
+	void forEachKey(final KeyVisitor visitor)
+	{
+		cold.forEachKey(visitor);
+	}
+
+	@Override
+	void forEachResult(final ResultVisitor visitor) throws IOException
+	{
+		cold.forEachResult(visitor);
+	}
+
+	private synchronized int accessed(final CacheKey key)
+	{
+		sketch.increment(key.hashCode());
+
+		return sketch.frequency(key.hashCode());
+	}
+
+	private synchronized boolean mightBeCold(final CacheKey key)
+	{
+		return filter.mightContain(key);
+	}
+
+	private synchronized void addToFilter(final CacheKey key)
+	{
+		filter.add(key);
+
+		if (rebuilt != null)
+		{
+			rebuilt.add(key);
+		}
+		else if (filter.isFull())
+		{
+			rebuilt = new BloomFilter(Math.max(expectedEntries, 2 * cold.getSize()), FALSE_POSITIVE_RATE);
+
+			try
+			{
+				rebuilder.execute(new Rebuild(rebuilt));
+			}
+			catch (final RejectedExecutionException closed)
+			{
+				rebuilt = null;
+			}
+		}
+	}
+
+	/**
+	 * Adds a key to the filter being rebuilt, unless it has been given up on since.
+	 */
+	private synchronized void addToRebuilt(final BloomFilter target, final CacheKey key)
+	{
+		if (rebuilt == target)
+		{
+			target.add(key);
+		}
+	}
+
+	private synchronized void rebuilt(final BloomFilter target, final boolean complete)
+	{
+		if (rebuilt != target)
+		{
+			return;
+		}
+
+		if (complete)
+		{
+			filter = target;
+		}
+
+		rebuilt = null;
+	}
+
+	private static void addKeysOf(final TranslationCache cache, final BloomFilter filter)
+	{
+		cache.forEachKey(new KeyVisitor()
+		{
+			public void visit(final CacheKey key)
+			{
+				filter.add(key);
+			}
+		});
+	}
+
+	/**
+	 * Builds a new filter from the keys in the cold tier, away from the threads using the cache.
+	 */
+	private class Rebuild implements Runnable
+	{
+		private final BloomFilter target;
+
+		Rebuild(final BloomFilter target)
+		{
+			this.target = target;
+		}
+
+		public void run()
+		{
+			boolean complete = false;
+
+			try
+			{
+				cold.forEachKey(new KeyVisitor()
+				{
+					public void visit(final CacheKey key)
+					{
+						addToRebuilt(target, key);
+					}
+				});
+
+				complete = true;
+			}
+			catch (final RuntimeException exception)
+			{
+				log.warn("Cannot rebuild the Bloom filter of the cold tier", exception);
+			}
+			finally
+			{
+				rebuilt(target, complete);
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import static java.lang.String.format;
+
+/**
+ * The translation of a text together with the language the service detected the text was written in, as returned by
+ * {@link Translator#translateAndDetect(String, Language)}.
+ */
+public class Translation
+{
+	final String text;
+	final Language detectedLanguage;
+
+	Translation(final String text, final Language detectedLanguage)
+	{
+		this.text = text;
+		this.detectedLanguage = detectedLanguage;
+	}
+
+	/**
+	 * Gets the translated text.
+	 * 
+	 * @return the text
+	 */
+	public String getText()
+	{
+		return text;
+	}
+
+	/**
+	 * Gets the language the text was detected to be written in.
+	 * 
+	 * @return the language, {@link Language#UNKNOWN} if the service could not tell
+	 */
+	public Language getDetectedLanguage()
+	{
+		return detectedLanguage;
+	}
+
+	@Override
+	public String toString()
+	{
+		return format("%s (from %s)", text, detectedLanguage);
+	}
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+
+/**
+ * A cache of translations and detections placed in front of a {@link Translator} through
+ * {@link Configuration#cache(TranslationCache)}. Instances are thread-safe and may be shared by several translators.
+ */
+public abstract class TranslationCache
+{
+	private static final long NEVER = 0;
+	private static final long MIN_BYTES = 64 * 1024;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	TranslationCache()
+	{}
+
+	/**
+	 * Gets the number of lookups that found a cached result.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of lookups that found no cached result, or an expired one.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Gets the number of results removed, or refused, to keep the cache within its bound.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * Gets the number of results currently cached.
+	 *
+	 * @return the number of results
+	 */
+	public abstract int getSize();
+
+	/**
+	 * Removes every cached result. Statistics are kept.
+	 */
+	public abstract void clear();
+
+	/**
+	 * Releases the files and threads the cache holds, if any. A closed cache caches nothing more and answers no more
+	 * lookups. Caches on the heap hold nothing to release.
+	 */
+	public void close()
+	{}
+
+	abstract String get(final CacheKey key);
+
+	abstract void put(final CacheKey key, final String value);
+
+	/**
+	 * Tells the visitor about the key of every cached result, expired or not. The keys are copied out a bounded part of
+	 * the cache at a time, so that lookups do not wait for the visitor; every result in the cache throughout the walk
+	 * is visited, some perhaps more than once.
+	 */
+	abstract void forEachKey(final KeyVisitor visitor);
+
+	/**
+	 * Tells the visitor about every cached result that has not expired, with its key. Like the keys, the results are
+	 * copied out a bounded part of the cache at a time, so that lookups do not wait while the visitor writes them.
+	 *
+	 * @throws IOException
+	 *             if the visitor fails to write the result
+	 */
+	abstract void forEachResult(final ResultVisitor visitor) throws IOException;
+
+	void hit()
+	{
+		hits.incrementAndGet();
+	}
+
+	void miss()
+	{
+		misses.incrementAndGet();
+	}
+
+	void evicted()
+	{
+		evictions.incrementAndGet();
+	}
+
+	/**
+	 * Creates a cache that holds up to the given number of results on the heap. When full, it admits a new result only
+	 * if it has been asked for more often than the least recently used one it would replace, so that a burst of
+	 * one-off texts cannot flush out the ones that are asked for all the time.
+	 *
+	 * @param maxEntries
+	 *            the maximum number of results
+	 * @return the cache
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the maximum is not positive
+	 */
+	public static TranslationCache inMemory(final int maxEntries)
+	{
+		ensure(maxEntries > 0, "max entries [%s] must be positive", maxEntries);
+
+		return new InMemoryCache(maxEntries, NEVER);
+	}
+
+	/**
+	 * Creates a cache like {@link #inMemory(int)} whose results expire the given time after they were cached.
+	 *
+	 * @param maxEntries
+	 *            the maximum number of results
+	 * @param timeToLive
+	 *            how long a result stays valid
+	 * @param unit
+	 *            the unit of the time to live
+	 * @return the cache
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the maximum or the time to live are not positive
+	 */
+	public static TranslationCache inMemory(final int maxEntries, final long timeToLive, final TimeUnit unit)
+	{
+		ensure(maxEntries > 0, "max entries [%s] must be positive", maxEntries);
+
+		return new InMemoryCache(maxEntries, Configuration.toPositiveMillis(timeToLive, unit, "time to live"));
+	}
+
+	/**
+	 * Creates a cache kept in a log file in the given directory, memory-mapped, whose results survive restarts and
+	 * crashes of the process. A log left in the directory by an earlier cache is read when it is created. The log takes
+	 * up the given number of bytes on disk; results that are replaced are compacted away in the background, and the
+	 * oldest results are dropped if the rest would take more than half of it. Only one cache may use a directory at a
+	 * time, and it should be closed when no longer needed.
+	 *
+	 * @param directory
+	 *            the directory of the log, which is created if need be
+	 * @param maxBytes
+	 *            the size of the log, from 64KB to 2GB
+	 * @return the cache
+	 *
+	 * @throws IOException
+	 *             if the directory or the log cannot be created or read
+	 * @throws IllegalArgumentException
+	 *             if the size is out of range
+	 */
+	public static TranslationCache onDisk(final File directory, final long maxBytes) throws IOException
+	{
+		ensureNotNull(directory, "directory");
+		ensure(maxBytes >= MIN_BYTES && maxBytes <= Integer.MAX_VALUE,
+				"max bytes [%s] must be between [%s] and [%s]", maxBytes, MIN_BYTES, Integer.MAX_VALUE);
+
+		return new DiskCache(directory, (int) maxBytes);
+	}
+
+	/**
+	 * Creates a cache kept in direct memory, outside the heap, so that it can hold millions of results without making
+	 * garbage collection any slower. Keys and results are kept in slabs that take up the given number of bytes, and
+	 * their index takes an eighth more. When either is full, the oldest slab is evicted, keeping the results in it that
+	 * have been asked for since they were cached. The memory is given back once the cache is closed and collected.
+	 *
+	 * @param maxBytes
+	 *            the size of the slabs, from 64KB to 2GB
+	 * @return the cache
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the size is out of range
+	 */
+	public static TranslationCache offHeap(final long maxBytes)
+	{
+		ensure(maxBytes >= MIN_BYTES && maxBytes <= Integer.MAX_VALUE, "max bytes [%s] must be between [%s] and [%s]",
+				maxBytes, MIN_BYTES, Integer.MAX_VALUE);
+
+		return new OffHeapCache((int) maxBytes);
+	}
+
+	/**
+	 * Creates a cache of two tiers: a hot tier, small and fast, in front of a cold tier that is large and may be slow,
+	 * such as one {@link #inMemory(int)} in front of one {@link #onDisk(File, long)}. Results are written through to
+	 * the cold tier, a Bloom filter of the keys in it answers most misses without asking it, and the results it answers
+	 * are promoted to the hot tier once they have been asked for again. Closing the cache closes both tiers.
+	 *
+	 * @param hot
+	 *            the hot tier
+	 * @param cold
+	 *            the cold tier, which may already hold results
+	 * @param expectedEntries
+	 *            the number of results the cold tier is expected to hold, which sizes the Bloom filter
+	 * @return the cache, which also counts what goes on between its tiers
+	 *
+	 * @throws NullPointerException
+	 *             if a tier is null
+	 * @throws IllegalArgumentException
+	 *             if both tiers are the same or the number of results is not positive
+	 */
+	public static TieredCache tiered(final TranslationCache hot, final TranslationCache cold, final int expectedEntries)
+	{
+		ensureNotNull(hot, "hot tier");
+		ensureNotNull(cold, "cold tier");
+		ensure(hot != cold, "hot and cold tiers must be different caches");
+		ensure(expectedEntries > 0, "expected entries [%s] must be positive", expectedEntries);
+
+		return new TieredCache(hot, cold, expectedEntries);
+	}
+
+	/**
+	 * Told about every key of a cache by {@link TranslationCache#forEachKey(KeyVisitor)}.
+	 */
+	interface KeyVisitor
+	{
+		void visit(CacheKey key);
+	}
+
+	/**
+	 * Told about every result of a cache by {@link TranslationCache#forEachResult(ResultVisitor)}.
+	 */
+	interface ResultVisitor
+	{
+		void visit(CacheKey key, String value) throws IOException;
+	}
+}
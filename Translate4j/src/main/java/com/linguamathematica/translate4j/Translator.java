@@ -1,100 +1,586 @@
-/**
- * Copyright (C) 2010 the author
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package com.linguamathematica.translate4j;
-
-import static com.linguamathematica.translate4j.Base.ensure;
-import static com.linguamathematica.translate4j.Base.ensureNotNull;
-
-import org.apache.http.impl.client.DefaultHttpClient;
-
-/**
- * The Translator.
- */
-public abstract class Translator
-{
-	/** The maximum size of text to be passed to the translator's methods */
-	public static final int MAX_TEXT_SIZE = 1968;
-
-	Translator()
-	{}
-
-	/**
-	 * Detects the language of the given text.
-	 * 
-	 * @param text
-	 *            the text
-	 * @return the language
-	 * 
-	 * @throws NullPointerException
-	 *             if the text is null
-	 * @throws IllegalArgumentException
-	 *             if the text is empty, made up of blank spaces or greater than {@link Translator#MAX_TEXT_SIZE}
-	 */
-	public abstract Language detect(final String text);
-
-	/**
-	 * Call to release resources used by Translator.
-	 */
-	public abstract void dispose();
-
-	/**
-	 * Translates the given text in the source language to the target language.
-	 * 
-	 * @param text
-	 *            the text
-	 * @param source
-	 *            the source
-	 * @param target
-	 *            the target
-	 * @return the string
-	 */
-	public abstract String translate(final String text, final Language source, final Language target);
-
-	/**
-	 * Creates a new translator instance with the given Google API key. Note that this method only does a basic check of
-	 * the validity of the key. If it appears valid but isn't, a ResponseException will be thrown when invoking the
-	 * service methods.
-	 * 
-	 * @param apiKey
-	 *            the Google API key
-	 * 
-	 * @return the translator
-	 * 
-	 * @throws NullPointerException
-	 *             if the API key is null
-	 * 
-	 * @throws IllegalArgumentException
-	 *             if the API key is not a sequence of alphanumeric characters
-	 * 
-	 */
-	public static Translator translator(final String apiKey)
-	{
-		ensureNotNull(apiKey, "API key");
-		ensure(apiKey.trim().matches("[a-zA-Z0-9_\\-]+"), "API key [%s] must be non-empty and alphanumeric", apiKey);
-
-		final String PATH = "/language/translate/v2";
-		final String HOST = "www.googleapis.com";
-		final String PROTOCOL = "https";
-		final int PORT = -1;
-
-		return new GoogleTranslatorVersion2(apiKey, new HTTPService(PROTOCOL, HOST, PORT, PATH, makeHttpClient()));
-	}
-
-	private static DefaultHttpClient makeHttpClient()
-	{
-		return new DefaultHttpClient();
-	}
-}
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import static java.util.Collections.singletonList;
+
+import static com.linguamathematica.translate4j.Base.ensure;
+import static com.linguamathematica.translate4j.Base.ensureNotNull;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * The Translator.
+ */
+public abstract class Translator
+{
+	/** The maximum size of text to be passed to the translator's methods */
+	public static final int MAX_TEXT_SIZE = 1968;
+
+	Translator()
+	{}
+
+	/**
+	 * Detects the language of the given text.
+	 * 
+	 * @param text
+	 *            the text
+	 * @return the language
+	 * 
+	 * @throws NullPointerException
+	 *             if the text is null
+	 * @throws IllegalArgumentException
+	 *             if the text is empty, made up of blank spaces or greater than {@link Translator#MAX_TEXT_SIZE}
+	 */
+	public abstract Language detect(final String text);
+
+	/**
+	 * Detects the language of each of the given texts. The texts are packed into as few requests as the service limits
+	 * allow.
+	 * 
+	 * @param texts
+	 *            the texts
+	 * @return the languages, in the same order as the texts
+	 * 
+	 * @throws NullPointerException
+	 *             if the list or any of its texts is null
+	 * @throws IllegalArgumentException
+	 *             if any text is empty, made up of blank spaces or greater than {@link Translator#MAX_TEXT_SIZE}
+	 */
+	public abstract List<Language> detect(final List<String> texts);
+
+	/**
+	 * Detects the language of the given text without blocking the calling thread. Exceptions thrown by
+	 * {@link #detect(String)} are reported as the cause of the {@link java.util.concurrent.ExecutionException} thrown
+	 * by the future.
+	 * 
+	 * @param text
+	 *            the text
+	 * @return the future language
+	 * 
+	 * @throws IllegalStateException
+	 *             if the translator has been disposed
+	 */
+	public Future<Language> detectAsync(final String text)
+	{
+		return workers().submit(new Callable<Language>()
+		{
+			public Language call()
+			{
+				return detect(text);
+			}
+		});
+	}
+
+	/**
+	 * Detects the language of each of the given texts without blocking the calling thread. Exceptions thrown by
+	 * {@link #detect(List)} are reported as the cause of the {@link java.util.concurrent.ExecutionException} thrown by
+	 * the future.
+	 * 
+	 * @param texts
+	 *            the texts
+	 * @return the future languages, in the same order as the texts
+	 * 
+	 * @throws IllegalStateException
+	 *             if the translator has been disposed
+	 */
+	public Future<List<Language>> detectAsync(final List<String> texts)
+	{
+		return workers().submit(new Callable<List<Language>>()
+		{
+			public List<Language> call()
+			{
+				return detect(texts);
+			}
+		});
+	}
+
+	/**
+	 * Call to release resources used by Translator.
+	 */
+	public abstract void dispose();
+
+	/**
+	 * Translates the given text in the source language to the target language.
+	 * 
+	 * @param text
+	 *            the text
+	 * @param source
+	 *            the source
+	 * @param target
+	 *            the target
+	 * @return the string
+	 */
+	public abstract String translate(final String text, final Language source, final Language target);
+
+	/**
+	 * Translates each of the given texts in the source language to the target language. The texts are packed into as
+	 * few requests as the service limits allow.
+	 * 
+	 * @param texts
+	 *            the texts
+	 * @param source
+	 *            the source
+	 * @param target
+	 *            the target
+	 * @return the translations, in the same order as the texts
+	 * 
+	 * @throws NullPointerException
+	 *             if the list, any of its texts or the languages are null
+	 * @throws IllegalArgumentException
+	 *             if any text is empty, made up of blank spaces or greater than {@link Translator#MAX_TEXT_SIZE}
+	 */
+	public abstract List<String> translate(final List<String> texts, final Language source, final Language target);
+
+	/**
+	 * Translates the given text without blocking the calling thread. Exceptions thrown by
+	 * {@link #translate(String, Language, Language)} are reported as the cause of the
+	 * {@link java.util.concurrent.ExecutionException} thrown by the future.
+	 * 
+	 * @param text
+	 *            the text
+	 * @param source
+	 *            the source
+	 * @param target
+	 *            the target
+	 * @return the future translation
+	 * 
+	 * @throws IllegalStateException
+	 *             if the translator has been disposed
+	 */
+	public Future<String> translateAsync(final String text, final Language source, final Language target)
+	{
+		return workers().submit(new Callable<String>()
+		{
+			public String call()
+			{
+				return translate(text, source, target);
+			}
+		});
+	}
+
+	/**
+	 * Translates each of the given texts without blocking the calling thread. Exceptions thrown by
+	 * {@link #translate(List, Language, Language)} are reported as the cause of the
+	 * {@link java.util.concurrent.ExecutionException} thrown by the future.
+	 * 
+	 * @param texts
+	 *            the texts
+	 * @param source
+	 *            the source
+	 * @param target
+	 *            the target
+	 * @return the future translations, in the same order as the texts
+	 * 
+	 * @throws IllegalStateException
+	 *             if the translator has been disposed
+	 */
+	public Future<List<String>> translateAsync(final List<String> texts, final Language source,
+			final Language target)
+	{
+		return workers().submit(new Callable<List<String>>()
+		{
+			public List<String> call()
+			{
+				return translate(texts, source, target);
+			}
+		});
+	}
+
+	/**
+	 * Translates the given text, whatever language it is in, to the target language and tells which language that was,
+	 * with a single request instead of a call to {@link #detect(String)} followed by one to translate.
+	 * 
+	 * @param text
+	 *            the text
+	 * @param target
+	 *            the target
+	 * @return the translation, with the language detected
+	 * 
+	 * @throws NullPointerException
+	 *             if the text or the target language is null
+	 * @throws IllegalArgumentException
+	 *             if the text is empty, made up of blank spaces or greater than {@link Translator#MAX_TEXT_SIZE}, or
+	 *             the target language is unknown
+	 */
+	public Translation translateAndDetect(final String text, final Language target)
+	{
+		return translateAndDetect(singletonList(text), target).get(0);
+	}
+
+	/**
+	 * Translates each of the given texts, whatever language it is in, to the target language and tells which language
+	 * that was. The texts are packed into as few requests as the service limits allow, each of which detects and
+	 * translates at once. This implementation detects and then translates, with two calls, for translators that do
+	 * not know better.
+	 * 
+	 * @param texts
+	 *            the texts
+	 * @param target
+	 *            the target
+	 * @return the translations, with the languages detected, in the same order as the texts
+	 * 
+	 * @throws NullPointerException
+	 *             if the list, any of its texts or the target language is null
+	 * @throws IllegalArgumentException
+	 *             if any text is empty, made up of blank spaces or greater than {@link Translator#MAX_TEXT_SIZE}, or
+	 *             the target language is unknown
+	 */
+	public List<Translation> translateAndDetect(final List<String> texts, final Language target)
+	{
+		final List<Language> languages = detect(texts);
+		final List<String> translated = translate(texts, Language.UNKNOWN, target);
+		final List<Translation> translations = new ArrayList<Translation>(texts.size());
+
+		for (int i = 0; i < translated.size(); i++)
+		{
+			translations.add(new Translation(translated.get(i), languages.get(i)));
+		}
+
+		return translations;
+	}
+
+	/**
+	 * Translates a document of any length. The document is cut into chunks no longer than
+	 * {@link Translator#MAX_TEXT_SIZE} at line breaks and, within long lines, at the sentence boundaries of the source
+	 * language. The chunks are translated in up to {@link Configuration#documentConcurrency(int)} parts at the same
+	 * time and put back together in order, with the whitespace and line breaks that surrounded them left as they were.
+	 * 
+	 * @param document
+	 *            the document
+	 * @param source
+	 *            the source
+	 * @param target
+	 *            the target
+	 * @return the translated document, or the document itself if it is made up of blank spaces
+	 * 
+	 * @throws NullPointerException
+	 *             if the document or the languages are null
+	 */
+	public String translateDocument(final String document, final Language source, final Language target)
+	{
+		ensureNotNull(document, "document");
+		ensureNotNull(source, "source language");
+		ensureNotNull(target, "target language");
+
+		final Segments segments = Segments.of(document, MAX_TEXT_SIZE, source);
+		final List<Callable<List<String>>> parts = new ArrayList<Callable<List<String>>>();
+
+		for (final List<String> part : split(segments.chunks(), workers().parallelism()))
+		{
+			parts.add(new Callable<List<String>>()
+			{
+				public List<String> call()
+				{
+					return translate(part, source, target);
+				}
+			});
+		}
+
+		final List<String> translated = new ArrayList<String>(segments.chunks().size());
+
+		for (final List<String> part : workers().invokeAll(parts))
+		{
+			translated.addAll(part);
+		}
+
+		return segments.join(translated);
+	}
+
+	/**
+	 * Translates the text read from the reader, however long, and writes the translation to the writer. The text is
+	 * read a block at a time and cut into chunks like {@link #translateDocument(String, Language, Language)} does.
+	 * While blocks are being read, up to {@link Configuration#documentConcurrency(int)} of them are translated at the
+	 * same time, and their translations are written in order as soon as they are ready, so the memory used does not
+	 * depend on the length of the text. Neither the reader nor the writer are closed.
+	 * 
+	 * @param reader
+	 *            the reader
+	 * @param writer
+	 *            the writer
+	 * @param source
+	 *            the source
+	 * @param target
+	 *            the target
+	 * 
+	 * @throws IOException
+	 *             if reading from the reader or writing to the writer fails
+	 * @throws NullPointerException
+	 *             if the reader, the writer or the languages are null
+	 */
+	public void translate(final Reader reader, final Writer writer, final Language source, final Language target)
+			throws IOException
+	{
+		ensureNotNull(reader, "reader");
+		ensureNotNull(writer, "writer");
+		ensureNotNull(source, "source language");
+		ensureNotNull(target, "target language");
+
+		new StreamTranslation(this, source, target).copy(reader, writer);
+	}
+
+	/**
+	 * Gets a view of this translator whose calls are all made with the given priority. The view shares everything with
+	 * this translator, including its threads, connections and limits, so disposing either disposes both.
+	 * 
+	 * @param priority
+	 *            the priority
+	 * @return the view
+	 * 
+	 * @throws NullPointerException
+	 *             if the priority is null
+	 */
+	public Translator withPriority(final Priority priority)
+	{
+		ensureNotNull(priority, "priority");
+
+		return new PrioritizedTranslator(this, priority);
+	}
+
+	abstract Workers workers();
+
+	/**
+	 * Tells whether a text can be sent to the service: not null, not blank and not greater than
+	 * {@link Translator#MAX_TEXT_SIZE} once trimmed. A call with a text that cannot is left to fail on its own rather
+	 * than joining, and failing, a request shared with other calls.
+	 */
+	static boolean isValid(final String text)
+	{
+		return text != null && text.trim().length() != 0 && text.trim().length() <= MAX_TEXT_SIZE;
+	}
+
+	/**
+	 * Tells whether a list of texts can be sent to the service: not null and all of them valid.
+	 */
+	static boolean areValid(final List<String> texts)
+	{
+		if (texts == null)
+		{
+			return false;
+		}
+
+		for (final String text : texts)
+		{
+			if (!isValid(text))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Splits the chunks into at most the given number of consecutive parts of about the same length, and no more
+	 * parts than it takes to hold them if each is filled up to {@link Translator#MAX_TEXT_SIZE}.
+	 */
+	private static List<List<String>> split(final List<String> chunks, final int maxParts)
+	{
+		int length = 0;
+
+		for (final String chunk : chunks)
+		{
+			length += chunk.length();
+		}
+
+		final int parts = Math.min(maxParts, (length + MAX_TEXT_SIZE - 1) / MAX_TEXT_SIZE);
+		final List<List<String>> split = new ArrayList<List<String>>(parts);
+
+		int start = 0;
+		int filled = 0;
+
+		for (int i = 0; i < chunks.size(); i++)
+		{
+			filled += chunks.get(i).length();
+
+			if ((long) filled * parts >= (long) length * (split.size() + 1) || i == chunks.size() - 1)
+			{
+				split.add(chunks.subList(start, i + 1));
+				start = i + 1;
+			}
+		}
+
+		return split;
+	}
+
+	/**
+	 * Creates a new translator instance with the given Google API key. Note that this method only does a basic check of
+	 * the validity of the key. If it appears valid but isn't, a ResponseException will be thrown when invoking the
+	 * service methods.
+	 * 
+	 * @param apiKey
+	 *            the Google API key
+	 * 
+	 * @return the translator
+	 * 
+	 * @throws NullPointerException
+	 *             if the API key is null
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the API key is not a sequence of alphanumeric characters
+	 * 
+	 */
+	public static Translator translator(final String apiKey)
+	{
+		return translator(apiKey, new Configuration());
+	}
+
+	/**
+	 * Creates a new translator instance with the given Google API key and configuration. The translator is thread-safe
+	 * and is meant to be shared: its connections are pooled and reused by all the threads that call it.
+	 * 
+	 * @param apiKey
+	 *            the Google API key
+	 * @param configuration
+	 *            the configuration
+	 * 
+	 * @return the translator
+	 * 
+	 * @throws NullPointerException
+	 *             if the API key or the configuration are null
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the API key is not a sequence of alphanumeric characters
+	 * 
+	 */
+	public static Translator translator(final String apiKey, final Configuration configuration)
+	{
+		ensureNotNull(apiKey, "API key");
+
+		return translator(new ApiKeys(apiKey), configuration);
+	}
+
+	/**
+	 * Creates a new translator instance that spreads its requests over several Google API keys, with the given
+	 * configuration. Like {@link #translator(String, Configuration)}, this method only does a basic check of the
+	 * validity of the keys.
+	 * 
+	 * @param apiKeys
+	 *            the Google API keys
+	 * @param configuration
+	 *            the configuration
+	 * 
+	 * @return the translator
+	 * 
+	 * @throws NullPointerException
+	 *             if the API keys or the configuration are null
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if any API key is not a sequence of alphanumeric characters
+	 * 
+	 */
+	public static Translator translator(final ApiKeys apiKeys, final Configuration configuration)
+	{
+		ensureNotNull(apiKeys, "API keys");
+		ensureNotNull(configuration, "configuration");
+
+		for (final String apiKey : apiKeys.getKeys())
+		{
+			ensure(apiKey.trim().matches("[a-zA-Z0-9_\\-]+"), "API key [%s] must be non-empty and alphanumeric",
+					apiKey);
+		}
+
+		final String PATH = "/language/translate/v2";
+		final String HOST = "www.googleapis.com";
+		final String PROTOCOL = "https";
+		final int PORT = -1;
+
+		Translator translator = new GoogleTranslatorVersion2(apiKeys, new HTTPService(PROTOCOL, HOST, PORT, PATH,
+				makeHttpClient(configuration), configuration), configuration);
+
+		if (configuration.batching != null)
+		{
+			translator = new BatchingTranslator(translator, configuration.batching);
+		}
+
+		if (configuration.singleFlight)
+		{
+			translator = new SingleFlightTranslator(translator);
+		}
+
+		if (configuration.cache != null)
+		{
+			translator = new CachingTranslator(translator, configuration.cache);
+		}
+
+		return configuration.localDetector != null ? new LocallyDetectingTranslator(translator,
+				configuration.localDetector, configuration.localDetectionConfidence) : translator;
+	}
+
+	static HttpClient makeHttpClient(final Configuration configuration)
+	{
+		final HttpParams parameters = new BasicHttpParams();
+
+		HttpProtocolParams.setVersion(parameters, HttpVersion.HTTP_1_1);
+		HttpProtocolParams.setContentCharset(parameters, "UTF-8");
+		ConnManagerParams.setMaxTotalConnections(parameters, configuration.maxConnections);
+		ConnManagerParams.setMaxConnectionsPerRoute(parameters, new ConnPerRouteBean(
+				configuration.maxConnectionsPerRoute));
+		ConnManagerParams.setTimeout(parameters, configuration.poolTimeoutMillis);
+		HttpConnectionParams.setConnectionTimeout(parameters, configuration.connectTimeoutMillis);
+		HttpConnectionParams.setSoTimeout(parameters, configuration.socketTimeoutMillis);
+
+		final SchemeRegistry schemes = new SchemeRegistry();
+
+		schemes.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+		schemes.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+		final DefaultHttpClient client = new DefaultHttpClient(new ThreadSafeClientConnManager(parameters, schemes),
+				parameters);
+
+		client.setKeepAliveStrategy(keepingAliveFor(configuration.keepAliveMillis));
+
+		return client;
+	}
+
+	private static DefaultConnectionKeepAliveStrategy keepingAliveFor(final long defaultMillis)
+	{
+		return new DefaultConnectionKeepAliveStrategy()
+		{
+			@Override
+			public long getKeepAliveDuration(final HttpResponse response, final HttpContext context)
+			{
+				final long announcedMillis = super.getKeepAliveDuration(response, context);
+
+				return announcedMillis > 0 ? announcedMillis : defaultMillis;
+			}
+		};
+	}
+}
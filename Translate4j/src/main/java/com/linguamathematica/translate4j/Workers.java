@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2010 the author
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+
+/**
+ * The threads that run asynchronous calls. Either wraps an executor supplied through the configuration, which is left
+ * running on shut down, or lazily creates its own pool of daemon threads, so that translators only used synchronously
+ * never start any. The pool runs the tasks it has queued by the {@link Priority} of the calls that made them, and in
+ * the order they were made within a priority.
+ */
+class Workers
+{
+	private final ExecutorService supplied;
+	private final int threads;
+	private final int parallelism;
+	private final AtomicLong sequence = new AtomicLong();
+
+	private ExecutorService owned;
+	private boolean shutDown;
+
+	Workers(final Configuration configuration)
+	{
+		supplied = configuration.executor;
+		threads = configuration.asyncThreads;
+		parallelism = configuration.documentConcurrency;
+	}
+
+	/**
+	 * Gets the number of parts of a single call that may run at the same time.
+	 */
+	int parallelism()
+	{
+		return parallelism;
+	}
+
+	/**
+	 * Runs the given tasks, the first on the calling thread and the rest on the workers, and returns their results in
+	 * the same order. Tasks no worker has picked up yet by the time the caller gets to them are run by the caller, so
+	 * that a call made from a worker cannot starve waiting for the pool it is running on.
+	 */
+	<T> List<T> invokeAll(final List<Callable<T>> tasks)
+	{
+		final List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(tasks.size());
+
+		for (final Callable<T> task : tasks)
+		{
+			futures.add(new FutureTask<T>(task));
+		}
+
+		for (final FutureTask<T> future : futures.subList(Math.min(1, futures.size()), futures.size()))
+		{
+			execute(future);
+		}
+
+		final List<T> results = new ArrayList<T>(futures.size());
+
+		for (final FutureTask<T> future : futures)
+		{
+			results.add(await(future));
+		}
+
+		return results;
+	}
+
+	/**
+	 * Hands the task to the workers, or leaves it for the caller to run if they reject it.
+	 */
+	void execute(final Runnable task)
+	{
+		try
+		{
+			executor().execute(new PrioritizedTask<Void>(task, Priority.current(), sequence.incrementAndGet()));
+		}
+		catch (final RejectedExecutionException exception)
+		{
+			// left for the caller to run
+		}
+	}
+
+	/**
+	 * Waits for the result of the task, running it on the calling thread if no worker has picked it up yet.
+	 */
+	static <T> T await(final FutureTask<T> task)
+	{
+		task.run();
+
+		try
+		{
+			return task.get();
+		}
+		catch (final ExecutionException exception)
+		{
+			if (exception.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) exception.getCause();
+			}
+
+			if (exception.getCause() instanceof Error)
+			{
+				throw (Error) exception.getCause();
+			}
+
+			throw new IllegalStateException("Part of a call failed", exception.getCause());
+		}
+		catch (final InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+
+			throw new IllegalStateException("Interrupted while waiting for part of a call", exception);
+		}
+	}
+
+	<T> Future<T> submit(final Callable<T> task)
+	{
+		final PrioritizedTask<T> prioritized = new PrioritizedTask<T>(task, Priority.current(), sequence
+				.incrementAndGet());
+
+		try
+		{
+			executor().execute(prioritized);
+
+			return prioritized;
+		}
+		catch (final RejectedExecutionException exception)
+		{
+			throw new IllegalStateException("Asynchronous call rejected, translator may have been disposed",
+					exception);
+		}
+	}
+
+	synchronized void shutDown()
+	{
+		shutDown = true;
+
+		if (owned != null)
+		{
+			owned.shutdown();
+		}
+	}
+
+	private synchronized ExecutorService executor()
+	{
+		if (shutDown)
+		{
+			throw new IllegalStateException("Translator has been disposed");
+		}
+
+		if (supplied != null)
+		{
+			return supplied;
+		}
+
+		if (owned == null)
+		{
+			owned = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+					new PriorityBlockingQueue<Runnable>(), daemonThreads("translate4j-worker-%s"));
+		}
+
+		return owned;
+	}
+
+	/**
+	 * Creates daemon threads named after the given format, which is given the number of the thread.
+	 */
+	static ThreadFactory daemonThreads(final String nameFormat)
+	{
+		return new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(final Runnable task)
+			{
+				final Thread thread = new Thread(task, format(nameFormat, count.incrementAndGet()));
+
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * A task ordered by the priority of the call that made it and then by the order tasks were made in.
+	 */
+	private static class PrioritizedTask<T> extends FutureTask<T> implements Comparable<PrioritizedTask<?>>
+	{
+		private final Priority priority;
+		private final long sequence;
+
+		PrioritizedTask(final Callable<T> task, final Priority priority, final long sequence)
+		{
+			super(task);
+
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		PrioritizedTask(final Runnable task, final Priority priority, final long sequence)
+		{
+			super(task, null);
+
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		public int compareTo(final PrioritizedTask<?> other)
+		{
+			if (priority != other.priority)
+			{
+				return priority.compareTo(other.priority);
+			}
+
+			return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+		}
+	}
+}
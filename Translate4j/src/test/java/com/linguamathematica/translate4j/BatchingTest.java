@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static com.linguamathematica.translate4j.Language.ENGLISH;
+import static com.linguamathematica.translate4j.Language.FRENCH;
+import static com.linguamathematica.translate4j.Language.SPANISH;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchingTest
+{
+	private static final int CALLERS = 40;
+
+	private ExecutorService callers;
+	private CountingTranslator service;
+
+	@Before
+	public void setUp()
+	{
+		callers = Executors.newFixedThreadPool(CALLERS);
+		service = new CountingTranslator();
+	}
+
+	@After
+	public void tearDown()
+	{
+		callers.shutdownNow();
+	}
+
+	@Test
+	public void sendsConcurrentCallsAsOneBatch() throws Exception
+	{
+		final Batching batching = new Batching().window(1, TimeUnit.SECONDS).maxBatchSize(CALLERS);
+		final Translator translator = new BatchingTranslator(service, batching.maxDelay(5, TimeUnit.SECONDS));
+
+		final List<Future<String>> translations = translateConcurrently(translator, ENGLISH, SPANISH);
+
+		for (int i = 0; i < CALLERS; i++)
+		{
+			assertThat(translations.get(i).get(), is(CountingTranslator.translationOf("text " + i)));
+		}
+
+		assertThat(service.calls.get(), is(1));
+		assertThat(batching.getBatches(), is(1L));
+		assertThat(batching.getLargestBatchSize(), is(CALLERS));
+		assertThat(batching.getAverageBatchSize(), is((double) CALLERS));
+	}
+
+	@Test
+	public void sendsBatchAfterMaxDelay() throws Exception
+	{
+		final Batching batching = new Batching().window(1, TimeUnit.SECONDS).maxDelay(50, TimeUnit.MILLISECONDS);
+		final long start = System.nanoTime();
+
+		assertThat(new BatchingTranslator(service, batching).translate("text", ENGLISH, SPANISH), is("TEXT"));
+		assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(1)));
+		assertThat(batching.getBatchedCalls(), is(1L));
+	}
+
+	@Test
+	public void keepsLanguagePairsInSeparateBatches() throws Exception
+	{
+		final Batching batching = new Batching().window(200, TimeUnit.MILLISECONDS).maxDelay(1, TimeUnit.SECONDS);
+		final Translator translator = new BatchingTranslator(service, batching);
+
+		final List<Future<String>> spanish = translateConcurrently(translator, ENGLISH, SPANISH);
+		final List<Future<String>> french = translateConcurrently(translator, ENGLISH, FRENCH);
+
+		assertThat(spanish.get(0).get(), is("TEXT 0"));
+		assertThat(french.get(0).get(), is("TEXT 0"));
+		assertThat(service.calls.get(), lessThan(2 * CALLERS));
+		assertThat(batching.getBatchedCalls(), is(2L * CALLERS));
+	}
+
+	@Test
+	public void coalescesDetections() throws Exception
+	{
+		final Batching batching = new Batching().window(1, TimeUnit.SECONDS).maxBatchSize(2);
+		final Translator translator = new BatchingTranslator(service, batching);
+
+		final Future<Language> first = callers.submit(detecting(translator, "uno"));
+		final Future<Language> second = callers.submit(detecting(translator, "dos"));
+
+		assertThat(first.get(), is(SPANISH));
+		assertThat(second.get(), is(SPANISH));
+		assertThat(service.calls.get(), is(1));
+	}
+
+	@Test
+	public void reportsFailureToEveryCallerOfTheBatch() throws Exception
+	{
+		final Batching batching = new Batching().window(1, TimeUnit.SECONDS).maxBatchSize(CALLERS);
+		final Translator translator = new BatchingTranslator(new CountingTranslator()
+		{
+			@Override
+			public List<String> translate(final List<String> texts, final Language source, final Language target)
+			{
+				throw new ConnectionException("unreachable", null);
+			}
+		}, batching);
+
+		for (final Future<String> translation : translateConcurrently(translator, ENGLISH, SPANISH))
+		{
+			try
+			{
+				translation.get();
+				fail("Expected the failure of the batch");
+			}
+			catch (final ExecutionException exception)
+			{
+				assertThat(exception.getCause(), instanceOf(ConnectionException.class));
+			}
+		}
+
+		assertThat(batching.getBatches(), is(0L));
+	}
+
+	@Test
+	public void failsInvalidTextWithoutFailingTheCallsItWouldHaveBeenBatchedWith() throws Exception
+	{
+		final Batching batching = new Batching().window(100, TimeUnit.MILLISECONDS).maxBatchSize(2);
+		final Translator translator = new BatchingTranslator(new CountingTranslator()
+		{
+			@Override
+			public List<Language> detect(final List<String> texts)
+			{
+				for (final String text : texts)
+				{
+					Base.ensure(text.trim().length() != 0, "text cannot be empty");
+				}
+
+				return super.detect(texts);
+			}
+		}, batching);
+
+		final Future<Language> valid = callers.submit(detecting(translator, "uno"));
+		final Future<Language> blank = callers.submit(detecting(translator, "  "));
+
+		assertThat(valid.get(), is(SPANISH));
+
+		try
+		{
+			blank.get();
+			fail("Expected the blank text to be refused");
+		}
+		catch (final ExecutionException exception)
+		{
+			assertThat(exception.getCause(), instanceOf(IllegalArgumentException.class));
+		}
+	}
+
+	private List<Future<String>> translateConcurrently(final Translator translator, final Language source,
+			final Language target)
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Future<String>> translations = new ArrayList<Future<String>>();
+
+		for (int i = 0; i < CALLERS; i++)
+		{
+			final String text = "text " + i;
+
+			translations.add(callers.submit(new Callable<String>()
+			{
+				public String call() throws Exception
+				{
+					start.await();
+
+					return translator.translate(text, source, target);
+				}
+			}));
+		}
+
+		start.countDown();
+
+		return translations;
+	}
+
+	private static Callable<Language> detecting(final Translator translator, final String text)
+	{
+		return new Callable<Language>()
+		{
+			public Language call()
+			{
+				return translator.detect(text);
+			}
+		};
+	}
+}
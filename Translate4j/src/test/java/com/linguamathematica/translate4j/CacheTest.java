@@ -0,0 +1,497 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static com.linguamathematica.translate4j.Language.ENGLISH;
+import static com.linguamathematica.translate4j.Language.SPANISH;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CacheTest
+{
+	private static final CacheKey POPULAR = new CacheKey("popular", ENGLISH, SPANISH);
+	private static final CacheKey ALSO_POPULAR = new CacheKey("also popular", ENGLISH, SPANISH);
+	private static final CacheKey ONE_OFF = new CacheKey("one off", ENGLISH, SPANISH);
+	private static final int LOG_SIZE = 64 * 1024;
+
+	private CountingTranslator service;
+	private TranslationCache cache;
+	private Translator translator;
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		service = new CountingTranslator();
+		cache = TranslationCache.inMemory(100);
+		translator = new CachingTranslator(service, cache);
+		directory = File.createTempFile("translate4j", "");
+		directory.delete();
+	}
+
+	@After
+	public void tearDown()
+	{
+		for (final File file : directory.exists() ? directory.listFiles() : new File[0])
+		{
+			file.delete();
+		}
+
+		directory.delete();
+	}
+
+	@Test
+	public void answersRepeatedTranslationFromCache() throws Exception
+	{
+		translator.translate("hello", ENGLISH, SPANISH);
+
+		assertThat(translator.translate("hello", ENGLISH, SPANISH), is("HELLO"));
+		assertThat(service.calls.get(), is(1));
+		assertThat(cache.getHits(), is(1L));
+		assertThat(cache.getMisses(), is(1L));
+	}
+
+	@Test
+	public void asksServiceOnlyForTheMissingTextsOfABatch() throws Exception
+	{
+		translator.translate(asList("one", "three"), ENGLISH, SPANISH);
+
+		assertThat(translator.translate(asList("one", "two", "three", "four"), ENGLISH, SPANISH),
+				is(asList("ONE", "TWO", "THREE", "FOUR")));
+		assertThat(service.calls.get(), is(2));
+		assertThat(service.texts.get(), is(4));
+	}
+
+	@Test
+	public void answersRepeatedDetectionFromCache() throws Exception
+	{
+		translator.detect("hola");
+
+		assertThat(translator.detect("hola"), is(SPANISH));
+		assertThat(service.calls.get(), is(1));
+	}
+
+	@Test
+	public void answersRepeatedTranslationWithDetectionFromCache() throws Exception
+	{
+		translator.translateAndDetect("hola", ENGLISH);
+
+		final Translation translation = translator.translateAndDetect("hola", ENGLISH);
+
+		assertThat(translation.getText(), is("HOLA"));
+		assertThat(translation.getDetectedLanguage(), is(SPANISH));
+		assertThat(translator.detect("hola"), is(SPANISH));
+		assertThat(service.calls.get(), is(2));
+	}
+
+	@Test
+	public void leavesOutDetectionTheServiceDidNotReport() throws Exception
+	{
+		final Translator undetecting = new CachingTranslator(new CountingTranslator()
+		{
+			@Override
+			public List<Translation> translateAndDetect(final List<String> texts, final Language target)
+			{
+				final List<Translation> translations = new ArrayList<Translation>();
+
+				for (final String text : texts)
+				{
+					translations.add(new Translation(translationOf(text), Language.UNKNOWN));
+				}
+
+				return translations;
+			}
+		}, cache);
+
+		undetecting.translateAndDetect("hola", ENGLISH);
+
+		assertThat(undetecting.detect("hola"), is(SPANISH));
+	}
+
+	@Test
+	public void keepsTranslationsBetweenDifferentLanguagesApart() throws Exception
+	{
+		translator.translate("hello", ENGLISH, SPANISH);
+		translator.translate("hello", ENGLISH, Language.FRENCH);
+		translator.detect("hello");
+
+		assertThat(service.calls.get(), is(3));
+	}
+
+	@Test
+	public void refusesOneOffTextWhenFullOfPopularOnes() throws Exception
+	{
+		final TranslationCache full = fullOfPopularTexts();
+
+		full.get(ONE_OFF);
+		full.put(ONE_OFF, "translation");
+
+		assertThat(full.getSize(), is(2));
+		assertThat(full.getEvictions(), is(1L));
+		assertThat(full.get(ONE_OFF), is(nullValue()));
+		assertThat(full.get(POPULAR), is("translation"));
+	}
+
+	@Test
+	public void replacesLeastRecentlyUsedTextWithMorePopularOne() throws Exception
+	{
+		final TranslationCache full = TranslationCache.inMemory(2);
+
+		full.put(POPULAR, "translation");
+		full.put(ALSO_POPULAR, "translation");
+		full.get(ONE_OFF);
+		full.get(ONE_OFF);
+		full.put(ONE_OFF, "translation");
+
+		assertThat(full.get(POPULAR), is(nullValue()));
+		assertThat(full.get(ONE_OFF), is("translation"));
+	}
+
+	@Test
+	public void expiresEntriesAfterTimeToLive() throws Exception
+	{
+		final TranslationCache expiring = TranslationCache.inMemory(10, 50, TimeUnit.MILLISECONDS);
+
+		expiring.put(POPULAR, "translation");
+		Thread.sleep(100);
+
+		assertThat(expiring.get(POPULAR), is(nullValue()));
+		assertThat(expiring.getMisses(), is(1L));
+	}
+
+	@Test
+	public void keepsResultsOnDiskAcrossRestarts() throws Exception
+	{
+		final TranslationCache disk = TranslationCache.onDisk(directory, LOG_SIZE);
+
+		disk.put(POPULAR, "translation");
+		disk.put(POPULAR, "better translation");
+		disk.close();
+
+		final TranslationCache reopened = TranslationCache.onDisk(directory, LOG_SIZE);
+
+		assertThat(reopened.get(POPULAR), is("better translation"));
+		assertThat(reopened.getSize(), is(1));
+		reopened.close();
+	}
+
+	@Test
+	public void dropsResultDamagedByACrash() throws Exception
+	{
+		final TranslationCache disk = TranslationCache.onDisk(directory, LOG_SIZE);
+
+		disk.put(POPULAR, "translation");
+		disk.put(ONE_OFF, "translation");
+		disk.close();
+
+		final RandomAccessFile log = new RandomAccessFile(directory.listFiles()[0], "rw");
+		final int records = 2 * 12 + POPULAR.toBytes().length + ONE_OFF.toBytes().length + 2 * "translation".length();
+
+		log.seek(16 + records - 1);
+		log.write('X');
+		log.close();
+
+		final TranslationCache reopened = TranslationCache.onDisk(directory, LOG_SIZE);
+
+		assertThat(reopened.get(POPULAR), is("translation"));
+		assertThat(reopened.get(ONE_OFF), is(nullValue()));
+		reopened.close();
+	}
+
+	@Test
+	public void compactsReplacedResultsAwayInTheBackground() throws Exception
+	{
+		final TranslationCache disk = TranslationCache.onDisk(directory, LOG_SIZE);
+		final String translation = String.format("%1000s", "translation");
+
+		for (int i = 0; i < 200; i++)
+		{
+			disk.put(POPULAR, translation);
+			Thread.sleep(1);
+		}
+
+		for (int i = 0; i < 100 && directory.listFiles().length > 1; i++)
+		{
+			Thread.sleep(50);
+		}
+
+		assertThat(disk.get(POPULAR), is(translation));
+		assertThat(disk.getSize(), is(1));
+		assertThat(directory.list()[0], is(not("translations-1.log")));
+		assertThat(directory.listFiles()[0].length(), is((long) LOG_SIZE));
+		disk.close();
+	}
+
+	@Test
+	public void answersMissWithoutAskingColdTierWhenFilterKnowsKeyIsNotThere() throws Exception
+	{
+		final TranslationCache cold = TranslationCache.inMemory(100);
+		final TieredCache tiered = TranslationCache.tiered(TranslationCache.inMemory(10), cold, 100);
+
+		tiered.put(POPULAR, "translation");
+
+		assertThat(tiered.get(ONE_OFF), is(nullValue()));
+		assertThat(tiered.getFilteredMisses(), is(1L));
+		assertThat(cold.getMisses(), is(0L));
+	}
+
+	@Test
+	public void promotesResultAskedForAgainToHotTier() throws Exception
+	{
+		final TieredCache tiered = TranslationCache.tiered(TranslationCache.inMemory(10), TranslationCache
+				.inMemory(100), 100);
+
+		tiered.put(POPULAR, "translation");
+
+		for (int i = 0; i < 3; i++)
+		{
+			assertThat(tiered.get(POPULAR), is("translation"));
+		}
+
+		assertThat(tiered.getPromotions(), is(1L));
+		assertThat(tiered.getColdTier().getHits(), is(2L));
+		assertThat(tiered.getHotTier().getHits(), is(1L));
+		assertThat(tiered.getHits(), is(3L));
+	}
+
+	@Test
+	public void filterRarelyTakesAbsentKeyForPresentOne() throws Exception
+	{
+		final BloomFilter filter = new BloomFilter(1000, 0.01);
+		int falsePositives = 0;
+
+		for (int i = 0; i < 1000; i++)
+		{
+			filter.add(new CacheKey("present " + i, ENGLISH, SPANISH));
+		}
+
+		for (int i = 0; i < 1000; i++)
+		{
+			assertThat(filter.mightContain(new CacheKey("present " + i, ENGLISH, SPANISH)), is(true));
+			falsePositives += filter.mightContain(new CacheKey("absent " + i, ENGLISH, SPANISH)) ? 1 : 0;
+		}
+
+		assertThat(falsePositives, is(lessThan(30)));
+	}
+
+	@Test
+	public void findsEveryResultWhileFilterIsRebuilt() throws Exception
+	{
+		final TieredCache tiered = TranslationCache.tiered(TranslationCache.inMemory(10), TranslationCache
+				.offHeap(LOG_SIZE), 10);
+
+		for (int i = 0; i < 300; i++)
+		{
+			tiered.put(new CacheKey("text " + i, ENGLISH, SPANISH), "translation " + i);
+		}
+
+		for (int i = 0; i < 300; i++)
+		{
+			assertThat(tiered.get(new CacheKey("text " + i, ENGLISH, SPANISH)), is("translation " + i));
+		}
+
+		tiered.close();
+	}
+
+	@Test
+	public void knowsResultsAlreadyInColdTier() throws Exception
+	{
+		final TranslationCache disk = TranslationCache.onDisk(directory, LOG_SIZE);
+
+		disk.put(POPULAR, "translation");
+		disk.close();
+
+		final TieredCache tiered = TranslationCache.tiered(TranslationCache.inMemory(10), TranslationCache.onDisk(
+				directory, LOG_SIZE), 100);
+
+		assertThat(tiered.get(POPULAR), is("translation"));
+		assertThat(tiered.getSize(), is(1));
+		tiered.close();
+	}
+
+	@Test
+	public void keepsResultsOffHeap() throws Exception
+	{
+		final TranslationCache offHeap = TranslationCache.offHeap(LOG_SIZE);
+
+		offHeap.put(POPULAR, "translation");
+		offHeap.put(POPULAR, "better translation");
+		offHeap.put(ONE_OFF, "traducci\u00f3n");
+
+		assertThat(offHeap.get(POPULAR), is("better translation"));
+		assertThat(offHeap.get(ONE_OFF), is("traducci\u00f3n"));
+		assertThat(offHeap.get(ALSO_POPULAR), is(nullValue()));
+		assertThat(offHeap.getSize(), is(2));
+		offHeap.close();
+	}
+
+	@Test
+	public void evictsOldestResultsOffHeapButKeepsThoseAskedFor() throws Exception
+	{
+		final TranslationCache offHeap = TranslationCache.offHeap(LOG_SIZE);
+
+		offHeap.put(POPULAR, "translation");
+		offHeap.put(ONE_OFF, "translation");
+
+		for (int i = 0; i < 2000; i++)
+		{
+			offHeap.put(new CacheKey("text " + i, ENGLISH, SPANISH), String.format("%100s", i));
+
+			if (i % 100 == 0)
+			{
+				assertThat(offHeap.get(POPULAR), is("translation"));
+			}
+		}
+
+		assertThat(offHeap.get(POPULAR), is("translation"));
+		assertThat(offHeap.get(ONE_OFF), is(nullValue()));
+		assertThat(offHeap.get(new CacheKey("text 1999", ENGLISH, SPANISH)), is(String.format("%100s", 1999)));
+		assertThat(offHeap.getSize() + offHeap.getEvictions(), is(2002L));
+		offHeap.close();
+	}
+
+	@Test
+	public void loadsSnapshotSavedFromAnotherCache() throws Exception
+	{
+		final CacheSnapshot snapshot = new CacheSnapshot(new File(directory, "snapshot"));
+
+		directory.mkdirs();
+		cache.put(POPULAR, "translation");
+		cache.put(ONE_OFF, "traducci\u00f3n");
+
+		assertThat(snapshot.save(cache), is(2));
+
+		final TranslationCache warm = TranslationCache.offHeap(LOG_SIZE);
+
+		assertThat(snapshot.load(warm), is(2));
+		assertThat(warm.get(POPULAR), is("translation"));
+		assertThat(warm.get(ONE_OFF), is("traducci\u00f3n"));
+		assertThat(snapshot.isLoadComplete(), is(true));
+		assertThat(snapshot.getPeakLoadBytes(), is(lessThan(256 * 1024L)));
+		warm.close();
+	}
+
+	@Test
+	public void stopsLoadingSnapshotAtMaxLoadTime() throws Exception
+	{
+		final CacheSnapshot snapshot = new CacheSnapshot(new File(directory, "snapshot"));
+
+		directory.mkdirs();
+		cache.put(POPULAR, "translation");
+		snapshot.save(cache);
+
+		assertThat(snapshot.maxLoadTime(0, TimeUnit.SECONDS).load(TranslationCache.inMemory(10)), is(0));
+		assertThat(snapshot.isLoadComplete(), is(false));
+	}
+
+	@Test(expected = IOException.class)
+	public void refusesFileThatIsNotASnapshot() throws Exception
+	{
+		final File file = new File(directory, "snapshot");
+
+		directory.mkdirs();
+
+		final RandomAccessFile notASnapshot = new RandomAccessFile(file, "rw");
+
+		notASnapshot.writeUTF("translations");
+		notASnapshot.close();
+
+		new CacheSnapshot(file).load(cache);
+	}
+
+	@Test
+	public void answersLookupsWhileResultsAreSaved() throws Exception
+	{
+		final TranslationCache disk = TranslationCache.onDisk(directory, LOG_SIZE);
+		final TranslationCache offHeap = TranslationCache.offHeap(LOG_SIZE);
+
+		for (final TranslationCache saved : asList(cache, disk, offHeap))
+		{
+			assertThat(lookupDuringSave(saved), is("translation"));
+		}
+
+		disk.close();
+		offHeap.close();
+	}
+
+	private static String lookupDuringSave(final TranslationCache saved) throws IOException
+	{
+		final List<String> answers = new ArrayList<String>();
+
+		saved.put(POPULAR, "translation");
+		saved.forEachResult(new TranslationCache.ResultVisitor()
+		{
+			public void visit(final CacheKey key, final String value)
+			{
+				final String[] answer = new String[1];
+				final Thread lookup = new Thread()
+				{
+					@Override
+					public void run()
+					{
+						answer[0] = saved.get(key);
+					}
+				};
+
+				lookup.start();
+
+				try
+				{
+					lookup.join(1000);
+				}
+				catch (final InterruptedException exception)
+				{
+					Thread.currentThread().interrupt();
+				}
+
+				answers.add(lookup.isAlive() ? "still waiting" : answer[0]);
+			}
+		});
+
+		return answers.get(0);
+	}
+
+	private static TranslationCache fullOfPopularTexts()
+	{
+		final TranslationCache full = TranslationCache.inMemory(2);
+
+		full.put(POPULAR, "translation");
+		full.put(ALSO_POPULAR, "translation");
+
+		for (int i = 0; i < 3; i++)
+		{
+			full.get(POPULAR);
+			full.get(ALSO_POPULAR);
+		}
+
+		return full;
+	}
+}
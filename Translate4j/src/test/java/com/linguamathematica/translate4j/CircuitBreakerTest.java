@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static com.linguamathematica.translate4j.CircuitBreaker.State.CLOSED;
+import static com.linguamathematica.translate4j.CircuitBreaker.State.HALF_OPEN;
+import static com.linguamathematica.translate4j.CircuitBreaker.State.OPEN;
+
+import org.apache.http.HttpStatus;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.linguamathematica.translate4j.CircuitBreaker.State;
+
+public class CircuitBreakerTest
+{
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW = TimeUnit.SECONDS.toNanos(10);
+	private static final RuntimeException UNREACHABLE = new ConnectionException("unreachable", null);
+	private static final RuntimeException SERVER_ERROR = new ResponseException("failed", 503, "Service Unavailable");
+	private static final RuntimeException FORBIDDEN = new ResponseException("no", HttpStatus.SC_FORBIDDEN, "Forbidden");
+
+	private final List<State> changes = new ArrayList<State>();
+
+	private CircuitBreaker breaker;
+
+	@Before
+	public void setUp()
+	{
+		breaker = new CircuitBreaker().slidingWindow(4, 4).openDuration(50, TimeUnit.MILLISECONDS).trialCalls(2)
+				.addListener(new CircuitBreaker.Listener()
+				{
+					public void stateChanged(final CircuitBreaker breaker, final State from, final State to)
+					{
+						changes.add(to);
+					}
+				});
+	}
+
+	@Test
+	public void staysClosedWhileFailureRateIsBelowThreshold() throws Exception
+	{
+		call(UNREACHABLE, null, null, null);
+
+		assertThat(breaker.getState(), is(CLOSED));
+	}
+
+	@Test
+	public void opensWhenFailureRateReachesThresholdAndRefusesCalls() throws Exception
+	{
+		call(UNREACHABLE, null, SERVER_ERROR, null);
+
+		assertThat(breaker.getState(), is(OPEN));
+
+		try
+		{
+			breaker.acquire();
+
+			fail("should have thrown a CircuitOpenException");
+		}
+		catch (final CircuitOpenException exception)
+		{
+			assertThat(breaker.getRefusedCalls(), is(1L));
+		}
+	}
+
+	@Test
+	public void opensWhenTooManyCallsAreSlow() throws Exception
+	{
+		for (int i = 0; i < 4; i++)
+		{
+			breaker.acquire();
+			breaker.succeeded(SLOW);
+		}
+
+		assertThat(breaker.getState(), is(OPEN));
+	}
+
+	@Test
+	public void doesNotCountErrorsThatAreNotTheServicesFault() throws Exception
+	{
+		call(FORBIDDEN, FORBIDDEN, FORBIDDEN, FORBIDDEN);
+
+		assertThat(breaker.getState(), is(CLOSED));
+	}
+
+	@Test
+	public void closesAfterTrialCallsGoWell() throws Exception
+	{
+		call(UNREACHABLE, UNREACHABLE, UNREACHABLE, UNREACHABLE);
+		Thread.sleep(100);
+		call(null, null);
+
+		assertThat(breaker.getState(), is(CLOSED));
+		assertThat(changes, is(asList(OPEN, HALF_OPEN, CLOSED)));
+	}
+
+	@Test
+	public void reopensWhenATrialCallFails() throws Exception
+	{
+		call(UNREACHABLE, UNREACHABLE, UNREACHABLE, UNREACHABLE);
+		Thread.sleep(100);
+		call(UNREACHABLE);
+
+		assertThat(breaker.getState(), is(OPEN));
+		assertThat(changes, is(asList(OPEN, HALF_OPEN, OPEN)));
+	}
+
+	@Test
+	public void refusesCallsBeyondTheTrialCallsWhileHalfOpen() throws Exception
+	{
+		call(UNREACHABLE, UNREACHABLE, UNREACHABLE, UNREACHABLE);
+		Thread.sleep(100);
+
+		breaker.acquire();
+		breaker.acquire();
+
+		try
+		{
+			breaker.acquire();
+
+			fail("should have thrown a CircuitOpenException");
+		}
+		catch (final CircuitOpenException exception)
+		{
+			assertThat(breaker.getState(), is(HALF_OPEN));
+		}
+	}
+
+	/**
+	 * Makes calls through the breaker that fail with the given exceptions, or succeed where they are null.
+	 */
+	private void call(final RuntimeException... outcomes)
+	{
+		for (final RuntimeException outcome : outcomes)
+		{
+			breaker.acquire();
+
+			if (outcome == null)
+			{
+				breaker.succeeded(FAST);
+			}
+			else
+			{
+				breaker.failed(outcome, FAST);
+			}
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.apache.http.HttpStatus;
+import org.junit.Test;
+
+public class ConcurrencyLimitTest
+{
+	private static final long USUAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	@Test
+	public void growsWhileRequestsUsingItAreAnsweredInUsualTime() throws Exception
+	{
+		final ConcurrencyLimit limit = new ConcurrencyLimit().limits(1, 2, 10);
+
+		limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+		limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+		limit.succeeded(USUAL_NANOS);
+		limit.succeeded(USUAL_NANOS);
+
+		assertThat(limit.getLimit(), is(3));
+		assertThat(limit.getInFlight(), is(0));
+	}
+
+	@Test
+	public void doesNotGrowWhileMostOfItIsUnused() throws Exception
+	{
+		final ConcurrencyLimit limit = new ConcurrencyLimit().limits(1, 10, 20);
+
+		for (int i = 0; i < 5; i++)
+		{
+			limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+			limit.succeeded(USUAL_NANOS);
+		}
+
+		assertThat(limit.getLimit(), is(10));
+	}
+
+	@Test
+	public void shrinksWhenTheServiceIsOverloaded() throws Exception
+	{
+		final ConcurrencyLimit limit = new ConcurrencyLimit().limits(1, 10, 20).backoffRatio(0.5);
+
+		limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+		limit.failed(new ResponseException("", HttpStatus.SC_SERVICE_UNAVAILABLE, "Service Unavailable"), USUAL_NANOS);
+
+		assertThat(limit.getLimit(), is(5));
+
+		limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+		limit.failed(new ResponseException("", HttpStatus.SC_BAD_REQUEST, "Bad Request"), USUAL_NANOS);
+
+		assertThat(limit.getLimit(), is(5));
+	}
+
+	@Test
+	public void shrinksWhenLatencyRises() throws Exception
+	{
+		final ConcurrencyLimit limit = new ConcurrencyLimit().limits(1, 10, 20).backoffRatio(0.5);
+
+		limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+		limit.succeeded(USUAL_NANOS);
+		limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+		limit.succeeded(USUAL_NANOS * 3);
+
+		assertThat(limit.getLimit(), is(5));
+	}
+
+	@Test
+	public void shedsRequestsOverTheLimitWhenTheQueueIsFull() throws Exception
+	{
+		final ConcurrencyLimit limit = new ConcurrencyLimit().limits(1, 1, 1).queue(0, 1, TimeUnit.SECONDS);
+
+		limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+
+		try
+		{
+			limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+
+			fail("should have thrown a RequestRejectedException");
+		}
+		catch (final RequestRejectedException exception)
+		{
+			assertThat(limit.getShedRequests(), is(1L));
+		}
+	}
+
+	@Test
+	public void queuesRequestsOverTheLimitUntilOneFinishes() throws Exception
+	{
+		final ConcurrencyLimit limit = new ConcurrencyLimit().limits(1, 1, 1);
+		final AtomicBoolean sent = new AtomicBoolean();
+
+		limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+
+		final Thread queued = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+				sent.set(true);
+			}
+		};
+
+		queued.start();
+		Thread.sleep(100);
+
+		assertThat(limit.getQueueDepth(), is(1));
+		assertThat(sent.get(), is(false));
+
+		limit.succeeded(USUAL_NANOS);
+		queued.join(1000);
+
+		assertThat(sent.get(), is(true));
+		assertThat(limit.getQueueDepth(), is(0));
+		assertThat(limit.getInFlight(), is(1));
+	}
+
+	@Test
+	public void givesUpOnQueuedRequestWhenTheDeadlinePasses() throws Exception
+	{
+		final ConcurrencyLimit limit = new ConcurrencyLimit().limits(1, 1, 1);
+
+		limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+
+		try
+		{
+			limit.acquire(Priority.INTERACTIVE, new Deadline(TimeUnit.MILLISECONDS.toNanos(50)));
+
+			fail("should have thrown a DeadlineExceededException");
+		}
+		catch (final DeadlineExceededException exception)
+		{
+			assertThat(limit.getQueueDepth(), is(0));
+		}
+	}
+
+	@Test
+	public void keepsPartOfTheLimitForInteractiveRequests() throws Exception
+	{
+		final ConcurrencyLimit limit = new ConcurrencyLimit().limits(1, 4, 4).bulkShare(0.5).queue(0, 1,
+				TimeUnit.SECONDS);
+
+		limit.acquire(Priority.BULK, Deadline.NONE);
+		limit.acquire(Priority.BULK, Deadline.NONE);
+
+		try
+		{
+			limit.acquire(Priority.BULK, Deadline.NONE);
+
+			fail("should have thrown a RequestRejectedException");
+		}
+		catch (final RequestRejectedException exception)
+		{
+			limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+			limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+
+			assertThat(limit.getInFlight(), is(4));
+		}
+	}
+
+	@Test
+	public void letsQueuedInteractiveRequestsGoBeforeBulkOnes() throws Exception
+	{
+		final ConcurrencyLimit limit = new ConcurrencyLimit().limits(1, 1, 1).bulkShare(1);
+		final AtomicBoolean bulkSent = new AtomicBoolean();
+		final AtomicBoolean interactiveSent = new AtomicBoolean();
+
+		limit.acquire(Priority.INTERACTIVE, Deadline.NONE);
+
+		final Thread bulk = acquiring(limit, Priority.BULK, bulkSent);
+
+		Thread.sleep(50);
+
+		final Thread interactive = acquiring(limit, Priority.INTERACTIVE, interactiveSent);
+
+		Thread.sleep(50);
+
+		assertThat(limit.getQueueDepth(Priority.BULK), is(1));
+		assertThat(limit.getQueueDepth(Priority.INTERACTIVE), is(1));
+
+		limit.succeeded(USUAL_NANOS);
+		interactive.join(1000);
+		Thread.sleep(50);
+
+		assertThat(interactiveSent.get(), is(true));
+		assertThat(bulkSent.get(), is(false));
+
+		limit.succeeded(USUAL_NANOS);
+		bulk.join(1000);
+
+		assertThat(bulkSent.get(), is(true));
+	}
+
+	private static Thread acquiring(final ConcurrencyLimit limit, final Priority priority, final AtomicBoolean sent)
+	{
+		final Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				limit.acquire(priority, Deadline.NONE);
+				sent.set(true);
+			}
+		};
+
+		thread.start();
+
+		return thread;
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * A translator that answers without a service and counts the texts it is asked about. Translations are the texts in
+ * upper case and every text is detected as Spanish.
+ */
+class CountingTranslator extends Translator
+{
+	final AtomicInteger calls = new AtomicInteger();
+	final AtomicInteger texts = new AtomicInteger();
+
+	private final Workers workers = new Workers(new Configuration());
+
+	static String translationOf(final String text)
+	{
+		return text.toUpperCase();
+	}
+
+	@Override
+	public Language detect(final String text)
+	{
+		return detect(singletonList(text)).get(0);
+	}
+
+	@Override
+	public List<Language> detect(final List<String> texts)
+	{
+		final List<Language> languages = new ArrayList<Language>();
+
+		for (final String text : counted(texts))
+		{
+			languages.add(Language.SPANISH);
+		}
+
+		return languages;
+	}
+
+	@Override
+	public void dispose()
+	{
+		workers.shutDown();
+	}
+
+	@Override
+	public String translate(final String text, final Language source, final Language target)
+	{
+		return translate(singletonList(text), source, target).get(0);
+	}
+
+	@Override
+	public List<String> translate(final List<String> texts, final Language source, final Language target)
+	{
+		final List<String> translations = new ArrayList<String>();
+
+		for (final String text : counted(texts))
+		{
+			translations.add(translationOf(text));
+		}
+
+		return translations;
+	}
+
+	@Override
+	Workers workers()
+	{
+		return workers;
+	}
+
+	private List<String> counted(final List<String> texts)
+	{
+		calls.incrementAndGet();
+		this.texts.addAndGet(texts.size());
+
+		return texts;
+	}
+}
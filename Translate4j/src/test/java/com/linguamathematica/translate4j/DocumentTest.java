@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static com.linguamathematica.translate4j.Language.ENGLISH;
+import static com.linguamathematica.translate4j.Language.SPANISH;
+
+import org.junit.Test;
+
+public class DocumentTest
+{
+	private static final String SENTENCE = "This sentence is here to make a paragraph longer than a single request. ";
+
+	@Test
+	public void keepsLineBreaksAndSurroundingWhitespace() throws Exception
+	{
+		final Segments segments = Segments.of("  Title\r\n\r\n\tFirst line.\nSecond line.  \n", 100, ENGLISH);
+
+		assertThat(segments.chunks(), is(asList("Title", "First line.", "Second line.")));
+		assertThat(segments.join(asList("a", "b", "c")), is("  a\r\n\r\n\tb\nc  \n"));
+	}
+
+	@Test
+	public void cutsLongLinesAtSentenceBoundaries() throws Exception
+	{
+		final Segments segments = Segments.of("One sentence. Another sentence. A third one.", 35, ENGLISH);
+
+		assertThat(segments.chunks(), is(asList("One sentence. Another sentence.", "A third one.")));
+		assertThat(segments.join(segments.chunks()), is("One sentence. Another sentence. A third one."));
+	}
+
+	@Test
+	public void cutsLongSentencesAtWordBoundaries() throws Exception
+	{
+		final Segments segments = Segments.of("a sentence without any full stop", 12, ENGLISH);
+
+		assertThat(segments.chunks(), is(asList("a sentence", "without any", "full stop")));
+	}
+
+	@Test
+	public void cutsLongWordsAtTheLimit() throws Exception
+	{
+		assertThat(Segments.of("abcdefghij", 4, ENGLISH).chunks(), is(asList("abcd", "efgh", "ij")));
+	}
+
+	@Test
+	public void translatesLongDocumentInOrderPreservingLayout() throws Exception
+	{
+		final String document = "  Heading\n\n" + repeated(SENTENCE, 60) + "\n\n\t" + repeated(SENTENCE, 30) + "\n";
+		final CountingTranslator service = new CountingTranslator();
+
+		assertThat(service.translateDocument(document, ENGLISH, SPANISH), is(CountingTranslator
+				.translationOf(document)));
+		assertThat(service.calls.get(), is(4));
+	}
+
+	@Test
+	public void cutsDocumentIntoChunksTheServiceAccepts() throws Exception
+	{
+		final String document = repeated(SENTENCE, 100);
+
+		for (final String chunk : Segments.of(document, Translator.MAX_TEXT_SIZE, ENGLISH).chunks())
+		{
+			assertThat(chunk.length(), lessThanOrEqualTo(Translator.MAX_TEXT_SIZE));
+			assertThat(chunk.endsWith("."), is(true));
+		}
+	}
+
+	@Test
+	public void returnsBlankDocumentAsItIs() throws Exception
+	{
+		final CountingTranslator service = new CountingTranslator();
+
+		assertThat(service.translateDocument(" \n\n ", ENGLISH, SPANISH), is(" \n\n "));
+		assertThat(service.calls.get(), is(0));
+	}
+
+	@Test
+	public void streamsLongTextInOrderPreservingLayout() throws Exception
+	{
+		final StringBuilder text = new StringBuilder();
+
+		for (int i = 0; i < 2000; i++)
+		{
+			text.append(i % 10 == 0 ? "\n\t" : "").append("Line ").append(i).append(i % 3 == 0 ? ".\r\n" : ". ");
+		}
+
+		final StringWriter translation = new StringWriter();
+		final CountingTranslator service = new CountingTranslator();
+
+		service.translate(new StringReader(text.toString()), translation, ENGLISH, SPANISH);
+
+		assertThat(translation.toString(), is(CountingTranslator.translationOf(text.toString())));
+		assertThat(service.calls.get() > 1, is(true));
+	}
+
+	@Test
+	public void streamsLinesLongerThanABlock() throws Exception
+	{
+		final String text = repeated(SENTENCE, 500);
+		final StringWriter translation = new StringWriter();
+
+		new CountingTranslator().translate(new TrickleReader(new StringReader(text)), translation, ENGLISH, SPANISH);
+
+		assertThat(translation.toString(), is(CountingTranslator.translationOf(text)));
+	}
+
+	@Test
+	public void streamsBlankTextAsItIs() throws Exception
+	{
+		final StringWriter translation = new StringWriter();
+
+		new CountingTranslator().translate(new StringReader("\n \n"), translation, ENGLISH, SPANISH);
+
+		assertThat(translation.toString(), is("\n \n"));
+	}
+
+	private static String repeated(final String text, final int times)
+	{
+		final StringBuilder repeated = new StringBuilder();
+
+		for (int i = 0; i < times; i++)
+		{
+			repeated.append(text);
+		}
+
+		return repeated.toString();
+	}
+
+	/**
+	 * A reader that never returns more than a few characters at a time.
+	 */
+	private static class TrickleReader extends FilterReader
+	{
+		TrickleReader(final Reader reader)
+		{
+			super(reader);
+		}
+
+		@Override
+		public int read(final char[] buffer, final int offset, final int length) throws IOException
+		{
+			return super.read(buffer, offset, Math.min(length, 7));
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.StringReader;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static com.linguamathematica.translate4j.AbstractGoogleTranslateTest.languagesWithTexts;
+import static com.linguamathematica.translate4j.AbstractGoogleTranslateTest.percentage;
+import static com.linguamathematica.translate4j.Language.GERMAN;
+import static com.linguamathematica.translate4j.Language.SPANISH;
+import static com.linguamathematica.translate4j.Language.UNKNOWN;
+
+import org.junit.Test;
+
+import com.linguamathematica.translate4j.AbstractGoogleTranslateTest.LanguageWithText;
+
+public class LanguageDetectorTest
+{
+	private static final String GERMAN_TEXT = "Guten Morgen, wie geht es Ihnen heute? Wir fahren morgen in die Stadt.";
+
+	private final LanguageDetector detector = LanguageDetector.builtIn();
+
+	@Test
+	public void detectsLanguageWhenItsKnown_MostOfTheTime() throws Exception
+	{
+		final double acceptablePercentage = 90;
+		double detectedLanguages = 0;
+
+		for (final LanguageWithText source : languagesWithTexts())
+		{
+			detectedLanguages += detector.guess(source.text).getLanguage() == source.language ? 1 : 0;
+		}
+
+		assertThat(percentage(detectedLanguages), is(greaterThanOrEqualTo(acceptablePercentage)));
+	}
+
+	@Test
+	public void isMoreConfidentAboutLongerTexts() throws Exception
+	{
+		final LanguageDetector.Guess guess = detector.guess(GERMAN_TEXT);
+
+		assertThat(guess.getLanguage(), is(GERMAN));
+		assertThat(guess.getConfidence(), is(greaterThan(0.99)));
+		assertThat(detector.guess("hola").getConfidence(), is(lessThan(0.5)));
+	}
+
+	@Test
+	public void knowsNothingOfTextWithoutLetters() throws Exception
+	{
+		final LanguageDetector.Guess guess = detector.guess("1234 - 5678 !");
+
+		assertThat(guess.getLanguage(), is(UNKNOWN));
+		assertThat(guess.getConfidence(), is(0.0));
+	}
+
+	@Test
+	public void buildsProfilesFromGivenSamples() throws Exception
+	{
+		final LanguageDetector own = LanguageDetector.fromSamples(new StringReader(
+				"# two languages\nde\tder die das und ist nicht\n\nes\tel la los y es no\n"));
+
+		assertThat(own.getLanguages(), is(asList(GERMAN, SPANISH)));
+		assertThat(own.guess("das ist nicht").getLanguage(), is(GERMAN));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void throwsIAEIfSampleIsNotOfAKnownLanguage() throws Exception
+	{
+		LanguageDetector.fromSamples(new StringReader("xx\tsample text\n"));
+	}
+
+	@Test
+	public void asksServiceOnlyForTextsItIsNotConfidentAbout() throws Exception
+	{
+		final CountingTranslator service = new CountingTranslator();
+		final Translator translator = new LocallyDetectingTranslator(service, detector, 0.9);
+
+		assertThat(translator.detect(asList(GERMAN_TEXT, "ok", GERMAN_TEXT)), is(asList(GERMAN, SPANISH, GERMAN)));
+		assertThat(translator.detect(GERMAN_TEXT), is(GERMAN));
+		assertThat(service.calls.get(), is(1));
+		assertThat(service.texts.get(), is(1));
+	}
+}
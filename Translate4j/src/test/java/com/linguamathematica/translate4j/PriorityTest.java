@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static com.linguamathematica.translate4j.Language.ENGLISH;
+import static com.linguamathematica.translate4j.Language.SPANISH;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PriorityTest
+{
+	private RecordingTranslator translator;
+	private ExecutorService callers;
+
+	@Before
+	public void setUp()
+	{
+		translator = new RecordingTranslator();
+		callers = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void tearDown()
+	{
+		translator.release.countDown();
+		translator.dispose();
+		callers.shutdownNow();
+	}
+
+	@Test
+	public void makesEveryCallOfTheViewWithItsPriority() throws Exception
+	{
+		translator.release.countDown();
+
+		final Translator bulk = translator.withPriority(Priority.BULK);
+
+		bulk.translate("synchronous", ENGLISH, SPANISH);
+		bulk.translateAsync("asynchronous", ENGLISH, SPANISH).get();
+		translator.translate("interactive", ENGLISH, SPANISH);
+
+		assertThat(translator.calls, is(asList("BULK synchronous", "BULK asynchronous", "INTERACTIVE interactive")));
+		assertThat(Priority.current(), is(Priority.INTERACTIVE));
+	}
+
+	@Test
+	public void runsQueuedInteractiveCallsBeforeBulkOnes() throws Exception
+	{
+		final Translator bulk = translator.withPriority(Priority.BULK);
+		final List<Future<String>> translations = new ArrayList<Future<String>>();
+
+		translations.add(bulk.translateAsync("blocking", ENGLISH, SPANISH));
+
+		Thread.sleep(50);
+
+		translations.add(bulk.translateAsync("first bulk", ENGLISH, SPANISH));
+		translations.add(bulk.translateAsync("second bulk", ENGLISH, SPANISH));
+		translations.add(translator.translateAsync("interactive", ENGLISH, SPANISH));
+
+		translator.release.countDown();
+
+		for (final Future<String> translation : translations)
+		{
+			translation.get();
+		}
+
+		assertThat(translator.calls, is(asList("BULK blocking", "INTERACTIVE interactive", "BULK first bulk",
+				"BULK second bulk")));
+	}
+
+	@Test
+	public void sendsBatchWithTheHighestPriorityOfItsCalls() throws Exception
+	{
+		translator.release.countDown();
+
+		final Translator batching = new BatchingTranslator(translator, new Batching().window(1, TimeUnit.SECONDS)
+				.maxDelay(1, TimeUnit.SECONDS).maxBatchSize(2));
+		final Future<String> bulk = callers.submit(translating(batching.withPriority(Priority.BULK), "bulk"));
+
+		Thread.sleep(50);
+
+		final Future<String> interactive = callers.submit(translating(batching, "interactive"));
+
+		assertThat(bulk.get(), is("BULK"));
+		assertThat(interactive.get(), is("INTERACTIVE"));
+		assertThat(translator.calls, is(asList("INTERACTIVE bulk")));
+	}
+
+	@Test
+	public void keepsInteractiveCallsOutOfBulkFlights() throws Exception
+	{
+		final Translator singleFlight = new SingleFlightTranslator(translator);
+		final Future<String> bulk = callers.submit(translating(singleFlight.withPriority(Priority.BULK), "blocking"));
+
+		Thread.sleep(50);
+
+		final Future<String> interactive = callers.submit(translating(singleFlight, "blocking"));
+
+		Thread.sleep(50);
+		translator.release.countDown();
+
+		assertThat(bulk.get(), is("BLOCKING"));
+		assertThat(interactive.get(), is("BLOCKING"));
+		assertThat(translator.calls, is(asList("BULK blocking", "INTERACTIVE blocking")));
+	}
+
+	private static Callable<String> translating(final Translator translator, final String text)
+	{
+		return new Callable<String>()
+		{
+			public String call()
+			{
+				return translator.translate(text, ENGLISH, SPANISH);
+			}
+		};
+	}
+
+	/**
+	 * Records the priority of every call, on a single asynchronous thread that is blocked by the call to translate
+	 * "blocking" until released.
+	 */
+	private static class RecordingTranslator extends CountingTranslator
+	{
+		final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch release = new CountDownLatch(1);
+
+		private final Workers workers = new Workers(new Configuration().asyncThreads(1));
+
+		@Override
+		public List<String> translate(final List<String> texts, final Language source, final Language target)
+		{
+			calls.add(Priority.current() + " " + texts.get(0));
+
+			if (texts.get(0).equals("blocking"))
+			{
+				try
+				{
+					release.await();
+				}
+				catch (final InterruptedException exception)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			return super.translate(texts, source, target);
+		}
+
+		@Override
+		public void dispose()
+		{
+			workers.shutDown();
+			super.dispose();
+		}
+
+		@Override
+		Workers workers()
+		{
+			return workers;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class RateLimitTest
+{
+	@Test
+	public void letsRequestsWithinTheLimitsThroughAtOnce() throws Exception
+	{
+		final RateLimit limit = new RateLimit().requestsPerSecond(10).charactersPerSecond(1000).maxWait(0,
+				TimeUnit.SECONDS);
+
+		for (int i = 0; i < 10; i++)
+		{
+			limit.acquireCharacters(100, Deadline.NONE);
+			limit.acquireRequest(Deadline.NONE);
+		}
+
+		assertThat(limit.getThrottledRequests(), is(0L));
+	}
+
+	@Test
+	public void rejectsRequestsOverTheLimitWhenNotAllowedToWait() throws Exception
+	{
+		final RateLimit limit = new RateLimit().requestsPerSecond(2).maxWait(0, TimeUnit.SECONDS);
+
+		limit.acquireRequest(Deadline.NONE);
+		limit.acquireRequest(Deadline.NONE);
+
+		try
+		{
+			limit.acquireRequest(Deadline.NONE);
+
+			fail("should have thrown a RequestRejectedException");
+		}
+		catch (final RequestRejectedException exception)
+		{
+			assertThat(limit.getRejectedRequests(), is(1L));
+		}
+	}
+
+	@Test
+	public void makesRequestsOverTheCharacterLimitWait() throws Exception
+	{
+		final RateLimit limit = new RateLimit().charactersPerSecond(100);
+		final long start = System.nanoTime();
+
+		limit.acquireCharacters(100, Deadline.NONE);
+		limit.acquireCharacters(20, Deadline.NONE);
+
+		assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(190)));
+		assertThat(limit.getThrottledRequests(), is(1L));
+	}
+
+	@Test
+	public void rejectsRequestsThatWouldWaitLongerThanTheMaximum() throws Exception
+	{
+		final RateLimit limit = new RateLimit().charactersPerSecond(100).maxWait(100, TimeUnit.MILLISECONDS);
+		final long start = System.nanoTime();
+
+		limit.acquireCharacters(100, Deadline.NONE);
+
+		try
+		{
+			limit.acquireCharacters(50, Deadline.NONE);
+
+			fail("should have thrown a RequestRejectedException");
+		}
+		catch (final RequestRejectedException exception)
+		{
+			assertThat(System.nanoTime() - start, lessThan(TimeUnit.MILLISECONDS.toNanos(100)));
+		}
+	}
+
+	@Test
+	public void rejectsRequestsOverTheDailyQuota() throws Exception
+	{
+		final RateLimit limit = new RateLimit().dailyCharacters(1000).pacingThreshold(1);
+
+		limit.acquireCharacters(900, Deadline.NONE);
+
+		try
+		{
+			limit.acquireCharacters(200, Deadline.NONE);
+
+			fail("should have thrown a RequestRejectedException");
+		}
+		catch (final RequestRejectedException exception)
+		{
+			assertThat(limit.getCharactersToday(), is(900L));
+		}
+	}
+
+	@Test
+	public void slowsDownOnceMostOfTheDailyQuotaIsUsed() throws Exception
+	{
+		final RateLimit limit = new RateLimit().dailyCharacters(1000000).maxWait(0, TimeUnit.SECONDS);
+
+		limit.acquireCharacters(700000, Deadline.NONE);
+		limit.acquireCharacters(100000, Deadline.NONE);
+
+		try
+		{
+			limit.acquireCharacters(1000, Deadline.NONE);
+
+			fail("should have thrown a RequestRejectedException");
+		}
+		catch (final RequestRejectedException exception)
+		{
+			assertThat(limit.getCharactersToday(), is(800000L));
+		}
+	}
+
+	@Test
+	public void givesNoRequestToAHedgeWhenNoneIsFree() throws Exception
+	{
+		final RateLimit limit = new RateLimit().requestsPerSecond(2);
+
+		assertThat(limit.tryAcquireRequest(), is(true));
+
+		limit.acquireRequest(Deadline.NONE);
+
+		assertThat(limit.tryAcquireRequest(), is(false));
+		assertThat(limit.getThrottledRequests(), is(0L));
+		assertThat(limit.getRejectedRequests(), is(0L));
+	}
+}
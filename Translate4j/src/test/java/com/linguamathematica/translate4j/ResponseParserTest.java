@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static com.linguamathematica.translate4j.ResponseParser.decodeEntities;
+
+import org.junit.Test;
+
+public class ResponseParserTest
+{
+	private static final long MAX_SIZE = 16384;
+
+	@Test
+	public void readsEveryElementOfTheTranslationsArray() throws Exception
+	{
+		final List<Translation> translations = translationsIn("{\"data\":{\"translations\":["
+				+ "{\"translatedText\":\"uno\"},{\"translatedText\":\"dos\"},{\"translatedText\":\"tres\"}]}}");
+
+		assertThat(translations.size(), is(3));
+		assertThat(translations.get(2).text, is("tres"));
+		assertThat(translations.get(2).detectedLanguage, is(nullValue()));
+	}
+
+	@Test
+	public void readsDetectedSourceLanguage() throws Exception
+	{
+		final List<Translation> translations = translationsIn("{\"data\":{\"translations\":[{\"translatedText\":"
+				+ "\"hello\",\"detectedSourceLanguage\":\"es\"}]}}");
+
+		assertThat(translations.get(0).detectedLanguage, is(Language.SPANISH));
+	}
+
+	@Test
+	public void readsPrettyPrintedResponsesAndSkipsUnknownMembers() throws Exception
+	{
+		final List<Translation> translations = translationsIn("{\n \"kind\": \"translate\",\n \"data\": {\n"
+				+ "  \"translations\": [\n   {\n    \"model\": [1, 2.5e3, {\"a\": [true, null]}],\n"
+				+ "    \"translatedText\": \"hola\"\n   }\n  ]\n }\n}\n");
+
+		assertThat(translations.get(0).text, is("hola"));
+	}
+
+	@Test
+	public void decodesJsonEscapes() throws Exception
+	{
+		final List<Translation> translations = translationsIn("{\"data\":{\"translations\":[{\"translatedText\":"
+				+ "\"say \\\"hi\\\" \\\\ caf\\u00e9\\n\\ud83d\\ude00\"}]}}");
+
+		assertThat(translations.get(0).text, is("say \"hi\" \\ café\n😀"));
+	}
+
+	@Test
+	public void decodesHtmlEntities() throws Exception
+	{
+		assertThat(decodeEntities("l&#39;homme &amp; &lt;b&gt; &quot;x&quot; &#x263A; &#233;"),
+				is("l'homme & <b> \"x\" ☺ é"));
+	}
+
+	@Test
+	public void leavesUnknownEntitiesAsTheyAre() throws Exception
+	{
+		assertThat(decodeEntities("a &nbsp; b & c &#xZZ; d;"), is("a &nbsp; b & c &#xZZ; d;"));
+	}
+
+	@Test
+	public void readsMultibyteTextLongerThanTheBuffers() throws Exception
+	{
+		final String text = stringOf('字', 4000);
+
+		assertThat(translationsIn("{\"data\":{\"translations\":[{\"translatedText\":\"" + text + "\"}]}}").get(0).text,
+				is(text));
+	}
+
+	@Test(expected = IOException.class)
+	public void throwsIOExceptionWhenContentIsLongerThanLimit() throws Exception
+	{
+		translationsIn("{\"data\":{\"translations\":[{\"translatedText\":\"" + stringOf('a', (int) MAX_SIZE)
+				+ "\"}]}}");
+	}
+
+	@Test(expected = IOException.class)
+	public void throwsIOExceptionWhenContentIsEmpty() throws Exception
+	{
+		translationsIn("\n");
+	}
+
+	@Test(expected = IOException.class)
+	public void throwsIOExceptionWhenContentIsTruncated() throws Exception
+	{
+		translationsIn("{\"data\":{\"translations\":[{\"translatedText\":\"hol");
+	}
+
+	private static String stringOf(final char character, final int length)
+	{
+		return new String(new char[length]).replace((char) 0, character);
+	}
+
+	@Test
+	public void readsReasonOfErrorResponse() throws Exception
+	{
+		assertThat(ResponseParser.errorReason("{\"error\":{\"errors\":[{\"domain\":\"usageLimits\","
+				+ "\"reason\":\"dailyLimitExceeded\"}],\"code\":403}}"), is("dailyLimitExceeded"));
+	}
+
+	@Test
+	public void readsNoReasonOutOfBodyThatIsNotAnError() throws Exception
+	{
+		assertThat(ResponseParser.errorReason("Service Unavailable"), is(nullValue()));
+		assertThat(ResponseParser.errorReason("{\"error\":{\"errors\":[],\"code\":500}}"), is(nullValue()));
+	}
+
+	private static List<Translation> translationsIn(final String body) throws IOException
+	{
+		final ResponseBody content = new ResponseBody(new ByteArrayInputStream(body.getBytes("UTF-8")), MAX_SIZE);
+
+		try
+		{
+			return ResponseParser.TRANSLATIONS.read(content);
+		}
+		finally
+		{
+			content.close();
+		}
+	}
+}
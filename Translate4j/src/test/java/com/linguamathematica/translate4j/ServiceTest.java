@@ -1,231 +1,990 @@
-/**
- * Copyright (C) 2010 Jose Llarena
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package com.linguamathematica.translate4j;
-
-import java.io.IOException;
-
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-
-import static java.lang.String.format;
-
-import static org.junit.Assert.fail;
-import static com.linguamathematica.translate4j.Fluency.withA;
-
-import org.apache.http.HttpStatus;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.eclipse.jetty.server.Request;
-import org.eclipse.jetty.server.Server;
-import org.eclipse.jetty.server.handler.AbstractHandler;
-import org.hamcrest.Description;
-import org.hamcrest.Matcher;
-import org.hamcrest.TypeSafeMatcher;
-import org.junit.After;
-import org.junit.AfterClass;
-import org.junit.Assert;
-import org.junit.BeforeClass;
-import org.junit.Test;
-
-public class ServiceTest extends AbstractGoogleTranslateTest
-{
-	private static final String ANY_RESPONSE = "";
-	private static final String EMPTY_RESPONSE = "";
-	private static final String ANY_PATH = "/";
-	private static final int TEST_PORT = 8082;
-	private static final String LIMIT_EXCEEDED_RESPONSE = "{\"error\":{\"errors\":[{\"domain\":\"usageLimits\",\"reason\":\"dailyLimitExceeded\",\"message\":\"Daily Limit Exceeded\"}],\"code\":403,\"message\":\"Daily Limit Exceeded\"}}";
-	private static HTTPServer server;
-
-	@After
-	public void tearDown() throws Exception
-	{
-		server.stop();
-	}
-
-	@Test
-	public void throwsConnectionExceptionWhenItCantConnectToServer() throws Exception
-	{
-		server.start(ANY_RESPONSE, HttpStatus.SC_OK);
-
-		try
-		{
-			aTranslator(withA(HTTPService(withA("wronghost")))).detect(ANY_TEXT);
-
-			fail("should have thrown a ConnectionException");
-		}
-		catch (final ConnectionException exception)
-		{
-
-		}
-	}
-
-	@Test
-	public void throwsResponseExceptionWhenResponseIsEmpty() throws Exception
-	{
-		server.start(EMPTY_RESPONSE, HttpStatus.SC_OK);
-
-		try
-		{
-			aTranslator(withA(HTTPService(withA("localhost")))).detect(ANY_TEXT);
-
-			fail(includeInMessage("Response content was invalid", HttpStatus.SC_OK, "OK"));
-		}
-		catch (final ResponseException exception)
-		{
-			Assert.assertThat(exception, reports("Response content was invalid", HttpStatus.SC_OK, "OK"));
-		}
-	}
-
-	@Test
-	public void throwsResponseExceptionWhenServerRespondsWithDailyLimitExceeded() throws Exception
-	{
-		server.start(LIMIT_EXCEEDED_RESPONSE, HttpStatus.SC_FORBIDDEN);
-
-		try
-		{
-			aTranslator(withA(HTTPService(withA("localhost")))).detect(ANY_TEXT);
-
-			fail(includeInMessage("Daily Limit Exceeded", HttpStatus.SC_FORBIDDEN, "Forbidden"));
-		}
-		catch (final ResponseException exception)
-		{
-			Assert.assertThat(exception, reports("Daily Limit Exceeded", HttpStatus.SC_FORBIDDEN, "Forbidden"));
-
-		}
-	}
-
-	@Test
-	public void throwsResponseExceptionWhenServerRespondsWithServerError() throws Exception
-	{
-		server.start(ANY_RESPONSE, HttpStatus.SC_INTERNAL_SERVER_ERROR);
-
-		try
-		{
-			aTranslator(withA(HTTPService(withA("localhost")))).detect(ANY_TEXT);
-
-			fail(includeInMessage("Response content was invalid", HttpStatus.SC_INTERNAL_SERVER_ERROR, "Server Error"));
-		}
-		catch (final ResponseException exception)
-		{
-			Assert.assertThat(exception,
-					reports("Response content was invalid", HttpStatus.SC_INTERNAL_SERVER_ERROR, "Server Error"));
-
-		}
-	}
-
-	@AfterClass
-	public static void tearDownOnce()
-	{
-		server = null;
-	}
-
-	@BeforeClass
-	public static void setUpOnce() throws Exception
-	{
-		server = new HTTPServer();
-	}
-
-	private static HTTPService HTTPService(final String host)
-	{
-		return new HTTPService("http", host, TEST_PORT, ANY_PATH, new DefaultHttpClient());
-	}
-
-	private static Translator aTranslator(final HTTPService httpService)
-	{
-		return new GoogleTranslatorVersion2(TEST_API_KEY, httpService);
-	}
-
-	private static String includeInMessage(final String message, final int httpCode, final String reason)
-	{
-		return format("should have thrown ResponseException reporting %s in message, status %s and reason %s", message,
-				httpCode, reason);
-	}
-
-	private static <T> Matcher<ResponseException> reports(final String message, final int httpCode, final String reason)
-	{
-		return new Reports(message, httpCode, reason);
-	}
-
-	private static class HTTPServer
-	{
-		private Server server;
-
-		private void start(final String response, final int code) throws Exception
-		{
-			server = new Server(TEST_PORT);
-			server.setHandler(new TestHandler(response, code));
-			server.start();
-		}
-
-		private void stop() throws Exception
-		{
-			if (server != null)
-			{
-				server.stop();
-			}
-		}
-	}
-
-	private static class Reports extends TypeSafeMatcher<ResponseException>
-	{
-		private final String message;
-		private final int httpCode;
-		private final String reason;
-
-		private Reports(final String message, final int httpCode, final String reason)
-		{
-			super();
-			this.message = message;
-			this.httpCode = httpCode;
-			this.reason = reason;
-		}
-
-		public void describeTo(final Description description)
-		{
-			description.appendText(format("to report [%s] in message, status code [%s] and reason [%s]", message,
-					httpCode, reason));
-		}
-
-		@Override
-		public boolean matchesSafely(final ResponseException exception)
-		{
-			return exception.getMessage().contains(message) && exception.getStatusCode() == httpCode
-					&& exception.getReason().contains(reason);
-		}
-
-	}
-
-	private static class TestHandler extends AbstractHandler
-	{
-		private final String payload;
-		private final int HTTPStatus;
-
-		private TestHandler(final String response, final int HTTPStatus)
-		{
-			payload = response;
-			this.HTTPStatus = HTTPStatus;
-		}
-
-		public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
-				final HttpServletResponse response) throws IOException, ServletException
-		{
-			response.setContentType("text/html;charset=utf-8");
-			response.setStatus(HTTPStatus);
-			baseRequest.setHandled(true);
-			response.getWriter().println(payload);
-		}
-	}
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static java.lang.String.format;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static com.linguamathematica.translate4j.Fluency.withA;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeMatcher;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ServiceTest extends AbstractGoogleTranslateTest
+{
+	private static final String ANY_RESPONSE = "";
+	private static final String EMPTY_RESPONSE = "";
+	private static final String ANY_PATH = "/";
+	private static final int TEST_PORT = 8082;
+	private static final int CONCURRENT_CALLERS = 100;
+	private static final int CALLS_PER_CALLER = 10;
+	private static final int POOLED_CONNECTIONS = 10;
+	private static final int BATCHED_TEXTS = 300;
+	private static final String DETECTION_RESPONSE = "{\"data\":{\"translations\":[{\"translatedText\":\"any text\",\"detectedSourceLanguage\":\"es\"}]}}";
+	private static final int LARGE_RESPONSE_SIZE = 64 * 1024;
+	private static final String RATE_LIMIT_EXCEEDED_RESPONSE = "{\"error\":{\"errors\":[{\"reason\":\"rateLimitExceeded\"}],\"code\":403}}";
+	private static final String KEY_INVALID_RESPONSE = "{\"error\":{\"errors\":[{\"reason\":\"keyInvalid\"}],\"code\":403}}";
+	private static final String BAD_REQUEST_RESPONSE = "{\"error\":{\"errors\":[{\"reason\":\"invalid\"}],\"code\":400}}";
+	private static final String TRANSLATION_RESPONSE = "{\"data\":{\"translations\":[{\"translatedText\":\"%s\"}]}}";
+	private static final String LIMIT_EXCEEDED_RESPONSE = "{\"error\":{\"errors\":[{\"domain\":\"usageLimits\",\"reason\":\"dailyLimitExceeded\",\"message\":\"Daily Limit Exceeded\"}],\"code\":403,\"message\":\"Daily Limit Exceeded\"}}";
+	private static HTTPServer server;
+
+	@After
+	public void tearDown() throws Exception
+	{
+		server.stop();
+	}
+
+	@Test
+	public void detectsBatchInFewerRequestsThanTexts() throws Exception
+	{
+		final EchoHandler echo = new EchoHandler();
+		final List<String> texts = numberedTexts(BATCHED_TEXTS);
+
+		server.start(echo);
+
+		final List<Language> languages = aTranslator(withA(HTTPService(withA("localhost")))).detect(texts);
+
+		Assert.assertThat(languages.size(), is(BATCHED_TEXTS));
+		Assert.assertThat(languages.get(BATCHED_TEXTS - 1), is(Language.SPANISH));
+		Assert.assertThat(BATCHED_TEXTS / echo.requests.get(), is(greaterThan(1)));
+	}
+
+	@Test
+	public void translatesBatchInInputOrder() throws Exception
+	{
+		final EchoHandler echo = new EchoHandler();
+		final List<String> texts = numberedTexts(BATCHED_TEXTS);
+
+		server.start(echo);
+
+		final List<String> translations = aTranslator(withA(HTTPService(withA("localhost")))).translate(texts,
+				Language.ENGLISH, Language.SPANISH);
+
+		Assert.assertThat(translations.size(), is(BATCHED_TEXTS));
+
+		for (int i = 0; i < BATCHED_TEXTS; i++)
+		{
+			Assert.assertThat(translations.get(i), is(EchoHandler.translationOf(texts.get(i))));
+		}
+
+		Assert.assertThat(echo.requests.get(), is(greaterThan(1)));
+	}
+
+	@Test
+	public void readsMultibyteResponsesLongerThanTwoKilobytes() throws Exception
+	{
+		final String translation = stringOfLength(Translator.MAX_TEXT_SIZE).replace('a', '語');
+
+		server.start(format(TRANSLATION_RESPONSE, translation), HttpStatus.SC_OK);
+
+		Assert.assertThat(aTranslator(withA(HTTPService(withA("localhost")))).translate(ANY_TEXT, Language.ENGLISH,
+				Language.JAPANESE), is(translation));
+	}
+
+	@Test
+	public void throwsResponseExceptionWhenResponseIsLongerThanLimit() throws Exception
+	{
+		final Configuration configuration = new Configuration().maxResponseSize(LARGE_RESPONSE_SIZE / 2);
+
+		server.start(format(TRANSLATION_RESPONSE, stringOfLength(LARGE_RESPONSE_SIZE)), HttpStatus.SC_OK);
+
+		try
+		{
+			aTranslator(withA(HTTPService(withA("localhost"), configuration))).detect(ANY_TEXT);
+
+			fail(includeInMessage("longer than the limit", HttpStatus.SC_OK, "OK"));
+		}
+		catch (final ResponseException exception)
+		{
+			Assert.assertThat(exception, reports("longer than the limit", HttpStatus.SC_OK, "OK"));
+		}
+	}
+
+	@Test
+	public void servesConcurrentCallersFromASingleTranslator() throws Exception
+	{
+		server.start(DETECTION_RESPONSE, HttpStatus.SC_OK);
+
+		final Configuration configuration = new Configuration().maxConnections(POOLED_CONNECTIONS)
+				.maxConnectionsPerRoute(POOLED_CONNECTIONS);
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), configuration)));
+		final ExecutorService callers = newFixedThreadPool(CONCURRENT_CALLERS);
+		final List<Future<Language>> detections = new ArrayList<Future<Language>>();
+
+		try
+		{
+			for (int i = 0; i < CONCURRENT_CALLERS * CALLS_PER_CALLER; i++)
+			{
+				detections.add(callers.submit(new Callable<Language>()
+				{
+					public Language call()
+					{
+						return translator.detect(ANY_TEXT);
+					}
+				}));
+			}
+
+			for (final Future<Language> detection : detections)
+			{
+				Assert.assertThat(detection.get(), is(Language.SPANISH));
+			}
+		}
+		finally
+		{
+			callers.shutdown();
+			translator.dispose();
+		}
+	}
+
+	@Test
+	public void translatesAndDetectsWithASingleRequest() throws Exception
+	{
+		final EchoHandler echo = new EchoHandler();
+		final List<String> texts = numberedTexts(3);
+
+		server.start(echo);
+
+		final List<Translation> translations = aTranslator(withA(HTTPService(withA("localhost"))))
+				.translateAndDetect(texts, Language.ENGLISH);
+
+		for (int i = 0; i < texts.size(); i++)
+		{
+			Assert.assertThat(translations.get(i).getText(), is(EchoHandler.translationOf(texts.get(i))));
+			Assert.assertThat(translations.get(i).getDetectedLanguage(), is(Language.SPANISH));
+		}
+
+		Assert.assertThat(echo.requests.get(), is(1));
+	}
+
+	@Test
+	public void postsQueriesLongerThanThreshold() throws Exception
+	{
+		final EchoHandler echo = new EchoHandler();
+
+		server.start(echo);
+
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), new Configuration()
+				.postThreshold(ANY_TEXT.length()))));
+
+		Assert.assertThat(translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH),
+				is(EchoHandler.translationOf(ANY_TEXT)));
+		Assert.assertThat(echo.method, is("POST"));
+		Assert.assertThat(echo.methodOverride, is("GET"));
+	}
+
+	@Test
+	public void postsGzippedQueriesWhenConfiguredTo() throws Exception
+	{
+		final EchoHandler echo = new EchoHandler();
+		final List<String> texts = numberedTexts(BATCHED_TEXTS);
+
+		server.start(echo);
+
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), new Configuration()
+				.postThreshold(0).gzipRequests(true))));
+
+		Assert.assertThat(translator.translate(texts, Language.ENGLISH, Language.SPANISH).get(BATCHED_TEXTS - 1),
+				is(EchoHandler.translationOf(texts.get(BATCHED_TEXTS - 1))));
+		Assert.assertThat(echo.method, is("POST"));
+	}
+
+	@Test
+	public void getsQueriesUpToThreshold() throws Exception
+	{
+		final EchoHandler echo = new EchoHandler();
+
+		server.start(echo);
+
+		aTranslator(withA(HTTPService(withA("localhost")))).translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH);
+
+		Assert.assertThat(echo.method, is("GET"));
+	}
+
+	@Test
+	public void translatesAsynchronously() throws Exception
+	{
+		server.start(new EchoHandler());
+
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), new Configuration())));
+		final List<String> texts = numberedTexts(BATCHED_TEXTS);
+		final List<Future<String>> translations = new ArrayList<Future<String>>();
+
+		try
+		{
+			for (final String text : texts)
+			{
+				translations.add(translator.translateAsync(text, Language.ENGLISH, Language.SPANISH));
+			}
+
+			for (int i = 0; i < texts.size(); i++)
+			{
+				Assert.assertThat(translations.get(i).get(), is(EchoHandler.translationOf(texts.get(i))));
+			}
+		}
+		finally
+		{
+			translator.dispose();
+		}
+	}
+
+	@Test
+	public void reportsResponseExceptionAsCauseOfFailedAsynchronousCall() throws Exception
+	{
+		server.start(LIMIT_EXCEEDED_RESPONSE, HttpStatus.SC_FORBIDDEN);
+
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), new Configuration())));
+
+		try
+		{
+			translator.detectAsync(ANY_TEXT).get();
+
+			fail(includeInMessage("Daily Limit Exceeded", HttpStatus.SC_FORBIDDEN, "Forbidden"));
+		}
+		catch (final ExecutionException exception)
+		{
+			Assert.assertThat(exception.getCause(), is(instanceOf(ResponseException.class)));
+		}
+		finally
+		{
+			translator.dispose();
+		}
+	}
+
+	@Test
+	public void detectsUnknownLanguageWhenTheResponseLeavesItOut() throws Exception
+	{
+		server.start(format(TRANSLATION_RESPONSE, "any text"), HttpStatus.SC_OK);
+
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), new Configuration())));
+
+		Assert.assertThat(translator.detect(ANY_TEXT), is(Language.UNKNOWN));
+	}
+
+	@Test
+	public void retriesServerErrorsUntilTheyGoAway() throws Exception
+	{
+		final FlakyHandler flaky = new FlakyHandler(2, HttpStatus.SC_SERVICE_UNAVAILABLE, "{}", null);
+		final RetryPolicy retries = new RetryPolicy().initialBackoff(10, TimeUnit.MILLISECONDS);
+
+		server.start(flaky);
+
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), new Configuration()
+				.retryPolicy(retries))));
+
+		Assert.assertThat(translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH), is("any text"));
+		Assert.assertThat(flaky.requests.get(), is(3));
+		Assert.assertThat(retries.getRetries(), is(2L));
+	}
+
+	@Test
+	public void doesNotRetryWhenDailyLimitIsExceeded() throws Exception
+	{
+		final FlakyHandler flaky = new FlakyHandler(1, HttpStatus.SC_FORBIDDEN, LIMIT_EXCEEDED_RESPONSE, null);
+
+		server.start(flaky);
+
+		try
+		{
+			aTranslator(withA(HTTPService(withA("localhost"), new Configuration()))).detect(ANY_TEXT);
+
+			fail(includeInMessage("Daily Limit Exceeded", HttpStatus.SC_FORBIDDEN, "Forbidden"));
+		}
+		catch (final ResponseException exception)
+		{
+			Assert.assertThat(exception.getErrorReason(), is("dailyLimitExceeded"));
+			Assert.assertThat(flaky.requests.get(), is(1));
+		}
+	}
+
+	@Test
+	public void waitsAsLongAsRetryAfterSaysBeforeRetryingRateLimitedRequest() throws Exception
+	{
+		final FlakyHandler flaky = new FlakyHandler(1, HttpStatus.SC_FORBIDDEN, RATE_LIMIT_EXCEEDED_RESPONSE, "1");
+		final long start = System.nanoTime();
+
+		server.start(flaky);
+
+		aTranslator(withA(HTTPService(withA("localhost"), new Configuration()))).detect(ANY_TEXT);
+
+		Assert.assertThat(flaky.requests.get(), is(2));
+		Assert.assertThat(System.nanoTime() - start, greaterThan(TimeUnit.SECONDS.toNanos(1)));
+	}
+
+	@Test
+	public void metersEveryAttemptAgainstTheRateLimit() throws Exception
+	{
+		final FlakyHandler flaky = new FlakyHandler(1, HttpStatus.SC_SERVICE_UNAVAILABLE, "{}", null);
+		final RateLimit limit = new RateLimit().requestsPerSecond(1).maxWait(0, TimeUnit.SECONDS);
+
+		server.start(flaky);
+
+		try
+		{
+			aTranslator(withA(HTTPService(withA("localhost"), new Configuration().rateLimit(limit).retryPolicy(
+					new RetryPolicy().initialBackoff(1, TimeUnit.MILLISECONDS))))).detect(ANY_TEXT);
+
+			fail("should have thrown RequestRejectedException for the retry");
+		}
+		catch (final RequestRejectedException exception)
+		{
+			Assert.assertThat(flaky.requests.get(), is(1));
+			Assert.assertThat(limit.getRejectedRequests(), is(1L));
+		}
+	}
+
+	@Test
+	public void stopsRetryingWhenTheBudgetIsSpent() throws Exception
+	{
+		final FlakyHandler flaky = new FlakyHandler(Integer.MAX_VALUE, HttpStatus.SC_BAD_GATEWAY, "{}", null);
+		final RetryPolicy retries = new RetryPolicy().maxAttempts(10).budget(0, 3).initialBackoff(1,
+				TimeUnit.MILLISECONDS);
+
+		server.start(flaky);
+
+		try
+		{
+			aTranslator(withA(HTTPService(withA("localhost"), new Configuration().retryPolicy(retries)))).detect(
+					ANY_TEXT);
+
+			fail(includeInMessage("Server responded", HttpStatus.SC_BAD_GATEWAY, "Bad Gateway"));
+		}
+		catch (final ResponseException exception)
+		{
+			Assert.assertThat(flaky.requests.get(), is(4));
+			Assert.assertThat(retries.getRetries(), is(3L));
+			Assert.assertThat(retries.getRefusedRetries(), is(1L));
+		}
+	}
+
+	@Test
+	public void failsFastOnceTheCircuitHasOpened() throws Exception
+	{
+		final FlakyHandler flaky = new FlakyHandler(Integer.MAX_VALUE, HttpStatus.SC_SERVICE_UNAVAILABLE, "{}", null);
+		final CircuitBreaker breaker = new CircuitBreaker().slidingWindow(2, 2);
+
+		server.start(flaky);
+
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), new Configuration()
+				.retryPolicy(new RetryPolicy().maxAttempts(1)).circuitBreaker(breaker))));
+
+		for (int i = 0; i < 3; i++)
+		{
+			try
+			{
+				translator.detect(ANY_TEXT);
+
+				fail("should have failed");
+			}
+			catch (final RuntimeException exception)
+			{
+				Assert.assertThat(exception, instanceOf(i < 2 ? ResponseException.class : CircuitOpenException.class));
+			}
+		}
+
+		Assert.assertThat(flaky.requests.get(), is(2));
+		Assert.assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+	}
+
+	@Test
+	public void spreadsRequestsOverApiKeys() throws Exception
+	{
+		final ApiKeys keys = new ApiKeys("first", "second");
+
+		server.start(new EchoHandler());
+
+		final Translator translator = new GoogleTranslatorVersion2(keys, HTTPService(withA("localhost")),
+				new Configuration());
+
+		for (int i = 0; i < 4; i++)
+		{
+			translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH);
+		}
+
+		Assert.assertThat(keys.getRequests("first"), is(2L));
+		Assert.assertThat(keys.getRequests("second"), is(2L));
+		Assert.assertThat(keys.getCharacters("first"), is(2L * ANY_TEXT.length()));
+	}
+
+	@Test
+	public void takesApiKeyOverItsDailyLimitOutOfRotation() throws Exception
+	{
+		final ApiKeys keys = new ApiKeys("exhausted", "fresh");
+
+		server.start(new EchoHandler()
+		{
+			@Override
+			public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+					final HttpServletResponse response) throws IOException, ServletException
+			{
+				if (request.getQueryString().contains("key=exhausted"))
+				{
+					response.setStatus(HttpStatus.SC_FORBIDDEN);
+					baseRequest.setHandled(true);
+					response.getWriter().println(LIMIT_EXCEEDED_RESPONSE);
+				}
+				else
+				{
+					super.handle(target, baseRequest, request, response);
+				}
+			}
+		});
+
+		final Translator translator = new GoogleTranslatorVersion2(keys, HTTPService(withA("localhost")),
+				new Configuration());
+
+		Assert.assertThat(translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH),
+				is(EchoHandler.translationOf(ANY_TEXT)));
+		Assert.assertThat(translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH),
+				is(EchoHandler.translationOf(ANY_TEXT)));
+		Assert.assertThat(keys.isInRotation("exhausted"), is(false));
+		Assert.assertThat(keys.getErrors("exhausted"), is(1L));
+		Assert.assertThat(keys.getRequests("fresh"), is(2L));
+	}
+
+	@Test
+	public void letsTheServiceRefuseTheOnlyApiKeyEveryTime() throws Exception
+	{
+		final ApiKeys keys = new ApiKeys("invalid");
+		final FlakyHandler flaky = new FlakyHandler(Integer.MAX_VALUE, HttpStatus.SC_FORBIDDEN, KEY_INVALID_RESPONSE,
+				null);
+
+		server.start(flaky);
+
+		final Translator translator = new GoogleTranslatorVersion2(keys, HTTPService(withA("localhost")),
+				new Configuration());
+
+		for (int i = 0; i < 2; i++)
+		{
+			try
+			{
+				translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH);
+
+				fail("should have thrown ResponseException");
+			}
+			catch (final ResponseException exception)
+			{
+				Assert.assertThat(exception.getErrorReason(), is("keyInvalid"));
+			}
+		}
+
+		Assert.assertThat(flaky.requests.get(), is(2));
+	}
+
+	@Test
+	public void keepsApiKeyInRotationAfterBadRequests() throws Exception
+	{
+		final ApiKeys keys = new ApiKeys("first", "second").benchAfter(1, 1, TimeUnit.MINUTES);
+
+		server.start(new FlakyHandler(Integer.MAX_VALUE, HttpStatus.SC_BAD_REQUEST, BAD_REQUEST_RESPONSE, null));
+
+		final Translator translator = new GoogleTranslatorVersion2(keys, HTTPService(withA("localhost")),
+				new Configuration());
+
+		try
+		{
+			translator.translate(ANY_TEXT, Language.ENGLISH, Language.ENGLISH);
+
+			fail("should have thrown ResponseException");
+		}
+		catch (final ResponseException exception)
+		{
+			Assert.assertThat(keys.isInRotation("first"), is(true));
+			Assert.assertThat(keys.getErrors("first"), is(1L));
+		}
+	}
+
+	@Test
+	public void hedgesRequestThatIsSlowerThanUsual() throws Exception
+	{
+		final AtomicInteger requests = new AtomicInteger();
+		final Hedging hedging = new Hedging().latencyWindow(3, 3);
+
+		server.start(new EchoHandler()
+		{
+			@Override
+			public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+					final HttpServletResponse response) throws IOException, ServletException
+			{
+				try
+				{
+					Thread.sleep(requests.incrementAndGet() == 4 ? 3000 : 0);
+				}
+				catch (final InterruptedException exception)
+				{
+					Thread.currentThread().interrupt();
+				}
+
+				super.handle(target, baseRequest, request, response);
+			}
+		});
+
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), new Configuration()
+				.hedging(hedging))));
+
+		for (int i = 0; i < 3; i++)
+		{
+			translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH);
+		}
+
+		final long start = System.currentTimeMillis();
+
+		Assert.assertThat(translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH),
+				is(EchoHandler.translationOf(ANY_TEXT)));
+		Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+		Assert.assertThat(hedging.getHedgedRequests(), is(1L));
+		Assert.assertThat(hedging.getHedgeWins(), is(1L));
+		Assert.assertThat(hedging.getHedgeRate(), is(0.25));
+	}
+
+	@Test
+	public void countsTheWholeWaitOfAHedgedRequestAsItsLatency() throws Exception
+	{
+		final AtomicInteger requests = new AtomicInteger();
+		final Hedging hedging = new Hedging().latencyWindow(3, 3);
+
+		server.start(new EchoHandler()
+		{
+			@Override
+			public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+					final HttpServletResponse response) throws IOException, ServletException
+			{
+				try
+				{
+					Thread.sleep(requests.incrementAndGet() == 4 ? 3000 : 200);
+				}
+				catch (final InterruptedException exception)
+				{
+					Thread.currentThread().interrupt();
+				}
+
+				super.handle(target, baseRequest, request, response);
+			}
+		});
+
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), new Configuration()
+				.hedging(hedging))));
+
+		for (int i = 0; i < 4; i++)
+		{
+			translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH);
+		}
+
+		Assert.assertThat(hedging.getHedgeWins(), is(1L));
+		Assert.assertThat(hedging.sent(), greaterThanOrEqualTo(400L));
+	}
+
+	@Test
+	public void abortsRequestStillInFlightWhenTheDeadlinePasses() throws Exception
+	{
+		server.start(new SlowHandler(3000));
+
+		final Configuration configuration = new Configuration().deadline(200, TimeUnit.MILLISECONDS);
+		final Translator translator = new GoogleTranslatorVersion2(new ApiKeys(TEST_API_KEY), HTTPService(
+				withA("localhost"), configuration), configuration);
+
+		final long start = System.currentTimeMillis();
+
+		try
+		{
+			translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH);
+
+			fail("should have thrown DeadlineExceededException");
+		}
+		catch (final DeadlineExceededException exception)
+		{
+			Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+		}
+	}
+
+	@Test
+	public void givesUpReadingResponseThatTakesLongerThanTheSocketTimeout() throws Exception
+	{
+		server.start(new SlowHandler(3000));
+
+		final Translator translator = aTranslator(withA(HTTPService(withA("localhost"), new Configuration()
+				.socketTimeout(200, TimeUnit.MILLISECONDS).retryPolicy(new RetryPolicy().maxAttempts(1)))));
+
+		final long start = System.currentTimeMillis();
+
+		try
+		{
+			translator.translate(ANY_TEXT, Language.ENGLISH, Language.SPANISH);
+
+			fail("should have thrown ConnectionException");
+		}
+		catch (final ConnectionException exception)
+		{
+			Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+		}
+	}
+
+	@Test
+	public void throwsConnectionExceptionWhenItCantConnectToServer() throws Exception
+	{
+		server.start(ANY_RESPONSE, HttpStatus.SC_OK);
+
+		try
+		{
+			aTranslator(withA(HTTPService(withA("wronghost")))).detect(ANY_TEXT);
+
+			fail("should have thrown a ConnectionException");
+		}
+		catch (final ConnectionException exception)
+		{
+
+		}
+	}
+
+	@Test
+	public void throwsResponseExceptionWhenResponseIsEmpty() throws Exception
+	{
+		server.start(EMPTY_RESPONSE, HttpStatus.SC_OK);
+
+		try
+		{
+			aTranslator(withA(HTTPService(withA("localhost")))).detect(ANY_TEXT);
+
+			fail(includeInMessage("Response content was invalid", HttpStatus.SC_OK, "OK"));
+		}
+		catch (final ResponseException exception)
+		{
+			Assert.assertThat(exception, reports("Response content was invalid", HttpStatus.SC_OK, "OK"));
+		}
+	}
+
+	@Test
+	public void throwsResponseExceptionWhenServerRespondsWithDailyLimitExceeded() throws Exception
+	{
+		server.start(LIMIT_EXCEEDED_RESPONSE, HttpStatus.SC_FORBIDDEN);
+
+		try
+		{
+			aTranslator(withA(HTTPService(withA("localhost")))).detect(ANY_TEXT);
+
+			fail(includeInMessage("Daily Limit Exceeded", HttpStatus.SC_FORBIDDEN, "Forbidden"));
+		}
+		catch (final ResponseException exception)
+		{
+			Assert.assertThat(exception, reports("Daily Limit Exceeded", HttpStatus.SC_FORBIDDEN, "Forbidden"));
+
+		}
+	}
+
+	@Test
+	public void throwsResponseExceptionWhenServerRespondsWithServerError() throws Exception
+	{
+		server.start(ANY_RESPONSE, HttpStatus.SC_INTERNAL_SERVER_ERROR);
+
+		try
+		{
+			aTranslator(withA(HTTPService(withA("localhost")))).detect(ANY_TEXT);
+
+			fail(includeInMessage("Response content was invalid", HttpStatus.SC_INTERNAL_SERVER_ERROR, "Server Error"));
+		}
+		catch (final ResponseException exception)
+		{
+			Assert.assertThat(exception,
+					reports("Response content was invalid", HttpStatus.SC_INTERNAL_SERVER_ERROR, "Server Error"));
+
+		}
+	}
+
+	@AfterClass
+	public static void tearDownOnce()
+	{
+		server = null;
+	}
+
+	@BeforeClass
+	public static void setUpOnce() throws Exception
+	{
+		server = new HTTPServer();
+	}
+
+	private static HTTPService HTTPService(final String host)
+	{
+		return new HTTPService("http", host, TEST_PORT, ANY_PATH, new DefaultHttpClient());
+	}
+
+	private static HTTPService HTTPService(final String host, final Configuration configuration)
+	{
+		return new HTTPService("http", host, TEST_PORT, ANY_PATH, Translator.makeHttpClient(configuration),
+				configuration);
+	}
+
+	private static List<String> numberedTexts(final int count)
+	{
+		final List<String> texts = new ArrayList<String>(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			texts.add(format("text number %s", i));
+		}
+
+		return texts;
+	}
+
+	private static Translator aTranslator(final HTTPService httpService)
+	{
+		return new GoogleTranslatorVersion2(TEST_API_KEY, httpService);
+	}
+
+	private static String includeInMessage(final String message, final int httpCode, final String reason)
+	{
+		return format("should have thrown ResponseException reporting %s in message, status %s and reason %s", message,
+				httpCode, reason);
+	}
+
+	private static <T> Matcher<ResponseException> reports(final String message, final int httpCode, final String reason)
+	{
+		return new Reports(message, httpCode, reason);
+	}
+
+	private static class HTTPServer
+	{
+		private Server server;
+
+		private void start(final String response, final int code) throws Exception
+		{
+			start(new TestHandler(response, code));
+		}
+
+		private void start(final Handler handler) throws Exception
+		{
+			server = new Server(TEST_PORT);
+			server.setHandler(handler);
+			server.start();
+		}
+
+		private void stop() throws Exception
+		{
+			if (server != null)
+			{
+				server.stop();
+			}
+		}
+	}
+
+	private static class SlowHandler extends EchoHandler
+	{
+		private final long delayMillis;
+
+		private SlowHandler(final long delayMillis)
+		{
+			this.delayMillis = delayMillis;
+		}
+
+		@Override
+		public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+				final HttpServletResponse response) throws IOException, ServletException
+		{
+			try
+			{
+				Thread.sleep(delayMillis);
+			}
+			catch (final InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+			super.handle(target, baseRequest, request, response);
+		}
+	}
+
+	private static class EchoHandler extends AbstractHandler
+	{
+		private final AtomicInteger requests = new AtomicInteger();
+		private volatile String method;
+		private volatile String methodOverride;
+
+		public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+				final HttpServletResponse response) throws IOException, ServletException
+		{
+			final Map<String, List<String>> parameters = parametersOf(request);
+			final boolean detecting = !parameters.containsKey("source");
+			final StringBuilder payload = new StringBuilder("{\"data\":{\"translations\":[");
+
+			for (final String text : parameters.get("q"))
+			{
+				payload.append(payload.charAt(payload.length() - 1) == '[' ? "" : ",");
+				payload.append(format("{\"translatedText\":\"%s\"", translationOf(text)));
+				payload.append(detecting ? ",\"detectedSourceLanguage\":\"es\"}" : "}");
+			}
+
+			requests.incrementAndGet();
+			method = request.getMethod();
+			methodOverride = request.getHeader("X-HTTP-Method-Override");
+			response.setContentType("application/json;charset=utf-8");
+			response.setStatus(HttpStatus.SC_OK);
+			baseRequest.setHandled(true);
+			response.getWriter().println(payload.append("]}}"));
+		}
+
+		private static Map<String, List<String>> parametersOf(final HttpServletRequest request) throws IOException
+		{
+			final String form = "gzip".equals(request.getHeader("Content-Encoding")) ? new Scanner(new GZIPInputStream(
+					request.getInputStream()), "UTF-8").useDelimiter("\\A").next() : request.getQueryString();
+			final Map<String, List<String>> parameters = new HashMap<String, List<String>>();
+
+			for (final String parameter : (form != null ? form : readFormOf(request)).split("&"))
+			{
+				final String name = URLDecoder.decode(parameter.substring(0, parameter.indexOf('=')), "UTF-8");
+
+				if (!parameters.containsKey(name))
+				{
+					parameters.put(name, new ArrayList<String>());
+				}
+
+				parameters.get(name).add(URLDecoder.decode(parameter.substring(parameter.indexOf('=') + 1), "UTF-8"));
+			}
+
+			return parameters;
+		}
+
+		private static String readFormOf(final HttpServletRequest request) throws IOException
+		{
+			return new Scanner(request.getInputStream(), "UTF-8").useDelimiter("\\A").next();
+		}
+
+		private static String translationOf(final String text)
+		{
+			return text.toUpperCase();
+		}
+	}
+
+	/**
+	 * Fails the given number of requests with the given status, body and Retry-After header, then translates.
+	 */
+	private static class FlakyHandler extends AbstractHandler
+	{
+		private final AtomicInteger requests = new AtomicInteger();
+		private final int failures;
+		private final int status;
+		private final String body;
+		private final String retryAfter;
+
+		private FlakyHandler(final int failures, final int status, final String body, final String retryAfter)
+		{
+			this.failures = failures;
+			this.status = status;
+			this.body = body;
+			this.retryAfter = retryAfter;
+		}
+
+		public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+				final HttpServletResponse response) throws IOException, ServletException
+		{
+			final boolean failing = requests.incrementAndGet() <= failures;
+
+			if (failing && retryAfter != null)
+			{
+				response.setHeader("Retry-After", retryAfter);
+			}
+
+			response.setContentType("application/json;charset=utf-8");
+			response.setStatus(failing ? status : HttpStatus.SC_OK);
+			baseRequest.setHandled(true);
+			response.getWriter().println(failing ? body : DETECTION_RESPONSE);
+		}
+	}
+
+	private static class Reports extends TypeSafeMatcher<ResponseException>
+	{
+		private final String message;
+		private final int httpCode;
+		private final String reason;
+
+		private Reports(final String message, final int httpCode, final String reason)
+		{
+			super();
+			this.message = message;
+			this.httpCode = httpCode;
+			this.reason = reason;
+		}
+
+		public void describeTo(final Description description)
+		{
+			description.appendText(format("to report [%s] in message, status code [%s] and reason [%s]", message,
+					httpCode, reason));
+		}
+
+		@Override
+		public boolean matchesSafely(final ResponseException exception)
+		{
+			return exception.getMessage().contains(message) && exception.getStatusCode() == httpCode
+					&& exception.getReason().contains(reason);
+		}
+
+	}
+
+	private static class TestHandler extends AbstractHandler
+	{
+		private final String payload;
+		private final int HTTPStatus;
+
+		private TestHandler(final String response, final int HTTPStatus)
+		{
+			payload = response;
+			this.HTTPStatus = HTTPStatus;
+		}
+
+		public void handle(final String target, final Request baseRequest, final HttpServletRequest request,
+				final HttpServletResponse response) throws IOException, ServletException
+		{
+			response.setContentType("text/html;charset=utf-8");
+			response.setStatus(HTTPStatus);
+			baseRequest.setHandled(true);
+			response.getWriter().println(payload);
+		}
+	}
 }
\ No newline at end of file
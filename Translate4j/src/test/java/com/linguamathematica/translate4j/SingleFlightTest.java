@@ -0,0 +1,274 @@
+/**
+ * Copyright (C) 2010 Jose Llarena
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linguamathematica.translate4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static com.linguamathematica.translate4j.Language.ENGLISH;
+import static com.linguamathematica.translate4j.Language.SPANISH;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SingleFlightTest
+{
+	private static final int CALLERS = 20;
+	private static final long JOINING_TIME_MILLIS = 100;
+
+	private ExecutorService callers;
+	private BlockingTranslator service;
+	private Translator translator;
+
+	@Before
+	public void setUp()
+	{
+		callers = Executors.newFixedThreadPool(CALLERS + 1);
+		service = new BlockingTranslator();
+		translator = new SingleFlightTranslator(service);
+	}
+
+	@After
+	public void tearDown()
+	{
+		callers.shutdownNow();
+	}
+
+	@Test
+	public void sendsOneRequestForIdenticalCallsInFlight() throws Exception
+	{
+		final List<Future<String>> translations = translateWhileInFlight(translator, "popular");
+
+		service.release.countDown();
+
+		for (final Future<String> translation : translations)
+		{
+			assertThat(translation.get(), is("POPULAR"));
+		}
+
+		assertThat(service.calls.get(), is(1));
+	}
+
+	@Test
+	public void sharesFailureWithEveryCallerInFlight() throws Exception
+	{
+		service.failure = new ConnectionException("unreachable", null);
+
+		final List<Future<String>> translations = translateWhileInFlight(translator, "popular");
+
+		service.release.countDown();
+
+		for (final Future<String> translation : translations)
+		{
+			try
+			{
+				translation.get();
+				fail("Expected the failure of the shared request");
+			}
+			catch (final ExecutionException exception)
+			{
+				assertThat(exception.getCause(), instanceOf(ConnectionException.class));
+			}
+		}
+
+		assertThat(service.calls.get(), is(1));
+	}
+
+	@Test
+	public void sendsOneRequestForIdenticalDetectionsInFlight() throws Exception
+	{
+		final Future<Language> first = callers.submit(detecting("hola"));
+
+		service.entered.await();
+
+		final Future<Language> second = callers.submit(detecting("hola"));
+
+		Thread.sleep(JOINING_TIME_MILLIS);
+		service.release.countDown();
+
+		assertThat(first.get(), is(SPANISH));
+		assertThat(second.get(), is(SPANISH));
+		assertThat(service.calls.get(), is(1));
+	}
+
+	@Test
+	public void asksOnlyForTheTextsOfABatchNotInFlight() throws Exception
+	{
+		final List<Future<String>> translations = translateWhileInFlight(translator, "one");
+		final Future<List<String>> batch = callers.submit(new Callable<List<String>>()
+		{
+			public List<String> call()
+			{
+				return translator.translate(asList("one", "two", "two"), ENGLISH, SPANISH);
+			}
+		});
+
+		Thread.sleep(JOINING_TIME_MILLIS);
+		service.release.countDown();
+
+		assertThat(translations.get(0).get(), is("ONE"));
+		assertThat(batch.get(), is(asList("ONE", "TWO", "TWO")));
+		assertThat(service.calls.get(), is(2));
+		assertThat(service.texts.get(), is(2));
+	}
+
+	@Test
+	public void startsNoFlightForABatchWithATextTheServiceRefuses() throws Exception
+	{
+		final Future<List<String>> batch = callers.submit(new Callable<List<String>>()
+		{
+			public List<String> call()
+			{
+				return translator.translate(asList("hello", " "), ENGLISH, SPANISH);
+			}
+		});
+
+		service.entered.await();
+
+		final Future<String> single = callers.submit(translating(translator, "hello"));
+
+		Thread.sleep(JOINING_TIME_MILLIS);
+		service.release.countDown();
+
+		assertThat(single.get(), is("HELLO"));
+
+		try
+		{
+			batch.get();
+			fail("Expected the blank text to be refused");
+		}
+		catch (final ExecutionException exception)
+		{
+			assertThat(exception.getCause(), instanceOf(IllegalArgumentException.class));
+		}
+	}
+
+	@Test
+	public void asksAgainOnceTheRequestHasCompleted() throws Exception
+	{
+		service.release.countDown();
+
+		translator.translate("again", ENGLISH, SPANISH);
+		translator.translate("again", ENGLISH, SPANISH);
+
+		assertThat(service.calls.get(), is(2));
+	}
+
+	private List<Future<String>> translateWhileInFlight(final Translator translator, final String text)
+			throws InterruptedException
+	{
+		final List<Future<String>> translations = new ArrayList<Future<String>>();
+
+		translations.add(callers.submit(translating(translator, text)));
+		service.entered.await();
+
+		for (int i = 1; i < CALLERS; i++)
+		{
+			translations.add(callers.submit(translating(translator, text)));
+		}
+
+		Thread.sleep(JOINING_TIME_MILLIS);
+
+		return translations;
+	}
+
+	private static Callable<String> translating(final Translator translator, final String text)
+	{
+		return new Callable<String>()
+		{
+			public String call()
+			{
+				return translator.translate(text, ENGLISH, SPANISH);
+			}
+		};
+	}
+
+	private Callable<Language> detecting(final String text)
+	{
+		return new Callable<Language>()
+		{
+			public Language call()
+			{
+				return translator.detect(text);
+			}
+		};
+	}
+
+	/**
+	 * A translator whose calls do not complete until they are released.
+	 */
+	private static class BlockingTranslator extends CountingTranslator
+	{
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		volatile RuntimeException failure;
+
+		@Override
+		public List<Language> detect(final List<String> texts)
+		{
+			block();
+
+			return super.detect(texts);
+		}
+
+		@Override
+		public List<String> translate(final List<String> texts, final Language source, final Language target)
+		{
+			block();
+
+			for (final String text : texts)
+			{
+				Base.ensure(text.trim().length() != 0, "text cannot be empty");
+			}
+
+			final List<String> translations = super.translate(texts, source, target);
+
+			if (failure != null)
+			{
+				throw failure;
+			}
+
+			return translations;
+		}
+
+		private void block()
+		{
+			entered.countDown();
+
+			try
+			{
+				release.await();
+			}
+			catch (final InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}